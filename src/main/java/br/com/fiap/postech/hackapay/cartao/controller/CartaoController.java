@@ -1,31 +1,60 @@
 package br.com.fiap.postech.hackapay.cartao.controller;
 
+import br.com.fiap.postech.hackapay.cartao.dto.Centavos;
+import br.com.fiap.postech.hackapay.cartao.dto.DebitoLimite;
+import br.com.fiap.postech.hackapay.cartao.dto.PaginaCursor;
+import br.com.fiap.postech.hackapay.cartao.dto.ResultadoDebito;
 import br.com.fiap.postech.hackapay.cartao.entities.Cartao;
+import br.com.fiap.postech.hackapay.cartao.integration.ClienteIndisponivelException;
+import br.com.fiap.postech.hackapay.cartao.repository.RestricoesCartao;
 import br.com.fiap.postech.hackapay.cartao.services.CartaoService;
+import br.com.fiap.postech.hackapay.cartao.services.ChaveIdempotenciaReutilizadaException;
+import br.com.fiap.postech.hackapay.cartao.services.IdempotenciaService;
 import br.com.fiap.postech.hackapay.security.SecurityHelper;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
 import io.swagger.v3.oas.annotations.Operation;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.security.Principal;
+import java.util.List;
 import java.util.UUID;
 
 @RestController
+@Profile("!reativo")
 @RequestMapping("/cartao")
 public class CartaoController {
 
+    private static final String NUMERO_JA_CADASTRADO = "ja existe um cartao cadastrado com este numero";
+
     private final CartaoService cartaoService;
     private final SecurityHelper securityHelper;
+    private final IdempotenciaService idempotenciaService;
+    private final ObjectMapper objectMapper;
 
     @Autowired
-    public CartaoController(CartaoService cartaoService, SecurityHelper securityHelper) {
+    public CartaoController(CartaoService cartaoService,
+                            SecurityHelper securityHelper,
+                            IdempotenciaService idempotenciaService,
+                            ObjectMapper objectMapper) {
         this.cartaoService = cartaoService;
         this.securityHelper = securityHelper;
+        this.idempotenciaService = idempotenciaService;
+        this.objectMapper = objectMapper;
     }
 
     @Operation(summary = "registra um cartao")
@@ -37,11 +66,23 @@ public class CartaoController {
             return new ResponseEntity<>(savedCartaoDTO, HttpStatus.OK);
         } catch (IllegalArgumentException exception) {
             return new ResponseEntity<>(exception.getMessage(), HttpStatus.FORBIDDEN);
+        } catch (ClienteIndisponivelException exception) {
+            return new ResponseEntity<>(exception.getMessage(), HttpStatus.SERVICE_UNAVAILABLE);
         } catch (IllegalStateException exception) {
             return new ResponseEntity<>(exception.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        } catch (DataIntegrityViolationException exception) {
+            return numeroJaCadastrado(exception);
         }
     }
 
+    // so o indice unico do numero vira 409; not null e outras restricoes seguem como erro
+    private static ResponseEntity<?> numeroJaCadastrado(DataIntegrityViolationException exception) {
+        if (!RestricoesCartao.violaNumeroUnico(exception)) {
+            throw exception;
+        }
+        return new ResponseEntity<>(NUMERO_JA_CADASTRADO, HttpStatus.CONFLICT);
+    }
+
     @Operation(summary = "lista todos os cartaos")
     @GetMapping(
             produces = MediaType.APPLICATION_JSON_VALUE
@@ -59,6 +100,65 @@ public class CartaoController {
         return new ResponseEntity<>(cartaos, HttpStatus.OK);
     }
 
+    @Operation(summary = "lista os cartaos por cursor, sem contar o total de registros")
+    @GetMapping(
+            value = "/cursor",
+            produces = MediaType.APPLICATION_JSON_VALUE
+    )
+    public ResponseEntity<?> findAllPorCursor(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(required = false) String cpf,
+            @RequestParam(required = false) String numero
+    ) {
+        try {
+            Cartao cartao = new Cartao(cpf, null, numero, null, null);
+            cartao.setId(null);
+            PaginaCursor<Cartao> pagina = cartaoService.findAll(cursor, size, cartao);
+            return new ResponseEntity<>(pagina, HttpStatus.OK);
+        } catch (IllegalArgumentException exception) {
+            return new ResponseEntity<>(exception.getMessage(), HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    @Operation(summary = "exporta os cartaos em JSON delimitado por linha, sem paginacao")
+    @GetMapping(
+            value = "/export",
+            produces = MediaType.APPLICATION_NDJSON_VALUE
+    )
+    public ResponseEntity<StreamingResponseBody> exporta(
+            @RequestParam(required = false) String cpf,
+            @RequestParam(required = false) String numero
+    ) {
+        Cartao cartao = new Cartao(cpf, null, numero, null, null);
+        // escrito direto na resposta, na thread da requisicao assincrona, um cartao por vez
+        StreamingResponseBody corpo = saida -> {
+            // o separador so vai entre os cartoes; a quebra final fecha a ultima linha, se houver alguma
+            boolean[] escreveu = new boolean[1];
+            try (SequenceWriter escritor = objectMapper.writerFor(Cartao.class)
+                    .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                    .withRootValueSeparator("\n")
+                    .writeValues(saida)) {
+                cartaoService.exporta(cartao, cartaoExportado -> {
+                    escreve(escritor, cartaoExportado);
+                    escreveu[0] = true;
+                });
+            }
+            if (escreveu[0]) {
+                saida.write('\n');
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(corpo);
+    }
+
+    private static void escreve(SequenceWriter escritor, Cartao cartao) {
+        try {
+            escritor.write(cartao);
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
     @Operation(summary = "lista um cartao por seu id")
     @GetMapping("/{id}")
     public ResponseEntity<?> findById(@PathVariable UUID id) {
@@ -78,17 +178,48 @@ public class CartaoController {
             return new ResponseEntity<>(updatedCartao, HttpStatus.ACCEPTED);
         } catch (IllegalArgumentException exception) {
             return new ResponseEntity<>(exception.getMessage(), HttpStatus.BAD_REQUEST);
+        } catch (DataIntegrityViolationException exception) {
+            return numeroJaCadastrado(exception);
         }
     }
 
     @Operation(summary = "atualiza o limite de um cartao dentro do processo de pagamento")
     @PostMapping("/atualizaLimiteCartao/{valor}")
-    public ResponseEntity<?> atualizaLimiteCartao(@PathVariable Double valor, @Valid @RequestBody Cartao cartaoDTO) {
+    public ResponseEntity<?> atualizaLimiteCartao(
+            @PathVariable BigDecimal valor,
+            @RequestHeader(name = "Idempotency-Key", required = false) String chaveIdempotencia,
+            @Valid @RequestBody Cartao cartaoDTO,
+            Principal principal
+    ) {
         try {
-            cartaoService.atualizaLimiteCartao(valor, cartaoDTO);
+            long valorCentavos = Centavos.de(valor);
+            if (chaveIdempotencia == null) {
+                cartaoService.atualizaLimiteCartao(valorCentavos, cartaoDTO);
+                return new ResponseEntity<>(HttpStatus.ACCEPTED);
+            }
+            String titular = principal == null ? null : principal.getName();
+            ResultadoDebito resultado = idempotenciaService.atualizaLimiteCartao(titular, chaveIdempotencia, valorCentavos, cartaoDTO);
+            if (resultado.status() == ResultadoDebito.Status.REJEITADO) {
+                return new ResponseEntity<>(resultado.motivo(), HttpStatus.BAD_REQUEST);
+            }
             return new ResponseEntity<>(HttpStatus.ACCEPTED);
         } catch (IllegalArgumentException exception) {
             return new ResponseEntity<>(exception.getMessage(), HttpStatus.BAD_REQUEST);
+        } catch (ChaveIdempotenciaReutilizadaException exception) {
+            return new ResponseEntity<>(exception.getMessage(), HttpStatus.UNPROCESSABLE_ENTITY);
+        } catch (DataIntegrityViolationException exception) {
+            return new ResponseEntity<>("debito com a mesma Idempotency-Key em andamento", HttpStatus.CONFLICT);
+        }
+    }
+
+    @Operation(summary = "atualiza o limite de varios cartoes em uma unica transacao")
+    @PostMapping("/atualizaLimiteCartao/lote")
+    public ResponseEntity<?> atualizaLimiteCartaoLote(@RequestBody List<DebitoLimite> debitos) {
+        try {
+            List<ResultadoDebito> resultados = cartaoService.atualizaLimiteCartaoLote(debitos);
+            return new ResponseEntity<>(resultados, HttpStatus.OK);
+        } catch (IllegalArgumentException exception) {
+            return new ResponseEntity<>(exception.getMessage(), HttpStatus.BAD_REQUEST);
         }
     }
 
@@ -0,0 +1,163 @@
+package br.com.fiap.postech.hackapay.cartao.controller;
+
+import br.com.fiap.postech.hackapay.cartao.dto.Centavos;
+import br.com.fiap.postech.hackapay.cartao.dto.ResultadoDebito;
+import br.com.fiap.postech.hackapay.cartao.entities.Cartao;
+import br.com.fiap.postech.hackapay.cartao.integration.ClienteIndisponivelException;
+import br.com.fiap.postech.hackapay.cartao.repository.RestricoesCartao;
+import br.com.fiap.postech.hackapay.cartao.services.CartaoServiceReativo;
+import br.com.fiap.postech.hackapay.cartao.services.ChaveIdempotenciaReutilizadaException;
+import br.com.fiap.postech.hackapay.cartao.services.IdempotenciaService;
+import io.swagger.v3.oas.annotations.Operation;
+import jakarta.validation.Valid;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.math.BigDecimal;
+import java.security.Principal;
+import java.util.UUID;
+
+/*
+ * Equivalente ao CartaoController para o perfil reativo, com os mesmos caminhos e
+ * codigos de resposta. Paginacao por cursor, debito em lote e importacao continuam
+ * disponiveis apenas na pilha servlet.
+ */
+@RestController
+@RequestMapping("/cartao")
+@Profile("reativo")
+public class CartaoControllerReativo {
+
+    private static final String NUMERO_JA_CADASTRADO = "ja existe um cartao cadastrado com este numero";
+    private static final String PREFIXO_BEARER = "Bearer ";
+
+    private final CartaoServiceReativo cartaoService;
+    private final IdempotenciaService idempotenciaService;
+
+    @Autowired
+    public CartaoControllerReativo(CartaoServiceReativo cartaoService,
+                                   IdempotenciaService idempotenciaService) {
+        this.cartaoService = cartaoService;
+        this.idempotenciaService = idempotenciaService;
+    }
+
+    @Operation(summary = "registra um cartao")
+    @PostMapping
+    public Mono<ResponseEntity<?>> save(
+            @RequestHeader(HttpHeaders.AUTHORIZATION) String autorizacao,
+            @Valid @RequestBody Cartao cartaoDTO
+    ) {
+        String token = autorizacao.startsWith(PREFIXO_BEARER) ? autorizacao.substring(PREFIXO_BEARER.length()) : autorizacao;
+        return cartaoService.save(token, cartaoDTO)
+                .<ResponseEntity<?>>map(savedCartaoDTO -> new ResponseEntity<>(savedCartaoDTO, HttpStatus.OK))
+                .onErrorResume(IllegalArgumentException.class, exception -> resposta(exception, HttpStatus.FORBIDDEN))
+                .onErrorResume(ClienteIndisponivelException.class, exception -> resposta(exception, HttpStatus.SERVICE_UNAVAILABLE))
+                .onErrorResume(IllegalStateException.class, exception -> resposta(exception, HttpStatus.INTERNAL_SERVER_ERROR))
+                .onErrorResume(CartaoControllerReativo::violaNumeroUnico, exception -> numeroJaCadastrado());
+    }
+
+    @Operation(summary = "lista todos os cartaos")
+    @GetMapping(
+            produces = MediaType.APPLICATION_JSON_VALUE
+    )
+    public Mono<Page<Cartao>> findAll(
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(required = false) String cpf,
+            @RequestParam(required = false) String numero
+    ) {
+        Cartao cartao = new Cartao(cpf, null, numero, null, null);
+        cartao.setId(null);
+        return cartaoService.findAll(PageRequest.of(page, size), cartao);
+    }
+
+    @Operation(summary = "exporta os cartaos em JSON delimitado por linha, sem paginacao")
+    @GetMapping(
+            value = "/export",
+            produces = MediaType.APPLICATION_NDJSON_VALUE
+    )
+    public Flux<Cartao> exporta(
+            @RequestParam(required = false) String cpf,
+            @RequestParam(required = false) String numero
+    ) {
+        return cartaoService.exporta(new Cartao(cpf, null, numero, null, null));
+    }
+
+    @Operation(summary = "lista um cartao por seu id")
+    @GetMapping("/{id}")
+    public Mono<ResponseEntity<?>> findById(@PathVariable UUID id) {
+        return cartaoService.findById(id)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .onErrorResume(IllegalArgumentException.class, exception -> resposta(exception, HttpStatus.BAD_REQUEST));
+    }
+
+    @Operation(summary = "altera um cartao por seu id")
+    @PutMapping("/{id}")
+    public Mono<ResponseEntity<?>> update(@PathVariable UUID id, @Valid @RequestBody Cartao cartaoDTO) {
+        return cartaoService.update(id, cartaoDTO)
+                .<ResponseEntity<?>>map(updatedCartao -> new ResponseEntity<>(updatedCartao, HttpStatus.ACCEPTED))
+                .onErrorResume(IllegalArgumentException.class, exception -> resposta(exception, HttpStatus.BAD_REQUEST))
+                .onErrorResume(CartaoControllerReativo::violaNumeroUnico, exception -> numeroJaCadastrado());
+    }
+
+    @Operation(summary = "atualiza o limite de um cartao dentro do processo de pagamento")
+    @PostMapping("/atualizaLimiteCartao/{valor}")
+    public Mono<ResponseEntity<?>> atualizaLimiteCartao(
+            @PathVariable BigDecimal valor,
+            @RequestHeader(name = "Idempotency-Key", required = false) String chaveIdempotencia,
+            @Valid @RequestBody Cartao cartaoDTO,
+            Principal principal
+    ) {
+        return Mono.fromCallable(() -> Centavos.de(valor))
+                .flatMap(valorCentavos -> chaveIdempotencia == null
+                        ? cartaoService.atualizaLimiteCartao(valorCentavos, cartaoDTO).thenReturn(new ResponseEntity<>(HttpStatus.ACCEPTED))
+                        : comIdempotencia(principal.getName(), chaveIdempotencia, valorCentavos, cartaoDTO))
+                .onErrorResume(IllegalArgumentException.class, exception -> resposta(exception, HttpStatus.BAD_REQUEST))
+                .onErrorResume(ChaveIdempotenciaReutilizadaException.class, exception -> resposta(exception, HttpStatus.UNPROCESSABLE_ENTITY))
+                .onErrorResume(DataIntegrityViolationException.class, exception ->
+                        Mono.just(new ResponseEntity<>("debito com a mesma Idempotency-Key em andamento", HttpStatus.CONFLICT)));
+    }
+
+    /*
+     * O registro das chaves continua em JPA; o debito com chave roda na pilha
+     * bloqueante, fora do event loop, para manter a mesma garantia do servlet.
+     */
+    private Mono<ResponseEntity<?>> comIdempotencia(String titular, String chaveIdempotencia, long valorCentavos, Cartao cartaoDTO) {
+        return Mono.fromCallable(() -> idempotenciaService.atualizaLimiteCartao(titular, chaveIdempotencia, valorCentavos, cartaoDTO))
+                .subscribeOn(Schedulers.boundedElastic())
+                .map(resultado -> resultado.status() == ResultadoDebito.Status.REJEITADO
+                        ? new ResponseEntity<>(resultado.motivo(), HttpStatus.BAD_REQUEST)
+                        : new ResponseEntity<>(HttpStatus.ACCEPTED));
+    }
+
+    @Operation(summary = "remove um cartao por seu id")
+    @DeleteMapping("/{id}")
+    public Mono<ResponseEntity<?>> delete(@PathVariable UUID id) {
+        return cartaoService.delete(id)
+                .then(Mono.<ResponseEntity<?>>fromSupplier(() -> ResponseEntity.noContent().build()))
+                .onErrorResume(IllegalArgumentException.class, exception -> resposta(exception, HttpStatus.BAD_REQUEST));
+    }
+
+    private static Mono<ResponseEntity<?>> resposta(RuntimeException exception, HttpStatus status) {
+        return Mono.just(new ResponseEntity<>(exception.getMessage(), status));
+    }
+
+    // so o indice unico do numero vira 409; not null e outras restricoes seguem como erro
+    private static boolean violaNumeroUnico(Throwable exception) {
+        return exception instanceof DataIntegrityViolationException violacao && RestricoesCartao.violaNumeroUnico(violacao);
+    }
+
+    private static Mono<ResponseEntity<?>> numeroJaCadastrado() {
+        return Mono.just(new ResponseEntity<>(NUMERO_JA_CADASTRADO, HttpStatus.CONFLICT));
+    }
+}
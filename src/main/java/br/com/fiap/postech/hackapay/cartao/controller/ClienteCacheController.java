@@ -0,0 +1,36 @@
+package br.com.fiap.postech.hackapay.cartao.controller;
+
+import br.com.fiap.postech.hackapay.cartao.integration.ClienteCache;
+import io.swagger.v3.oas.annotations.Operation;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/cliente-cache")
+public class ClienteCacheController {
+
+    private final ClienteCache clienteCache;
+
+    @Autowired
+    public ClienteCacheController(ClienteCache clienteCache) {
+        this.clienteCache = clienteCache;
+    }
+
+    @Operation(summary = "remove do cache o cliente de um cpf")
+    @DeleteMapping("/{cpf}")
+    public ResponseEntity<?> invalida(@PathVariable String cpf) {
+        clienteCache.invalida(cpf);
+        return ResponseEntity.noContent().build();
+    }
+
+    @Operation(summary = "remove todos os clientes do cache")
+    @DeleteMapping
+    public ResponseEntity<?> invalidaTodos() {
+        clienteCache.invalidaTodos();
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -0,0 +1,86 @@
+package br.com.fiap.postech.hackapay.cartao.controller;
+
+import br.com.fiap.postech.hackapay.cartao.dto.FormatoImportacao;
+import br.com.fiap.postech.hackapay.cartao.dto.ResultadoImportacao;
+import br.com.fiap.postech.hackapay.cartao.services.ImportacaoCartaoService;
+import br.com.fiap.postech.hackapay.security.SecurityHelper;
+import io.swagger.v3.oas.annotations.Operation;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.UUID;
+
+@RestController
+@Profile("!reativo")
+@RequestMapping("/cartao/import")
+public class ImportacaoCartaoController {
+
+    private static final String TEXT_CSV_VALUE = "text/csv";
+
+    private final ImportacaoCartaoService importacaoCartaoService;
+    private final SecurityHelper securityHelper;
+
+    @Autowired
+    public ImportacaoCartaoController(ImportacaoCartaoService importacaoCartaoService,
+                                      SecurityHelper securityHelper) {
+        this.importacaoCartaoService = importacaoCartaoService;
+        this.securityHelper = securityHelper;
+    }
+
+    @Operation(summary = "importa cartoes em lote a partir de um CSV com cabecalho")
+    @PostMapping(
+            consumes = TEXT_CSV_VALUE,
+            produces = MediaType.APPLICATION_JSON_VALUE
+    )
+    public ResponseEntity<?> importaCsv(InputStream corpo) {
+        return importa(FormatoImportacao.CSV, corpo);
+    }
+
+    @Operation(summary = "importa cartoes em lote a partir de JSON delimitado por linha")
+    @PostMapping(
+            consumes = MediaType.APPLICATION_NDJSON_VALUE,
+            produces = MediaType.APPLICATION_JSON_VALUE
+    )
+    public ResponseEntity<?> importaNdjson(InputStream corpo) {
+        return importa(FormatoImportacao.NDJSON, corpo);
+    }
+
+    @Operation(summary = "baixa o relatorio das linhas rejeitadas em uma importacao")
+    @GetMapping(
+            value = "/{id}/rejeitados",
+            produces = TEXT_CSV_VALUE
+    )
+    public ResponseEntity<?> relatorioRejeitados(@PathVariable UUID id) {
+        try {
+            Path relatorio = importacaoCartaoService.relatorioRejeitados(id);
+            return ResponseEntity.ok()
+                    .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                            .filename(relatorio.getFileName().toString())
+                            .build()
+                            .toString())
+                    .contentType(MediaType.parseMediaType(TEXT_CSV_VALUE))
+                    .body(new FileSystemResource(relatorio));
+        } catch (IllegalArgumentException exception) {
+            return new ResponseEntity<>(exception.getMessage(), HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    private ResponseEntity<?> importa(FormatoImportacao formato, InputStream corpo) {
+        try {
+            String token = securityHelper.getToken();
+            ResultadoImportacao resultado = importacaoCartaoService.importa(token, formato, corpo);
+            return new ResponseEntity<>(resultado, HttpStatus.OK);
+        } catch (IllegalArgumentException exception) {
+            return new ResponseEntity<>(exception.getMessage(), HttpStatus.BAD_REQUEST);
+        }
+    }
+}
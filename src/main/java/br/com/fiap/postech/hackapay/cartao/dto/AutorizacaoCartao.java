@@ -0,0 +1,9 @@
+package br.com.fiap.postech.hackapay.cartao.dto;
+
+import java.util.UUID;
+
+/*
+ * Campos do cartao conferidos no debito. Nao inclui o limite, que muda a cada debito.
+ */
+public record AutorizacaoCartao(UUID id, String cpf, String cvv, String dataValidade) {
+}
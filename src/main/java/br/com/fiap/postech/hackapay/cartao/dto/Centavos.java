@@ -0,0 +1,32 @@
+package br.com.fiap.postech.hackapay.cartao.dto;
+
+import java.math.BigDecimal;
+
+/*
+ * Valores monetarios circulam internamente como long em centavos; BigDecimal
+ * so aparece na borda (JSON e path variable), na conversao de ida e volta.
+ */
+public final class Centavos {
+
+    static final String VALOR_COM_MAIS_DE_DUAS_CASAS = "valor deve ter no maximo duas casas decimais";
+    static final String VALOR_FORA_DO_INTERVALO = "valor fora do intervalo permitido";
+
+    private Centavos() {
+    }
+
+    public static long de(BigDecimal valor) {
+        // zeros a direita nao contam como casa decimal: 10.500 vale 1050 centavos
+        if (valor.stripTrailingZeros().scale() > 2) {
+            throw new IllegalArgumentException(VALOR_COM_MAIS_DE_DUAS_CASAS);
+        }
+        try {
+            return valor.movePointRight(2).longValueExact();
+        } catch (ArithmeticException exception) {
+            throw new IllegalArgumentException(VALOR_FORA_DO_INTERVALO);
+        }
+    }
+
+    public static BigDecimal paraValor(long centavos) {
+        return BigDecimal.valueOf(centavos, 2);
+    }
+}
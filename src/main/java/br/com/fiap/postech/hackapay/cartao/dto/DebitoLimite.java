@@ -0,0 +1,22 @@
+package br.com.fiap.postech.hackapay.cartao.dto;
+
+import br.com.fiap.postech.hackapay.cartao.entities.Cartao;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.math.BigDecimal;
+
+public record DebitoLimite(@JsonIgnore long valorCentavos, Cartao cartao) {
+
+    // valor ausente vira zero e o debito e rejeitado como valor invalido
+    @JsonCreator
+    public static DebitoLimite de(@JsonProperty("valor") BigDecimal valor, @JsonProperty("cartao") Cartao cartao) {
+        return new DebitoLimite(valor == null ? 0 : Centavos.de(valor), cartao);
+    }
+
+    @JsonProperty("valor")
+    public BigDecimal valor() {
+        return Centavos.paraValor(valorCentavos);
+    }
+}
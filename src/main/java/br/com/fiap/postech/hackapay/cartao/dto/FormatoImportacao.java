@@ -0,0 +1,6 @@
+package br.com.fiap.postech.hackapay.cartao.dto;
+
+public enum FormatoImportacao {
+    CSV,
+    NDJSON
+}
@@ -0,0 +1,13 @@
+package br.com.fiap.postech.hackapay.cartao.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
+/*
+ * Pagina da listagem por cursor: nao traz total de elementos nem de paginas.
+ * O proximoCursor so vem preenchido quando ha mais registros depois desta pagina.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record PaginaCursor<T>(List<T> conteudo, String proximoCursor) {
+}
@@ -0,0 +1,20 @@
+package br.com.fiap.postech.hackapay.cartao.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record ResultadoDebito(String numero, Status status, String motivo) {
+
+    public enum Status {
+        ACEITO,
+        REJEITADO
+    }
+
+    public static ResultadoDebito aceito(String numero) {
+        return new ResultadoDebito(numero, Status.ACEITO, null);
+    }
+
+    public static ResultadoDebito rejeitado(String numero, String motivo) {
+        return new ResultadoDebito(numero, Status.REJEITADO, motivo);
+    }
+}
@@ -0,0 +1,9 @@
+package br.com.fiap.postech.hackapay.cartao.dto;
+
+import java.util.UUID;
+
+/*
+ * O id identifica o relatorio de linhas rejeitadas, baixado em /cartao/import/{id}/rejeitados.
+ */
+public record ResultadoImportacao(UUID id, long recebidos, long importados, long rejeitados) {
+}
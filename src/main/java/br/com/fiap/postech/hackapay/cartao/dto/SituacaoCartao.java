@@ -0,0 +1,10 @@
+package br.com.fiap.postech.hackapay.cartao.dto;
+
+import java.util.UUID;
+
+public record SituacaoCartao(UUID id, String numero, String cpf, String cvv, String dataValidade, long limiteCentavos) {
+
+    public AutorizacaoCartao autorizacao() {
+        return new AutorizacaoCartao(id, cpf, cvv, dataValidade);
+    }
+}
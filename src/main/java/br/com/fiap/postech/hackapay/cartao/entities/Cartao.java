@@ -1,14 +1,21 @@
 package br.com.fiap.postech.hackapay.cartao.entities;
 
+import br.com.fiap.postech.hackapay.cartao.dto.Centavos;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
+import java.math.BigDecimal;
 import java.util.Objects;
 import java.util.UUID;
 
 @Entity
 @Table(name = "tb_cartao")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "cartao")
 @JsonInclude(JsonInclude.Include.NON_NULL)
 public class Cartao {
     @Id
@@ -16,8 +23,9 @@ public class Cartao {
     private UUID id;
     @Column(name = "cpf", nullable = false)
     private String cpf;
-    @Column(name = "limite", nullable = false)
-    private Double limite;
+    // so o insert passa pelo JPA; debitos e alteracoes de limite sao relativos, por SQL
+    @Column(name = "limite_centavos", nullable = false, updatable = false)
+    private Long limiteCentavos;
     @Column(name = "numero", nullable = false)
     private String numero;
     @Column(name = "data_validade", nullable = false)
@@ -30,9 +38,9 @@ public class Cartao {
         super();
     }
 
-    public Cartao(String cpf, Double limite, String numero, String dataValidade, String cvv) {
+    public Cartao(String cpf, Long limiteCentavos, String numero, String dataValidade, String cvv) {
         this.cpf = cpf;
-        this.limite = limite;
+        this.limiteCentavos = limiteCentavos;
         this.numero = numero;
         this.dataValidade = dataValidade;
         this.cvv = cvv;
@@ -66,12 +74,22 @@ public class Cartao {
         this.cpf = cpf;
     }
 
-    public Double getLimite() {
-        return limite;
+    @JsonIgnore
+    public Long getLimiteCentavos() {
+        return limiteCentavos;
     }
 
-    public void setLimite(Double limite) {
-        this.limite = limite;
+    @JsonIgnore
+    public void setLimiteCentavos(Long limiteCentavos) {
+        this.limiteCentavos = limiteCentavos;
+    }
+
+    public BigDecimal getLimite() {
+        return limiteCentavos == null ? null : Centavos.paraValor(limiteCentavos);
+    }
+
+    public void setLimite(BigDecimal limite) {
+        this.limiteCentavos = limite == null ? null : Centavos.de(limite);
     }
 
     public String getNumero() {
@@ -0,0 +1,77 @@
+package br.com.fiap.postech.hackapay.cartao.entities;
+
+import jakarta.persistence.*;
+import org.springframework.data.domain.Persistable;
+
+import java.time.Instant;
+
+@Entity
+@Table(name = "tb_idempotencia")
+public class Idempotencia implements Persistable<String> {
+    @Id
+    @Column(name = "chave", nullable = false, length = 64)
+    private String chave;
+    @Column(name = "aceito", nullable = false)
+    private boolean aceito;
+    @Column(name = "motivo", length = 100)
+    private String motivo;
+    @Column(name = "assinatura", nullable = false, length = 64)
+    private String assinatura;
+    @Column(name = "criado_em", nullable = false)
+    private Instant criadoEm;
+    @Transient
+    private boolean novo = true;
+
+    public Idempotencia() {
+        super();
+    }
+
+    public Idempotencia(String chave, String assinatura, boolean aceito, String motivo) {
+        this.chave = chave;
+        this.assinatura = assinatura;
+        this.aceito = aceito;
+        this.motivo = motivo;
+        this.criadoEm = Instant.now();
+    }
+
+    @PostLoad
+    @PostPersist
+    void marcaCarregado() {
+        this.novo = false;
+    }
+
+    public void registraResultado(boolean aceito, String motivo) {
+        this.aceito = aceito;
+        this.motivo = motivo;
+    }
+
+    @Override
+    public String getId() {
+        return chave;
+    }
+
+    @Override
+    public boolean isNew() {
+        return novo;
+    }
+
+    public String getChave() {
+        return chave;
+    }
+
+    public String getAssinatura() {
+        return assinatura;
+    }
+
+    public boolean isAceito() {
+        return aceito;
+    }
+
+    public String getMotivo() {
+        return motivo;
+    }
+
+    public Instant getCriadoEm() {
+        return criadoEm;
+    }
+}
@@ -0,0 +1,209 @@
+package br.com.fiap.postech.hackapay.cartao.integration;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/*
+ * Hedging: se a chamada nao responde dentro do percentil configurado das
+ * latencias recentes, uma segunda chamada igual e enviada e vale a primeira
+ * resposta com sucesso. Cada chamada acumula uma fracao de credito
+ * (orcamento) e cada chamada extra gasta um credito inteiro, o que limita a
+ * carga adicional a essa fracao. A chamada perdedora nao e interrompida,
+ * apenas tem o resultado descartado.
+ */
+public class ChamadaRedundante<V> implements AutoCloseable {
+
+    private static final int AMOSTRAS = 1024;
+    private static final int AMOSTRAS_MINIMAS = 100;
+    private static final int INTERVALO_RECALCULO = 64;
+    private static final double SALDO_MAXIMO = 10;
+
+    private final boolean habilitada;
+    private final double percentil;
+    private final long atrasoMinimoNanos;
+    private final double orcamento;
+    private final ExecutorService executor;
+    private final Counter enviadas;
+    private final Counter vencedoras;
+    private final Counter semOrcamento;
+
+    /*
+     * ReentrantLock em vez de synchronized, que prende a thread carregadora
+     * quando o chamador e uma virtual thread; a ordenacao das amostras para o
+     * percentil fica fora da trava.
+     */
+    private final ReentrantLock trava = new ReentrantLock();
+    private final long[] latencias = new long[AMOSTRAS];
+    private long registradas;
+    private volatile long atrasoNanos = -1;
+    private double saldo = SALDO_MAXIMO;
+
+    public ChamadaRedundante(MeterRegistry meterRegistry, String nome, boolean habilitada,
+                             double percentil, Duration atrasoMinimo, double orcamento) {
+        this.habilitada = habilitada;
+        this.percentil = percentil;
+        this.atrasoMinimoNanos = atrasoMinimo.toNanos();
+        this.orcamento = orcamento;
+        this.executor = habilitada ? Executors.newVirtualThreadPerTaskExecutor() : null;
+        this.enviadas = contador(meterRegistry, nome, "enviada", "chamadas extras enviadas");
+        this.vencedoras = contador(meterRegistry, nome, "vencedora", "chamadas extras que responderam primeiro");
+        this.semOrcamento = contador(meterRegistry, nome, "sem_orcamento", "chamadas extras nao enviadas por falta de orcamento");
+    }
+
+    public V executa(Supplier<V> chamada) {
+        if (!habilitada) {
+            return chamada.get();
+        }
+        long atraso = novaChamada();
+        if (atraso < 0) {
+            // ainda sem amostras suficientes para estimar o percentil
+            return medida(chamada).get();
+        }
+        CompletableFuture<V> primeira = CompletableFuture.supplyAsync(medida(chamada), executor);
+        try {
+            return primeira.get(atraso, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException exception) {
+            // segue para a chamada extra
+        } catch (ExecutionException exception) {
+            throw desembrulha(exception.getCause());
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            primeira.cancel(false);
+            throw new IllegalStateException(exception);
+        }
+        if (!retiraCredito()) {
+            semOrcamento.increment();
+            return aguarda(primeira);
+        }
+        enviadas.increment();
+        CompletableFuture<V> segunda = CompletableFuture.supplyAsync(medida(chamada), executor);
+        return aguarda(primeiraComSucesso(primeira, segunda));
+    }
+
+    private CompletableFuture<V> primeiraComSucesso(CompletableFuture<V> primeira, CompletableFuture<V> segunda) {
+        CompletableFuture<V> vencedora = new CompletableFuture<>();
+        AtomicInteger falhas = new AtomicInteger();
+        AtomicReference<Throwable> erroPrimeira = new AtomicReference<>();
+        primeira.whenComplete((valor, erro) -> {
+            if (erro == null) {
+                vencedora.complete(valor);
+            } else {
+                erroPrimeira.set(erro);
+                if (falhas.incrementAndGet() == 2) {
+                    vencedora.completeExceptionally(erro);
+                }
+            }
+        });
+        segunda.whenComplete((valor, erro) -> {
+            if (erro == null) {
+                if (vencedora.complete(valor)) {
+                    vencedoras.increment();
+                }
+            } else if (falhas.incrementAndGet() == 2) {
+                // com as duas falhando, vale o erro da chamada original
+                Throwable original = erroPrimeira.get();
+                vencedora.completeExceptionally(original != null ? original : erro);
+            }
+        });
+        return vencedora;
+    }
+
+    private Supplier<V> medida(Supplier<V> chamada) {
+        return () -> {
+            long inicio = System.nanoTime();
+            V valor = chamada.get();
+            registra(System.nanoTime() - inicio);
+            return valor;
+        };
+    }
+
+    private void registra(long latenciaNanos) {
+        long[] copia = null;
+        trava.lock();
+        try {
+            latencias[(int) (registradas % AMOSTRAS)] = latenciaNanos;
+            registradas++;
+            if (registradas >= AMOSTRAS_MINIMAS && registradas % INTERVALO_RECALCULO == 0) {
+                copia = Arrays.copyOf(latencias, (int) Math.min(registradas, AMOSTRAS));
+            }
+        } finally {
+            trava.unlock();
+        }
+        if (copia != null) {
+            Arrays.sort(copia);
+            long atrasoPercentil = copia[(int) Math.min(copia.length - 1, Math.floor(percentil * copia.length))];
+            atrasoNanos = Math.max(atrasoMinimoNanos, atrasoPercentil);
+        }
+    }
+
+    // credita a fracao do orcamento e devolve o atraso atual, negativo enquanto nao ha amostras
+    private long novaChamada() {
+        trava.lock();
+        try {
+            saldo = Math.min(SALDO_MAXIMO, saldo + orcamento);
+        } finally {
+            trava.unlock();
+        }
+        return atrasoNanos;
+    }
+
+    private boolean retiraCredito() {
+        trava.lock();
+        try {
+            if (saldo < 1) {
+                return false;
+            }
+            saldo--;
+            return true;
+        } finally {
+            trava.unlock();
+        }
+    }
+
+    private V aguarda(CompletableFuture<V> future) {
+        try {
+            return future.join();
+        } catch (CompletionException exception) {
+            throw desembrulha(exception.getCause());
+        }
+    }
+
+    private static RuntimeException desembrulha(Throwable causa) {
+        if (causa instanceof CompletionException completion && completion.getCause() != null) {
+            causa = completion.getCause();
+        }
+        if (causa instanceof RuntimeException runtime) {
+            return runtime;
+        }
+        return new IllegalStateException(causa);
+    }
+
+    private static Counter contador(MeterRegistry meterRegistry, String nome, String resultado, String descricao) {
+        return Counter.builder("hackapay.chamada.redundante")
+                .tag("nome", nome)
+                .tag("resultado", resultado)
+                .description(descricao)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package br.com.fiap.postech.hackapay.cartao.integration;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/*
+ * Chamadas simultaneas com a mesma chave compartilham uma unica execucao:
+ * a primeira executa e as demais recebem o mesmo resultado ou a mesma excecao.
+ */
+public class ChamadaUnica<K, V> {
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> emAndamento = new ConcurrentHashMap<>();
+    private final Counter executadas;
+    private final Counter coalescidas;
+
+    public ChamadaUnica(MeterRegistry meterRegistry, String nome) {
+        this.executadas = Counter.builder("hackapay.chamada.unica")
+                .tag("nome", nome)
+                .tag("resultado", "executada")
+                .description("chamadas remotas efetivamente executadas")
+                .register(meterRegistry);
+        this.coalescidas = Counter.builder("hackapay.chamada.unica")
+                .tag("nome", nome)
+                .tag("resultado", "coalescida")
+                .description("chamadas que aproveitaram uma execucao em andamento")
+                .register(meterRegistry);
+    }
+
+    public V executa(K chave, Supplier<V> chamada) {
+        CompletableFuture<V> nova = new CompletableFuture<>();
+        CompletableFuture<V> existente = emAndamento.putIfAbsent(chave, nova);
+        if (existente != null) {
+            coalescidas.increment();
+            return aguarda(existente);
+        }
+        executadas.increment();
+        try {
+            V valor = chamada.get();
+            nova.complete(valor);
+            return valor;
+        } catch (Throwable falha) {
+            // inclusive Error: sem isso quem esta em join() ficaria preso para sempre
+            nova.completeExceptionally(falha);
+            throw falha;
+        } finally {
+            emAndamento.remove(chave, nova);
+        }
+    }
+
+    private V aguarda(CompletableFuture<V> existente) {
+        try {
+            return existente.join();
+        } catch (CompletionException exception) {
+            if (exception.getCause() instanceof RuntimeException causa) {
+                throw causa;
+            }
+            if (exception.getCause() instanceof Error causa) {
+                throw causa;
+            }
+            throw exception;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package br.com.fiap.postech.hackapay.cartao.integration;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/*
+ * Cache de clientes por cpf. Clientes encontrados ficam em cache por mais tempo,
+ * e cpfs sem cliente ficam por pouco tempo, ate o cadastro do cliente ser feito.
+ */
+@Component
+public class ClienteCache {
+
+    private final Cache<String, Optional<Cliente>> clientes;
+
+    @Autowired
+    public ClienteCache(MeterRegistry meterRegistry,
+                        @Value("${hackapay.cliente.cache.tamanho-maximo:100000}") long tamanhoMaximo,
+                        @Value("${hackapay.cliente.cache.ttl-encontrado:1h}") Duration ttlEncontrado,
+                        @Value("${hackapay.cliente.cache.ttl-nao-encontrado:30s}") Duration ttlNaoEncontrado) {
+        this.clientes = Caffeine.newBuilder()
+                .maximumSize(tamanhoMaximo)
+                .expireAfter(new Expiry<String, Optional<Cliente>>() {
+                    @Override
+                    public long expireAfterCreate(String cpf, Optional<Cliente> cliente, long agora) {
+                        return (cliente.isPresent() ? ttlEncontrado : ttlNaoEncontrado).toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String cpf, Optional<Cliente> cliente, long agora, long restante) {
+                        return expireAfterCreate(cpf, cliente, agora);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String cpf, Optional<Cliente> cliente, long agora, long restante) {
+                        return restante;
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, clientes, "cliente");
+    }
+
+    public Cliente busca(String cpf, Supplier<Cliente> carregador) {
+        Optional<Cliente> cliente = consulta(cpf);
+        if (cliente == null) {
+            cliente = Optional.ofNullable(carregador.get());
+            guarda(cpf, cliente.orElse(null));
+        }
+        return cliente.orElse(null);
+    }
+
+    // null quando o cpf nao esta em cache; Optional vazio quando esta como nao encontrado
+    public Optional<Cliente> consulta(String cpf) {
+        return clientes.getIfPresent(cpf);
+    }
+
+    public void guarda(String cpf, Cliente cliente) {
+        clientes.put(cpf, Optional.ofNullable(cliente));
+    }
+
+    public void invalida(String cpf) {
+        clientes.invalidate(cpf);
+    }
+
+    public void invalidaTodos() {
+        clientes.invalidateAll();
+    }
+}
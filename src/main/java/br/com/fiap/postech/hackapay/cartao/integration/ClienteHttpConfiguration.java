@@ -0,0 +1,135 @@
+package br.com.fiap.postech.hackapay.cartao.integration;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.web.client.RestClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.List;
+
+@Configuration
+public class ClienteHttpConfiguration {
+
+    @Value("${hackapay.cliente.url}")
+    String baseURI;
+
+    @Value("${hackapay.cliente.http.connect-timeout:2s}")
+    Duration connectTimeout;
+
+    @Value("${hackapay.cliente.http.read-timeout:5s}")
+    Duration readTimeout;
+
+    // tempo maximo esperando uma conexao livre no pool, o padrao do HttpClient e de 3 minutos
+    @Value("${hackapay.cliente.http.connection-request-timeout:1s}")
+    Duration connectionRequestTimeout;
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "hackapay.cliente.http.http2", havingValue = "false", matchIfMissing = true)
+    public PoolingHttpClientConnectionManager clienteConnectionManager(
+            @Value("${hackapay.cliente.http.max-conexoes:50}") int maxConexoes,
+            @Value("${hackapay.cliente.http.keep-alive:60s}") Duration keepAlive) {
+        return PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxConexoes)
+                .setMaxConnPerRoute(maxConexoes)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.of(connectTimeout))
+                        .setSocketTimeout(Timeout.of(readTimeout))
+                        .setTimeToLive(TimeValue.of(keepAlive))
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+                        .build())
+                .build();
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "hackapay.cliente.http.http2", havingValue = "false", matchIfMissing = true)
+    public MeterBinder clienteConnectionPoolMetrics(PoolingHttpClientConnectionManager clienteConnectionManager) {
+        return new PoolingHttpClientConnectionManagerMetricsBinder(clienteConnectionManager, "cliente");
+    }
+
+    @Bean
+    public RestClient clienteRestClient(ObjectProvider<RestClient.Builder> builders,
+                                        List<PoolingHttpClientConnectionManager> connectionManagers) {
+        // no perfil reativo o Spring Boot nao configura o RestClient.Builder; a importacao ainda usa este cliente
+        RestClient.Builder builder = builders.getIfAvailable(RestClient::builder);
+        ClientHttpRequestFactory requestFactory = connectionManagers.isEmpty()
+                ? http2RequestFactory()
+                : pooledRequestFactory(connectionManagers.get(0));
+        return builder
+                .baseUrl(baseURI)
+                .requestFactory(requestFactory)
+                .build();
+    }
+
+    @Bean
+    public ChamadaUnica<String, Cliente> clienteChamadaUnica(MeterRegistry meterRegistry) {
+        return new ChamadaUnica<>(meterRegistry, "cliente");
+    }
+
+    @Bean(destroyMethod = "close")
+    public ChamadaRedundante<Cliente> clienteChamadaRedundante(
+            MeterRegistry meterRegistry,
+            @Value("${hackapay.cliente.hedge.enabled:false}") boolean habilitada,
+            @Value("${hackapay.cliente.hedge.percentil:0.95}") double percentil,
+            @Value("${hackapay.cliente.hedge.atraso-minimo:10ms}") Duration atrasoMinimo,
+            @Value("${hackapay.cliente.hedge.orcamento:0.05}") double orcamento) {
+        return new ChamadaRedundante<>(meterRegistry, "cliente", habilitada, percentil, atrasoMinimo, orcamento);
+    }
+
+    /*
+     * Pool do WebClient no perfil reativo, com os mesmos limites do pool servlet. O
+     * padrao do Reactor Netty (duas conexoes por nucleo, no minimo 16) estrangula
+     * as consultas quando o servico de cliente fica lento.
+     */
+    @Bean(destroyMethod = "dispose")
+    @Profile("reativo")
+    public ConnectionProvider clienteConnectionProvider(
+            @Value("${hackapay.cliente.http.max-conexoes:50}") int maxConexoes,
+            @Value("${hackapay.cliente.http.keep-alive:60s}") Duration keepAlive) {
+        return ConnectionProvider.builder("cliente")
+                .maxConnections(maxConexoes)
+                .pendingAcquireMaxCount(-1)
+                .pendingAcquireTimeout(connectionRequestTimeout)
+                .maxLifeTime(keepAlive)
+                .maxIdleTime(Duration.ofSeconds(30))
+                .build();
+    }
+
+    private ClientHttpRequestFactory pooledRequestFactory(PoolingHttpClientConnectionManager connectionManager) {
+        var httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .evictIdleConnections(TimeValue.ofSeconds(30))
+                .build();
+        var requestFactory = new HttpComponentsClientHttpRequestFactory(httpClient);
+        requestFactory.setConnectionRequestTimeout(connectionRequestTimeout);
+        return requestFactory;
+    }
+
+    // HTTP/2 multiplexa as chamadas em poucas conexoes, o pool fica a cargo do HttpClient do JDK
+    private ClientHttpRequestFactory http2RequestFactory() {
+        var httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(connectTimeout)
+                .build();
+        var requestFactory = new JdkClientHttpRequestFactory(httpClient);
+        requestFactory.setReadTimeout(readTimeout);
+        return requestFactory;
+    }
+}
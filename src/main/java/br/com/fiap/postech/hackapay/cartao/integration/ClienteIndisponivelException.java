@@ -0,0 +1,12 @@
+package br.com.fiap.postech.hackapay.cartao.integration;
+
+/*
+ * O servico de cliente nao foi chamado porque o circuito esta aberto ou
+ * porque o limite de chamadas simultaneas foi atingido.
+ */
+public class ClienteIndisponivelException extends RuntimeException {
+
+    public ClienteIndisponivelException(Throwable causa) {
+        super("servico de cliente indisponivel, tente novamente mais tarde", causa);
+    }
+}
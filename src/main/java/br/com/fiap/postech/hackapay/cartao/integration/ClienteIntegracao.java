@@ -1,21 +1,112 @@
 package br.com.fiap.postech.hackapay.cartao.integration;
 
-import org.springframework.beans.factory.annotation.Value;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestClient;
 
 @Service
 public class ClienteIntegracao {
 
-    @Value("${hackapay.cliente.url}")
-    String baseURI;
+    static final String METRICA = "hackapay.cliente.integracao";
+    static final String METRICA_REJEITADAS = "hackapay.cliente.rejeitadas";
 
+    private final RestClient restClient;
+    private final ClienteCache clienteCache;
+    private final ChamadaUnica<String, Cliente> chamadaUnica;
+    private final ChamadaRedundante<Cliente> chamadaRedundante;
+    private final CircuitBreaker circuitBreaker;
+    private final Bulkhead bulkhead;
+    private final MeterRegistry meterRegistry;
+
+    @Autowired
+    public ClienteIntegracao(@Qualifier("clienteRestClient") RestClient restClient,
+                             ClienteCache clienteCache,
+                             ChamadaUnica<String, Cliente> chamadaUnica,
+                             ChamadaRedundante<Cliente> chamadaRedundante,
+                             @Qualifier("clienteCircuitBreaker") CircuitBreaker circuitBreaker,
+                             @Qualifier("clienteBulkhead") Bulkhead bulkhead,
+                             MeterRegistry meterRegistry) {
+        this.restClient = restClient;
+        this.clienteCache = clienteCache;
+        this.chamadaUnica = chamadaUnica;
+        this.chamadaRedundante = chamadaRedundante;
+        this.circuitBreaker = circuitBreaker;
+        this.bulkhead = bulkhead;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /*
+     * Com o circuito aberto ou o bulkhead cheio a chamada falha na hora com
+     * ClienteIndisponivelException, sem ocupar conexao nem esperar timeout.
+     * A chamada extra do hedging passa pelo mesmo bulkhead e circuit breaker.
+     * So coalescem chamadas com o mesmo token: um 401 causado pelo token
+     * expirado de um chamador nao pode ser devolvido a quem tem token valido.
+     */
     public Cliente getCliente(String token, String cpf) {
-        RestClient restClient = RestClient.create();
-        return restClient.get()
-                .uri(baseURI + "/findByCpf/{cpf}", cpf)
-                .header("Authorization", "Bearer " + token)
-                .retrieve()
-                .body(Cliente.class);
+        return clienteCache.busca(cpf, () -> chamadaUnica.executa(chaveConsulta(token, cpf),
+                () -> chamadaRedundante.executa(() -> consultaProtegida(token, cpf))));
+    }
+
+    private static String chaveConsulta(String token, String cpf) {
+        return cpf + ' ' + token;
+    }
+
+    private Cliente consultaProtegida(String token, String cpf) {
+        try {
+            return bulkhead.executeSupplier(() -> circuitBreaker.executeSupplier(() -> buscaCliente(token, cpf)));
+        } catch (CallNotPermittedException exception) {
+            throw rejeita("circuito_aberto", exception);
+        } catch (BulkheadFullException exception) {
+            throw rejeita("bulkhead_cheio", exception);
+        }
+    }
+
+    private ClienteIndisponivelException rejeita(String motivo, RuntimeException exception) {
+        Counter.builder(METRICA_REJEITADAS)
+                .tag("motivo", motivo)
+                .description("chamadas ao servico de cliente recusadas sem serem executadas")
+                .register(meterRegistry)
+                .increment();
+        return new ClienteIndisponivelException(exception);
+    }
+
+    /*
+     * Mede apenas as chamadas que chegam ao servico de cliente; os acertos de
+     * cache e as chamadas coalescidas ja tem metricas proprias.
+     */
+    private Cliente buscaCliente(String token, String cpf) {
+        Timer.Sample amostra = Timer.start(meterRegistry);
+        String resultado = "erro";
+        String excecao = "none";
+        try {
+            Cliente cliente = restClient.get()
+                    .uri("/findByCpf/{cpf}", cpf)
+                    .header("Authorization", "Bearer " + token)
+                    .retrieve()
+                    .body(Cliente.class);
+            resultado = "encontrado";
+            return cliente;
+        } catch (HttpClientErrorException.NotFound exception) {
+            resultado = "nao_encontrado";
+            return null;
+        } catch (RuntimeException exception) {
+            excecao = exception.getClass().getSimpleName();
+            throw exception;
+        } finally {
+            amostra.stop(Timer.builder(METRICA)
+                    .tag("resultado", resultado)
+                    .tag("excecao", excecao)
+                    .description("tempo das chamadas ao servico de cliente")
+                    .register(meterRegistry));
+        }
     }
 }
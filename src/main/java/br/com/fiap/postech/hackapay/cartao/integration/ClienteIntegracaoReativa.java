@@ -0,0 +1,94 @@
+package br.com.fiap.postech.hackapay.cartao.integration;
+
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import static br.com.fiap.postech.hackapay.cartao.integration.ClienteIntegracao.METRICA_REJEITADAS;
+
+/*
+ * Equivalente nao bloqueante da ClienteIntegracao: mesmo cache e mesmo circuit
+ * breaker; o bulkhead nao se aplica, ja que a espera nao prende thread. Mono
+ * vazio quando o cliente nao existe.
+ */
+@Service
+@Profile("reativo")
+public class ClienteIntegracaoReativa {
+
+    private final WebClient webClient;
+    private final ClienteCache clienteCache;
+    private final CircuitBreaker circuitBreaker;
+    private final MeterRegistry meterRegistry;
+    private final Duration timeout;
+
+    @Autowired
+    public ClienteIntegracaoReativa(WebClient.Builder builder,
+                                    @Qualifier("clienteConnectionProvider") ConnectionProvider connectionProvider,
+                                    @Value("${hackapay.cliente.url}") String baseURI,
+                                    @Value("${hackapay.cliente.http.connect-timeout:2s}") Duration connectTimeout,
+                                    @Value("${hackapay.cliente.http.read-timeout:5s}") Duration timeout,
+                                    ClienteCache clienteCache,
+                                    @Qualifier("clienteCircuitBreaker") CircuitBreaker circuitBreaker,
+                                    MeterRegistry meterRegistry) {
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeout.toMillis());
+        this.webClient = builder.baseUrl(baseURI)
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .build();
+        this.timeout = timeout;
+        this.clienteCache = clienteCache;
+        this.circuitBreaker = circuitBreaker;
+        this.meterRegistry = meterRegistry;
+    }
+
+    public Mono<Cliente> getCliente(String token, String cpf) {
+        Optional<Cliente> emCache = clienteCache.consulta(cpf);
+        if (emCache != null) {
+            return Mono.justOrEmpty(emCache);
+        }
+        return buscaCliente(token, cpf)
+                .doOnNext(cliente -> clienteCache.guarda(cpf, cliente))
+                .switchIfEmpty(Mono.fromRunnable(() -> clienteCache.guarda(cpf, null)));
+    }
+
+    private Mono<Cliente> buscaCliente(String token, String cpf) {
+        return webClient.get()
+                .uri("/findByCpf/{cpf}", cpf)
+                .header("Authorization", "Bearer " + token)
+                .exchangeToMono(resposta -> {
+                    if (resposta.statusCode().value() == HttpStatus.NOT_FOUND.value()) {
+                        return resposta.releaseBody().then(Mono.<Cliente>empty());
+                    } else if (resposta.statusCode().is2xxSuccessful()) {
+                        return resposta.bodyToMono(Cliente.class);
+                    }
+                    return resposta.createError();
+                })
+                .timeout(timeout)
+                .transformDeferred(CircuitBreakerOperator.of(circuitBreaker))
+                .onErrorMap(CallNotPermittedException.class, exception -> {
+                    Counter.builder(METRICA_REJEITADAS)
+                            .tag("motivo", "circuito_aberto")
+                            .description("chamadas ao servico de cliente recusadas sem serem executadas")
+                            .register(meterRegistry)
+                            .increment();
+                    return new ClienteIndisponivelException(exception);
+                });
+    }
+}
@@ -0,0 +1,88 @@
+package br.com.fiap.postech.hackapay.cartao.integration;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.micrometer.tagged.TaggedBulkheadMetrics;
+import io.github.resilience4j.micrometer.tagged.TaggedCircuitBreakerMetrics;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.time.Duration;
+
+/*
+ * O bulkhead limita quantas threads podem ficar presas esperando o servico de
+ * cliente; o circuit breaker para de chamar o servico quando ele falha ou fica
+ * lento demais. Respostas 4xx nao contam como falha do servico.
+ */
+@Configuration
+public class ClienteResilienciaConfiguration {
+
+    static final String NOME = "cliente";
+
+    @Bean
+    public CircuitBreakerRegistry clienteCircuitBreakerRegistry(
+            @Value("${hackapay.cliente.resiliencia.taxa-falhas:50}") float taxaFalhas,
+            @Value("${hackapay.cliente.resiliencia.taxa-chamadas-lentas:50}") float taxaChamadasLentas,
+            @Value("${hackapay.cliente.resiliencia.duracao-chamada-lenta:2s}") Duration duracaoChamadaLenta,
+            @Value("${hackapay.cliente.resiliencia.janela:20}") int janela,
+            @Value("${hackapay.cliente.resiliencia.minimo-chamadas:10}") int minimoChamadas,
+            @Value("${hackapay.cliente.resiliencia.espera-aberto:30s}") Duration esperaAberto,
+            @Value("${hackapay.cliente.resiliencia.chamadas-meio-aberto:5}") int chamadasMeioAberto) {
+        return CircuitBreakerRegistry.of(CircuitBreakerConfig.custom()
+                .failureRateThreshold(taxaFalhas)
+                .slowCallRateThreshold(taxaChamadasLentas)
+                .slowCallDurationThreshold(duracaoChamadaLenta)
+                .slidingWindowType(CircuitBreakerConfig.SlidingWindowType.COUNT_BASED)
+                .slidingWindowSize(janela)
+                .minimumNumberOfCalls(minimoChamadas)
+                .waitDurationInOpenState(esperaAberto)
+                .automaticTransitionFromOpenToHalfOpenEnabled(true)
+                .permittedNumberOfCallsInHalfOpenState(chamadasMeioAberto)
+                .ignoreException(ClienteResilienciaConfiguration::erroDoChamador)
+                .build());
+    }
+
+    // 4xx, tanto do RestClient quanto do WebClient, indica erro na requisicao e nao falha do servico
+    static boolean erroDoChamador(Throwable exception) {
+        return exception instanceof HttpClientErrorException
+                || (exception instanceof WebClientResponseException resposta && resposta.getStatusCode().is4xxClientError());
+    }
+
+    @Bean
+    public CircuitBreaker clienteCircuitBreaker(CircuitBreakerRegistry clienteCircuitBreakerRegistry) {
+        return clienteCircuitBreakerRegistry.circuitBreaker(NOME);
+    }
+
+    @Bean
+    public BulkheadRegistry clienteBulkheadRegistry(
+            @Value("${hackapay.cliente.resiliencia.bulkhead.max-concorrentes:50}") int maxConcorrentes,
+            @Value("${hackapay.cliente.resiliencia.bulkhead.max-espera:250ms}") Duration maxEspera) {
+        return BulkheadRegistry.of(BulkheadConfig.custom()
+                .maxConcurrentCalls(maxConcorrentes)
+                .maxWaitDuration(maxEspera)
+                .build());
+    }
+
+    @Bean
+    public Bulkhead clienteBulkhead(BulkheadRegistry clienteBulkheadRegistry) {
+        return clienteBulkheadRegistry.bulkhead(NOME);
+    }
+
+    @Bean
+    public MeterBinder clienteCircuitBreakerMetrics(CircuitBreakerRegistry clienteCircuitBreakerRegistry) {
+        return TaggedCircuitBreakerMetrics.ofCircuitBreakerRegistry(clienteCircuitBreakerRegistry);
+    }
+
+    @Bean
+    public MeterBinder clienteBulkheadMetrics(BulkheadRegistry clienteBulkheadRegistry) {
+        return TaggedBulkheadMetrics.ofBulkheadRegistry(clienteBulkheadRegistry);
+    }
+}
@@ -0,0 +1,61 @@
+package br.com.fiap.postech.hackapay.cartao.repository;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.stat.HibernateMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.UUID;
+
+/*
+ * Cache de segundo nivel do Hibernate (JCache sobre Caffeine, em memoria) para
+ * Cartao por id. A regiao e criada aqui para que tamanho e validade venham do
+ * application.properties.
+ */
+@Configuration
+public class CacheSegundoNivelConfiguration {
+
+    public static final String REGIAO_CARTAO = "cartao";
+
+    @Bean(destroyMethod = "close")
+    public CacheManager cacheSegundoNivelManager(
+            @Value("${hackapay.cartao.cache-segundo-nivel.tamanho-maximo:100000}") long tamanhoMaximo,
+            @Value("${hackapay.cartao.cache-segundo-nivel.validade:10m}") Duration validade) {
+        // uma uri por contexto: dois contextos na mesma JVM (como nos testes) nao dividem entradas
+        CacheManager cacheManager = Caching.getCachingProvider(CaffeineCachingProvider.class.getName())
+                .getCacheManager(URI.create("hackapay-cartao-" + UUID.randomUUID()), getClass().getClassLoader());
+        CaffeineConfiguration<Object, Object> configuracao = new CaffeineConfiguration<>();
+        configuracao.setMaximumSize(OptionalLong.of(tamanhoMaximo));
+        configuracao.setExpireAfterWrite(OptionalLong.of(validade.toNanos()));
+        cacheManager.createCache(REGIAO_CARTAO, configuracao);
+        return cacheManager;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer cacheSegundoNivelCustomizer(CacheManager cacheSegundoNivelManager) {
+        return propriedades -> propriedades.put(ConfigSettings.CACHE_MANAGER, cacheSegundoNivelManager);
+    }
+
+    // acertos, faltas e gravacoes por regiao em /actuator/metrics/hibernate.second.level.cache.requests;
+    // depende das estatisticas do Hibernate, desligadas por padrao
+    @Bean
+    @ConditionalOnProperty(name = "hackapay.cartao.cache-segundo-nivel.estatisticas.enabled", havingValue = "true")
+    public MeterBinder cacheSegundoNivelMetrics(EntityManagerFactory entityManagerFactory) {
+        return registry -> new HibernateMetrics(entityManagerFactory.unwrap(SessionFactory.class),
+                "entityManagerFactory", List.of()).bindTo(registry);
+    }
+}
@@ -1,15 +1,47 @@
 package br.com.fiap.postech.hackapay.cartao.repository;
 
+import br.com.fiap.postech.hackapay.cartao.dto.AutorizacaoCartao;
+import br.com.fiap.postech.hackapay.cartao.dto.SituacaoCartao;
 import br.com.fiap.postech.hackapay.cartao.entities.Cartao;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 @Repository
-public interface CartaoRepository extends JpaRepository<Cartao, UUID> {
+public interface CartaoRepository extends JpaRepository<Cartao, UUID>, CartaoRepositoryCustom {
     Integer countByCpf(String cpf);
 
     Optional<Cartao> findByNumero(String numero);
+
+    Optional<AutorizacaoCartao> findAutorizacaoByNumero(String numero);
+
+    /*
+     * Leitura so para frente, em blocos de fetch size, sem passar pelo cache de
+     * segundo nivel. Precisa ser consumida dentro de uma transacao.
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_MODE, value = "IGNORE")
+    })
+    @Query("""
+            select c from Cartao c
+            where (:cpf is null or c.cpf = :cpf)
+              and (:numero is null or c.numero = :numero)
+            order by c.id
+            """)
+    Stream<Cartao> exporta(@Param("cpf") String cpf, @Param("numero") String numero);
+
+    List<SituacaoCartao> findByNumeroIn(Collection<String> numeros);
+
 }
@@ -0,0 +1,33 @@
+package br.com.fiap.postech.hackapay.cartao.repository;
+
+import br.com.fiap.postech.hackapay.cartao.dto.DebitoLimite;
+import br.com.fiap.postech.hackapay.cartao.dto.SituacaoCartao;
+import br.com.fiap.postech.hackapay.cartao.entities.Cartao;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/*
+ * Os debitos sao gravados por JDBC, fora do Hibernate, e por isso nao passam
+ * pelo cache de segundo nivel: quem debita chama removeDoCache com os cartoes alterados.
+ */
+public interface CartaoRepositoryCustom {
+    int debitaLimite(String numero, String cpf, String cvv, String dataValidade, long valorCentavos);
+
+    SituacaoCartao debitaLimiteComSituacao(String numero, String cpf, String cvv, String dataValidade, long valorCentavos);
+
+    int[] debitaLimiteEmLote(List<DebitoLimite> debitos);
+
+    void ajustaLimite(UUID id, long ajusteCentavos);
+
+    void removeDoCache(Collection<UUID> ids);
+
+    int[] insereEmLote(List<Cartao> cartoes);
+
+    Map<String, Long> contaPorCpf(Collection<String> cpfs);
+
+    Set<String> numerosCadastrados(Collection<String> numeros);
+}
@@ -0,0 +1,176 @@
+package br.com.fiap.postech.hackapay.cartao.repository;
+
+import br.com.fiap.postech.hackapay.cartao.dto.DebitoLimite;
+import br.com.fiap.postech.hackapay.cartao.dto.SituacaoCartao;
+import br.com.fiap.postech.hackapay.cartao.entities.Cartao;
+import jakarta.persistence.Cache;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.H2Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+public class CartaoRepositoryCustomImpl implements CartaoRepositoryCustom {
+
+    private static final String SQL_DEBITO = """
+            update tb_cartao set limite_centavos = limite_centavos - ?
+            where numero = ? and cpf = ? and cvv = ? and data_validade = ? and limite_centavos >= ?""";
+    /*
+     * Debita e devolve a linha como estava antes do update, para que quem chama
+     * saiba qual condicao falhou sem uma segunda consulta. O update sempre
+     * atinge a linha do numero; quando alguma condicao falha o limite e
+     * regravado com o mesmo valor. Os parametros seguem a ordem
+     * cpf, cvv, data_validade, valor, valor, numero.
+     */
+    private static final String SQL_DEBITO_COM_SITUACAO_H2 = """
+            select id, cpf, cvv, data_validade, limite_centavos from old table (
+                update tb_cartao set limite_centavos = case
+                    when cpf = ? and cvv = ? and data_validade = ? and limite_centavos >= ? then limite_centavos - ?
+                    else limite_centavos end
+                where numero = ?)""";
+    private static final String SQL_DEBITO_COM_SITUACAO_POSTGRESQL = """
+            update tb_cartao t set limite_centavos = case
+                when t.cpf = ? and t.cvv = ? and t.data_validade = ? and t.limite_centavos >= ? then t.limite_centavos - ?
+                else t.limite_centavos end
+            from (select id, limite_centavos from tb_cartao where numero = ? for update) antes
+            where t.id = antes.id
+            returning t.id, t.cpf, t.cvv, t.data_validade, antes.limite_centavos""";
+    private static final String SQL_DEBITO_LOTE = "update tb_cartao set limite_centavos = limite_centavos - ? where numero = ? and limite_centavos >= ?";
+    private static final String SQL_AJUSTA_LIMITE = "update tb_cartao set limite_centavos = limite_centavos + ? where id = ?";
+
+    private static final String SQL_INSERE = """
+            insert into tb_cartao (id, cpf, limite_centavos, numero, data_validade, cvv)
+            values (?, ?, ?, ?, ?, ?)""";
+    private static final String SQL_CONTA_POR_CPF = "select cpf, count(*) from tb_cartao where cpf in (:cpfs) group by cpf";
+    private static final String SQL_NUMEROS_CADASTRADOS = "select numero from tb_cartao where numero in (:numeros)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private final EntityManagerFactory entityManagerFactory;
+    private final String sqlDebitoComSituacao;
+
+    @Autowired
+    public CartaoRepositoryCustomImpl(JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.entityManagerFactory = entityManagerFactory;
+        // o dialeto que o Hibernate ja resolveu na subida, sem abrir outra conexao
+        Dialect dialeto = entityManagerFactory.unwrap(SessionFactoryImplementor.class).getJdbcServices().getDialect();
+        this.sqlDebitoComSituacao = dialeto instanceof H2Dialect ? SQL_DEBITO_COM_SITUACAO_H2 : SQL_DEBITO_COM_SITUACAO_POSTGRESQL;
+    }
+
+    /*
+     * Um update JPQL faria o Hibernate esvaziar toda a regiao de Cartao no cache
+     * de segundo nivel a cada debito; por JDBC so o cartao debitado sai do cache.
+     */
+    @Override
+    public int debitaLimite(String numero, String cpf, String cvv, String dataValidade, long valorCentavos) {
+        return jdbcTemplate.update(SQL_DEBITO, valorCentavos, numero, cpf, cvv, dataValidade, valorCentavos);
+    }
+
+    @Override
+    public SituacaoCartao debitaLimiteComSituacao(String numero, String cpf, String cvv, String dataValidade, long valorCentavos) {
+        List<SituacaoCartao> situacoes = jdbcTemplate.query(sqlDebitoComSituacao,
+                (resultado, linha) -> new SituacaoCartao(
+                        resultado.getObject("id", UUID.class),
+                        numero,
+                        resultado.getString("cpf"),
+                        resultado.getString("cvv"),
+                        resultado.getString("data_validade"),
+                        resultado.getLong("limite_centavos")),
+                cpf, cvv, dataValidade, valorCentavos, valorCentavos, numero);
+        return situacoes.isEmpty() ? null : situacoes.get(0);
+    }
+
+    @Override
+    public int[] debitaLimiteEmLote(List<DebitoLimite> debitos) {
+        List<Object[]> parametros = debitos.stream()
+                .map(debito -> new Object[]{debito.valorCentavos(), debito.cartao().getNumero(), debito.valorCentavos()})
+                .toList();
+        return jdbcTemplate.batchUpdate(SQL_DEBITO_LOTE, parametros);
+    }
+
+    @Override
+    public void ajustaLimite(UUID id, long ajusteCentavos) {
+        jdbcTemplate.update(SQL_AJUSTA_LIMITE, ajusteCentavos, id);
+    }
+
+    @Override
+    public void removeDoCache(Collection<UUID> ids) {
+        Cache cache = entityManagerFactory.getCache();
+        ids.forEach(id -> cache.evict(Cartao.class, id));
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // remove de novo no fim da transacao, descartando o que outra transacao tenha lido antes do commit
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    ids.forEach(id -> cache.evict(Cartao.class, id));
+                }
+            });
+        }
+    }
+
+    /*
+     * No PostgreSQL o driver so junta o lote em inserts de varias linhas com
+     * reWriteBatchedInserts=true na url de conexao.
+     */
+    @Override
+    public int[] insereEmLote(List<Cartao> cartoes) {
+        return jdbcTemplate.batchUpdate(SQL_INSERE, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement statement, int indice) throws SQLException {
+                Cartao cartao = cartoes.get(indice);
+                statement.setObject(1, cartao.getId());
+                statement.setString(2, cartao.getCpf());
+                statement.setLong(3, cartao.getLimiteCentavos());
+                statement.setString(4, cartao.getNumero());
+                statement.setString(5, cartao.getDataValidade());
+                statement.setString(6, cartao.getCvv());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return cartoes.size();
+            }
+        });
+    }
+
+    @Override
+    public Map<String, Long> contaPorCpf(Collection<String> cpfs) {
+        Map<String, Long> contagem = new HashMap<>();
+        if (!cpfs.isEmpty()) {
+            namedParameterJdbcTemplate.query(SQL_CONTA_POR_CPF, Map.of("cpfs", cpfs),
+                    resultado -> {
+                        contagem.put(resultado.getString(1), resultado.getLong(2));
+                    });
+        }
+        return contagem;
+    }
+
+    @Override
+    public Set<String> numerosCadastrados(Collection<String> numeros) {
+        Set<String> cadastrados = new HashSet<>();
+        if (!numeros.isEmpty()) {
+            namedParameterJdbcTemplate.query(SQL_NUMEROS_CADASTRADOS, Map.of("numeros", numeros),
+                    resultado -> {
+                        cadastrados.add(resultado.getString(1));
+                    });
+        }
+        return cadastrados;
+    }
+}
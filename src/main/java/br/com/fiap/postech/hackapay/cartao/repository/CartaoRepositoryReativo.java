@@ -0,0 +1,172 @@
+package br.com.fiap.postech.hackapay.cartao.repository;
+
+import br.com.fiap.postech.hackapay.cartao.dto.AutorizacaoCartao;
+import br.com.fiap.postech.hackapay.cartao.entities.Cartao;
+import io.r2dbc.spi.Readable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.UUID;
+
+/*
+ * Equivalente reativo do CartaoRepository, por SQL sobre o DatabaseClient do
+ * R2DBC. Os filtros por cpf e numero seguem o Example do JPA: campo nulo nao filtra
+ * e fica fora do where, para que o PostgreSQL use os indices de cpf e numero
+ * tambem no plano generico do prepared statement.
+ */
+@Repository
+@Profile("reativo")
+public class CartaoRepositoryReativo {
+
+    private static final String COLUNAS = "id, cpf, limite_centavos, numero, data_validade, cvv";
+
+    private static final String SQL_CONTA_POR_CPF = "select count(*) from tb_cartao where cpf = :cpf";
+    private static final String SQL_INSERE = """
+            insert into tb_cartao (id, cpf, limite_centavos, numero, data_validade, cvv)
+            values (:id, :cpf, :limite, :numero, :dataValidade, :cvv)""";
+    private static final String SQL_BUSCA_POR_ID = "select " + COLUNAS + " from tb_cartao where id = :id";
+    // %s recebe o where montado so com os filtros informados
+    private static final String SQL_LISTA = "select " + COLUNAS + " from tb_cartao%s order by id limit :limite offset :deslocamento";
+    private static final String SQL_CONTA = "select count(*) from tb_cartao%s";
+    private static final String SQL_EXPORTA = "select " + COLUNAS + " from tb_cartao%s order by id";
+    // o limite muda pela diferenca, sem desfazer debitos gravados depois da leitura do cartao
+    private static final String SQL_ATUALIZA = "update tb_cartao set numero = :numero, limite_centavos = limite_centavos + :ajuste where id = :id";
+    private static final String SQL_REMOVE = "delete from tb_cartao where id = :id";
+    private static final String SQL_DEBITO = """
+            update tb_cartao set limite_centavos = limite_centavos - :valor
+            where numero = :numero and cpf = :cpf and cvv = :cvv and data_validade = :dataValidade and limite_centavos >= :valor""";
+    private static final String SQL_AUTORIZACAO = "select id, cpf, cvv, data_validade from tb_cartao where numero = :numero";
+
+    private final DatabaseClient databaseClient;
+
+    @Autowired
+    public CartaoRepositoryReativo(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    public Mono<Long> countByCpf(String cpf) {
+        return databaseClient.sql(SQL_CONTA_POR_CPF)
+                .bind("cpf", cpf)
+                .map(linha -> linha.get(0, Long.class))
+                .one();
+    }
+
+    public Mono<Cartao> insere(Cartao cartao) {
+        return databaseClient.sql(SQL_INSERE)
+                .bind("id", cartao.getId())
+                .bind("cpf", cartao.getCpf())
+                .bind("limite", cartao.getLimiteCentavos())
+                .bind("numero", cartao.getNumero())
+                .bind("dataValidade", cartao.getDataValidade())
+                .bind("cvv", cartao.getCvv())
+                .fetch()
+                .rowsUpdated()
+                .thenReturn(cartao);
+    }
+
+    public Mono<Cartao> findById(UUID id) {
+        return databaseClient.sql(SQL_BUSCA_POR_ID)
+                .bind("id", id)
+                .map(CartaoRepositoryReativo::cartao)
+                .one();
+    }
+
+    public Mono<Page<Cartao>> findAll(String cpf, String numero, Pageable pageable) {
+        Mono<List<Cartao>> conteudo = filtra(SQL_LISTA, cpf, numero)
+                .bind("limite", pageable.getPageSize())
+                .bind("deslocamento", pageable.getOffset())
+                .map(CartaoRepositoryReativo::cartao)
+                .all()
+                .collectList();
+        Mono<Long> total = filtra(SQL_CONTA, cpf, numero)
+                .map(linha -> linha.get(0, Long.class))
+                .one();
+        return Mono.zip(conteudo, total).map(resultado -> new PageImpl<>(resultado.getT1(), pageable, resultado.getT2()));
+    }
+
+    public Flux<Cartao> exporta(String cpf, String numero) {
+        return filtra(SQL_EXPORTA, cpf, numero)
+                .map(CartaoRepositoryReativo::cartao)
+                .all();
+    }
+
+    public Mono<Cartao> atualiza(Cartao cartao, long ajusteLimiteCentavos) {
+        return databaseClient.sql(SQL_ATUALIZA)
+                .bind("numero", cartao.getNumero())
+                .bind("ajuste", ajusteLimiteCentavos)
+                .bind("id", cartao.getId())
+                .fetch()
+                .rowsUpdated()
+                .thenReturn(cartao);
+    }
+
+    public Mono<Long> deleteById(UUID id) {
+        return databaseClient.sql(SQL_REMOVE)
+                .bind("id", id)
+                .fetch()
+                .rowsUpdated();
+    }
+
+    public Mono<Long> debitaLimite(String numero, String cpf, String cvv, String dataValidade, long valorCentavos) {
+        return databaseClient.sql(SQL_DEBITO)
+                .bind("valor", valorCentavos)
+                .bind("numero", numero)
+                .bind("cpf", cpf)
+                .bind("cvv", cvv)
+                .bind("dataValidade", dataValidade)
+                .fetch()
+                .rowsUpdated();
+    }
+
+    public Mono<AutorizacaoCartao> findAutorizacaoByNumero(String numero) {
+        return databaseClient.sql(SQL_AUTORIZACAO)
+                .bind("numero", numero)
+                .map(linha -> new AutorizacaoCartao(
+                        linha.get("id", UUID.class),
+                        linha.get("cpf", String.class),
+                        linha.get("cvv", String.class),
+                        linha.get("data_validade", String.class)))
+                .one();
+    }
+
+    private DatabaseClient.GenericExecuteSpec filtra(String sql, String cpf, String numero) {
+        DatabaseClient.GenericExecuteSpec consulta = databaseClient.sql(sql.formatted(onde(cpf, numero)));
+        if (cpf != null) {
+            consulta = consulta.bind("cpf", cpf);
+        }
+        if (numero != null) {
+            consulta = consulta.bind("numero", numero);
+        }
+        return consulta;
+    }
+
+    private static String onde(String cpf, String numero) {
+        if (cpf != null && numero != null) {
+            return " where cpf = :cpf and numero = :numero";
+        } else if (cpf != null) {
+            return " where cpf = :cpf";
+        } else if (numero != null) {
+            return " where numero = :numero";
+        }
+        return "";
+    }
+
+    private static Cartao cartao(Readable linha) {
+        Cartao cartao = new Cartao(
+                linha.get("cpf", String.class),
+                linha.get("limite_centavos", Long.class),
+                linha.get("numero", String.class),
+                linha.get("data_validade", String.class),
+                linha.get("cvv", String.class));
+        cartao.setId(linha.get("id", UUID.class));
+        return cartao;
+    }
+}
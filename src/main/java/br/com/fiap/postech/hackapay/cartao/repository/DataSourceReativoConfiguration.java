@@ -0,0 +1,30 @@
+package br.com.fiap.postech.hackapay.cartao.repository;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+/*
+ * Com um ConnectionFactory do R2DBC no contexto o Spring Boot deixa de criar o
+ * DataSource. No perfil reativo ele e declarado aqui, com as mesmas propriedades
+ * spring.datasource.*, para o Flyway, o JPA e os servicos em segundo plano.
+ */
+@Configuration
+@Profile("reativo")
+public class DataSourceReativoConfiguration {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource")
+    public DataSourceProperties dataSourceProperties() {
+        return new DataSourceProperties();
+    }
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource dataSource(DataSourceProperties dataSourceProperties) {
+        return dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+}
@@ -0,0 +1,50 @@
+package br.com.fiap.postech.hackapay.cartao.repository;
+
+import org.springframework.boot.autoconfigure.AutoConfigurationImportFilter;
+import org.springframework.boot.autoconfigure.AutoConfigurationMetadata;
+import org.springframework.boot.autoconfigure.data.r2dbc.R2dbcDataAutoConfiguration;
+import org.springframework.boot.autoconfigure.data.r2dbc.R2dbcRepositoriesAutoConfiguration;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcAutoConfiguration;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcTransactionManagerAutoConfiguration;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.Profiles;
+
+import java.util.Set;
+
+/*
+ * O R2DBC so e usado pela pilha reativa. Filtrar a configuracao automatica aqui,
+ * e nao em spring.autoconfigure.exclude, evita que um perfil que defina a
+ * propriedade o religue. O gerenciador de transacoes do R2DBC fica sempre de
+ * fora: disputaria com o do JPA nos @Transactional, e os comandos da pilha
+ * reativa sao um unico statement cada.
+ */
+public class FiltroR2dbcReativo implements AutoConfigurationImportFilter, EnvironmentAware {
+
+    private static final Set<String> SO_NO_PERFIL_REATIVO = Set.of(
+            R2dbcAutoConfiguration.class.getName(),
+            R2dbcDataAutoConfiguration.class.getName(),
+            R2dbcRepositoriesAutoConfiguration.class.getName()
+    );
+    private static final String GERENCIADOR_TRANSACOES = R2dbcTransactionManagerAutoConfiguration.class.getName();
+
+    private Environment environment;
+
+    @Override
+    public void setEnvironment(Environment environment) {
+        this.environment = environment;
+    }
+
+    @Override
+    public boolean[] match(String[] autoConfigurationClasses, AutoConfigurationMetadata autoConfigurationMetadata) {
+        boolean reativo = environment.acceptsProfiles(Profiles.of("reativo"));
+        boolean[] aceitas = new boolean[autoConfigurationClasses.length];
+        for (int i = 0; i < autoConfigurationClasses.length; i++) {
+            // as posicoes ja descartadas por outros filtros chegam nulas
+            String classe = autoConfigurationClasses[i];
+            aceitas[i] = classe == null
+                    || !GERENCIADOR_TRANSACOES.equals(classe) && (reativo || !SO_NO_PERFIL_REATIVO.contains(classe));
+        }
+        return aceitas;
+    }
+}
@@ -0,0 +1,20 @@
+package br.com.fiap.postech.hackapay.cartao.repository;
+
+import br.com.fiap.postech.hackapay.cartao.entities.Idempotencia;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+
+@Repository
+public interface IdempotenciaRepository extends JpaRepository<Idempotencia, String> {
+
+    @Transactional
+    @Modifying
+    @Query("delete from Idempotencia i where i.criadoEm < :limite")
+    int removeCriadasAntesDe(@Param("limite") Instant limite);
+}
@@ -0,0 +1,28 @@
+package br.com.fiap.postech.hackapay.cartao.repository;
+
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.util.Locale;
+
+/*
+ * Identifica qual restricao do banco uma violacao de integridade quebrou. O nome
+ * do indice aparece na mensagem do driver, do JDBC e do R2DBC, no H2 em
+ * maiusculas ("PUBLIC.UX_CARTAO_NUMERO") e no PostgreSQL entre aspas.
+ */
+public final class RestricoesCartao {
+
+    static final String NUMERO_UNICO = "ux_cartao_numero";
+
+    private RestricoesCartao() {
+    }
+
+    public static boolean violaNumeroUnico(DataIntegrityViolationException exception) {
+        for (Throwable causa = exception; causa != null; causa = causa.getCause()) {
+            String mensagem = causa.getMessage();
+            if (mensagem != null && mensagem.toLowerCase(Locale.ROOT).contains(NUMERO_UNICO)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,87 @@
+package br.com.fiap.postech.hackapay.cartao.security;
+
+import br.com.fiap.postech.hackapay.security.JwtService;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Date;
+import java.util.HexFormat;
+
+/*
+ * Guarda as claims de tokens ja verificados, pela SHA-256 do token inteiro
+ * (assinatura incluida), ate o exp do token ou a validade maxima, o que vier
+ * primeiro. Um token adulterado tem outro hash e passa pela verificacao
+ * normal. Tokens sem exp nao ficam em cache. As claims devolvidas sao
+ * compartilhadas entre requisicoes e nao devem ser alteradas.
+ */
+public class JwtServiceComCache extends JwtService {
+
+    private final Cache<String, Claims> claims;
+    private final long validadeMaximaNanos;
+
+    public JwtServiceComCache(MeterRegistry meterRegistry, long tamanhoMaximo, Duration validadeMaxima) {
+        this.validadeMaximaNanos = validadeMaxima.toNanos();
+        this.claims = Caffeine.newBuilder()
+                .maximumSize(tamanhoMaximo)
+                .expireAfter(new Expiry<String, Claims>() {
+                    @Override
+                    public long expireAfterCreate(String hash, Claims valor, long agora) {
+                        return validade(valor);
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String hash, Claims valor, long agora, long restante) {
+                        return restante;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String hash, Claims valor, long agora, long restante) {
+                        return restante;
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, claims, "claims-jwt");
+    }
+
+    @Override
+    public Claims extractAllClaims(String token) {
+        String hash = hash(token);
+        Claims verificadas = claims.getIfPresent(hash);
+        if (verificadas == null) {
+            verificadas = super.extractAllClaims(token);
+            if (verificadas.getExpiration() != null) {
+                claims.put(hash, verificadas);
+            }
+        }
+        return verificadas;
+    }
+
+    @Override
+    public String extractUsername(String token) {
+        return extractAllClaims(token).getSubject();
+    }
+
+    private long validade(Claims valor) {
+        Date expiracao = valor.getExpiration();
+        long restante = Duration.ofMillis(expiracao.getTime() - System.currentTimeMillis()).toNanos();
+        return Math.max(0, Math.min(restante, validadeMaximaNanos));
+    }
+
+    private static String hash(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException exception) {
+            throw new IllegalStateException(exception);
+        }
+    }
+}
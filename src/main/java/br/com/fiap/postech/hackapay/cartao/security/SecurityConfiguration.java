@@ -1,12 +1,37 @@
 package br.com.fiap.postech.hackapay.cartao.security;
 
+import br.com.fiap.postech.hackapay.security.JwtService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+
+import java.time.Duration;
 
 @Configuration
 @EnableAutoConfiguration
-@ComponentScan(basePackages = "br.com.fiap.postech.hackapay.security")
 public class SecurityConfiguration {
 
+    // substitui o JwtService da biblioteca no filtro de autenticacao, evitando verificar a assinatura a cada requisicao
+    @Bean
+    @Primary
+    @ConditionalOnProperty(name = "hackapay.seguranca.cache-claims.enabled", havingValue = "true", matchIfMissing = true)
+    public JwtService jwtServiceComCache(
+            MeterRegistry meterRegistry,
+            @Value("${hackapay.seguranca.cache-claims.tamanho-maximo:100000}") long tamanhoMaximo,
+            @Value("${hackapay.seguranca.cache-claims.validade-maxima:10m}") Duration validadeMaxima) {
+        return new JwtServiceComCache(meterRegistry, tamanhoMaximo, validadeMaxima);
+    }
+
+    // a cadeia de filtros da biblioteca HackaPay-Security e servlet; no perfil reativo vale a SegurancaReativaConfiguration
+    @Configuration
+    @Profile("!reativo")
+    @ComponentScan(basePackages = "br.com.fiap.postech.hackapay.security")
+    static class SegurancaServlet {
+    }
 }
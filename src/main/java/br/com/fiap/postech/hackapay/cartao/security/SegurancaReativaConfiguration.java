@@ -0,0 +1,98 @@
+package br.com.fiap.postech.hackapay.cartao.security;
+
+import br.com.fiap.postech.hackapay.security.JwtService;
+import br.com.fiap.postech.hackapay.security.UserDetailsServiceImpl;
+import io.jsonwebtoken.JwtException;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.authentication.AccountStatusUserDetailsChecker;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.ReactiveAuthenticationManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
+import org.springframework.security.config.web.server.SecurityWebFiltersOrder;
+import org.springframework.security.config.web.server.ServerHttpSecurity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.security.web.server.SecurityWebFilterChain;
+import org.springframework.security.web.server.authentication.AuthenticationWebFilter;
+import org.springframework.security.web.server.authentication.ServerAuthenticationConverter;
+import org.springframework.security.web.server.context.NoOpServerSecurityContextRepository;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/*
+ * Autenticacao da pilha reativa: o token Bearer e validado pelo JwtService (com
+ * o cache de claims) e, como na biblioteca servlet, o usuario do subject e
+ * buscado no servico de usuario a cada requisicao; usuario removido, desativado
+ * ou bloqueado recebe 401 mesmo com o token ainda valido. A busca e bloqueante
+ * e roda no boundedElastic.
+ */
+@Configuration
+@Profile("reativo")
+@EnableWebFluxSecurity
+public class SegurancaReativaConfiguration {
+
+    private static final String PREFIXO_BEARER = "Bearer ";
+
+    // fora do perfil reativo o bean vem do component scan da biblioteca (SecurityConfiguration)
+    @Bean
+    public UserDetailsServiceImpl userDetailsServiceImpl() {
+        return new UserDetailsServiceImpl();
+    }
+
+    @Bean
+    public ReactiveAuthenticationManager jwtAuthenticationManager(ObjectProvider<JwtService> jwtServices,
+                                                                  UserDetailsService userDetailsService) {
+        JwtService jwtService = jwtServices.getIfAvailable(JwtService::new);
+        AccountStatusUserDetailsChecker verificaConta = new AccountStatusUserDetailsChecker();
+        return autenticacao -> Mono.fromCallable(() -> {
+                    try {
+                        return jwtService.extractAllClaims((String) autenticacao.getCredentials()).getSubject();
+                    } catch (JwtException | IllegalArgumentException exception) {
+                        throw new BadCredentialsException("token invalido", exception);
+                    }
+                })
+                .publishOn(Schedulers.boundedElastic())
+                .map(usuario -> {
+                    UserDetails userDetails;
+                    try {
+                        userDetails = userDetailsService.loadUserByUsername(usuario);
+                    } catch (UsernameNotFoundException exception) {
+                        throw new BadCredentialsException("usuario nao encontrado", exception);
+                    }
+                    verificaConta.check(userDetails);
+                    return (Authentication) UsernamePasswordAuthenticationToken.authenticated(
+                            userDetails, autenticacao.getCredentials(), userDetails.getAuthorities());
+                });
+    }
+
+    @Bean
+    public SecurityWebFilterChain securityWebFilterChain(ServerHttpSecurity http,
+                                                         ReactiveAuthenticationManager jwtAuthenticationManager) {
+        AuthenticationWebFilter filtroJwt = new AuthenticationWebFilter(jwtAuthenticationManager);
+        filtroJwt.setServerAuthenticationConverter(tokenBearer());
+        return http
+                .csrf(ServerHttpSecurity.CsrfSpec::disable)
+                .httpBasic(ServerHttpSecurity.HttpBasicSpec::disable)
+                .formLogin(ServerHttpSecurity.FormLoginSpec::disable)
+                .securityContextRepository(NoOpServerSecurityContextRepository.getInstance())
+                .authorizeExchange(troca -> troca
+                        .pathMatchers("/actuator/**").permitAll()
+                        .anyExchange().authenticated())
+                .addFilterAt(filtroJwt, SecurityWebFiltersOrder.AUTHENTICATION)
+                .build();
+    }
+
+    private static ServerAuthenticationConverter tokenBearer() {
+        return troca -> Mono.justOrEmpty(troca.getRequest().getHeaders().getFirst(HttpHeaders.AUTHORIZATION))
+                .filter(cabecalho -> cabecalho.startsWith(PREFIXO_BEARER))
+                .map(cabecalho -> cabecalho.substring(PREFIXO_BEARER.length()))
+                .map(token -> UsernamePasswordAuthenticationToken.unauthenticated(token, token));
+    }
+}
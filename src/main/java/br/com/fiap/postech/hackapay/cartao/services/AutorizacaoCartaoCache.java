@@ -0,0 +1,61 @@
+package br.com.fiap.postech.hackapay.cartao.services;
+
+import br.com.fiap.postech.hackapay.cartao.dto.AutorizacaoCartao;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/*
+ * Cache por numero do cartao dos campos conferidos no debito. Cartoes nao
+ * encontrados nao ficam em cache. A validade limita o tempo em que uma instancia
+ * pode usar dados alterados ou removidos por outra.
+ */
+@Component
+public class AutorizacaoCartaoCache {
+
+    private final Cache<String, AutorizacaoCartao> autorizacoes;
+
+    @Autowired
+    public AutorizacaoCartaoCache(MeterRegistry meterRegistry,
+                                  @Value("${hackapay.cartao.autorizacao.tamanho-maximo:100000}") long tamanhoMaximo,
+                                  @Value("${hackapay.cartao.autorizacao.validade:10m}") Duration validade) {
+        this.autorizacoes = Caffeine.newBuilder()
+                .maximumSize(tamanhoMaximo)
+                .expireAfterWrite(validade)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, autorizacoes, "autorizacao-cartao");
+    }
+
+    public AutorizacaoCartao busca(String numero, Supplier<AutorizacaoCartao> carregador) {
+        AutorizacaoCartao autorizacao = autorizacoes.getIfPresent(numero);
+        if (autorizacao == null) {
+            autorizacao = carregador.get();
+            atualiza(numero, autorizacao);
+        }
+        return autorizacao;
+    }
+
+    public AutorizacaoCartao consulta(String numero) {
+        return autorizacoes.getIfPresent(numero);
+    }
+
+    public void atualiza(String numero, AutorizacaoCartao autorizacao) {
+        if (autorizacao == null) {
+            autorizacoes.invalidate(numero);
+        } else {
+            autorizacoes.put(numero, autorizacao);
+        }
+    }
+
+    public void invalida(String numero) {
+        autorizacoes.invalidate(numero);
+    }
+}
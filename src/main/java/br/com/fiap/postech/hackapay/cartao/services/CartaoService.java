@@ -1,21 +1,32 @@
 package br.com.fiap.postech.hackapay.cartao.services;
 
+import br.com.fiap.postech.hackapay.cartao.dto.DebitoLimite;
+import br.com.fiap.postech.hackapay.cartao.dto.PaginaCursor;
+import br.com.fiap.postech.hackapay.cartao.dto.ResultadoDebito;
 import br.com.fiap.postech.hackapay.cartao.entities.Cartao;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
+import java.util.List;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 public interface CartaoService {
     Cartao save(String token, Cartao cartao);
 
     Page<Cartao> findAll(Pageable pageable, Cartao cartao);
 
+    PaginaCursor<Cartao> findAll(String cursor, int size, Cartao cartao);
+
+    void exporta(Cartao cartao, Consumer<Cartao> consumidor);
+
     Cartao findById(UUID id);
 
     Cartao update(UUID id, Cartao cartao);
 
     void delete(UUID id);
 
-    void atualizaLimiteCartao(Double valor, Cartao cartaoDTO);
+    void atualizaLimiteCartao(long valorCentavos, Cartao cartaoDTO);
+
+    List<ResultadoDebito> atualizaLimiteCartaoLote(List<DebitoLimite> debitos);
 }
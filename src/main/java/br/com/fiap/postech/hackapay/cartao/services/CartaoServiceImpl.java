@@ -1,103 +1,448 @@
 package br.com.fiap.postech.hackapay.cartao.services;
 
+import br.com.fiap.postech.hackapay.cartao.dto.AutorizacaoCartao;
+import br.com.fiap.postech.hackapay.cartao.dto.DebitoLimite;
+import br.com.fiap.postech.hackapay.cartao.dto.PaginaCursor;
+import br.com.fiap.postech.hackapay.cartao.dto.ResultadoDebito;
+import br.com.fiap.postech.hackapay.cartao.dto.SituacaoCartao;
 import br.com.fiap.postech.hackapay.cartao.entities.Cartao;
 import br.com.fiap.postech.hackapay.cartao.integration.Cliente;
 import br.com.fiap.postech.hackapay.cartao.integration.ClienteIntegracao;
 import br.com.fiap.postech.hackapay.cartao.repository.CartaoRepository;
 import io.micrometer.common.util.StringUtils;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Example;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.util.Optional;
-import java.util.UUID;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.Collectors;
 
 @Service
 public class CartaoServiceImpl implements CartaoService {
 
+    static final String CARTAO_NAO_ENCONTRADO = "cartao nao encontrado";
+    static final String CARTAO_ID_NAO_ENCONTRADO = "Cartao não encontrado com o ID: ";
+    static final String CPF_NAO_CONFERE = "cpf do cartao nao confere";
+    static final String CVV_NAO_CONFERE = "cvv do cartao nao confere";
+    static final String DATA_VALIDADE_NAO_CONFERE = "data de validade do cartao nao confere";
+    static final String LIMITE_INSUFICIENTE = "nao ha mais limite disponivel no cartao.";
+    static final String VALOR_INVALIDO = "valor do debito deve ser maior que zero";
+    static final String DEBITO_NULO = "o lote nao pode ter debitos nulos.";
+    static final String CURSOR_INVALIDO = "cursor invalido";
+    static final String TAMANHO_PAGINA_INVALIDO = "tamanho da pagina deve ser maior que zero";
+    static final String CLIENTE_NAO_CADASTRADO = "Cliente nao cadastrado.";
+    static final String MAXIMO_CARTOES_EXCEDIDO = "um Cliente pode ter no maximo 2 cartoes.";
+    static final long MAXIMO_CARTOES_POR_CLIENTE = 2;
+
+    @Value("${hackapay.cartao.lote.tamanho-maximo:500}")
+    int tamanhoMaximoLote = 500;
+
     private final CartaoRepository cartaoRepository;
     private final ClienteIntegracao clienteIntegracao;
+    private final LedgerLimite ledgerLimite;
+    private final CombinadorDebito combinadorDebito;
+    private final AutorizacaoCartaoCache autorizacaoCartaoCache;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final Executor executor;
 
+    /*
+     * A consulta ao cliente no cadastro tem executor proprio, fora do
+     * applicationTaskExecutor das requisicoes assincronas (exportacao). As
+     * virtual threads nao limitam a concorrencia: o bulkhead do ClienteIntegracao faz isso.
+     * Com consulta-paralela=false a consulta roda na propria thread, antes da
+     * contagem; serve de linha de base para o CadastroCartaoBenchmark.
+     */
     @Autowired
-    public CartaoServiceImpl(CartaoRepository cartaoRepository, ClienteIntegracao clienteIntegracao) {
+    public CartaoServiceImpl(CartaoRepository cartaoRepository,
+                             ClienteIntegracao clienteIntegracao,
+                             Optional<LedgerLimite> ledgerLimite,
+                             Optional<CombinadorDebito> combinadorDebito,
+                             AutorizacaoCartaoCache autorizacaoCartaoCache,
+                             EntityManager entityManager,
+                             TransactionTemplate transactionTemplate,
+                             @Value("${hackapay.cartao.cadastro.consulta-paralela:true}") boolean consultaParalela) {
+        this(cartaoRepository, clienteIntegracao, ledgerLimite, combinadorDebito, autorizacaoCartaoCache,
+                entityManager, transactionTemplate,
+                consultaParalela ? Executors.newVirtualThreadPerTaskExecutor() : Runnable::run);
+    }
+
+    CartaoServiceImpl(CartaoRepository cartaoRepository,
+                      ClienteIntegracao clienteIntegracao,
+                      Optional<LedgerLimite> ledgerLimite,
+                      Optional<CombinadorDebito> combinadorDebito,
+                      AutorizacaoCartaoCache autorizacaoCartaoCache,
+                      EntityManager entityManager,
+                      TransactionTemplate transactionTemplate,
+                      Executor executor) {
         this.cartaoRepository = cartaoRepository;
         this.clienteIntegracao = clienteIntegracao;
+        this.ledgerLimite = ledgerLimite.orElse(null);
+        this.combinadorDebito = combinadorDebito.orElse(null);
+        this.autorizacaoCartaoCache = autorizacaoCartaoCache;
+        this.entityManager = entityManager;
+        this.transactionTemplate = transactionTemplate;
+        this.executor = executor;
+    }
+
+    @PreDestroy
+    void encerra() {
+        if (executor instanceof ExecutorService executorService) {
+            executorService.close();
+        }
     }
 
     @Override
     public Cartao save(String token, Cartao cartao) {
-        if (cartaoRepository.countByCpf(cartao.getCpf()) == 2) {
-            throw new IllegalArgumentException("um Cliente pode ter no maximo 2 cartoes.");
+        // a consulta ao servico de cliente corre em paralelo com a contagem no banco
+        CompletableFuture<Cliente> consultaCliente = CompletableFuture.supplyAsync(
+                () -> clienteIntegracao.getCliente(token, cartao.getCpf()), executor);
+        if (cartaoRepository.countByCpf(cartao.getCpf()) >= MAXIMO_CARTOES_POR_CLIENTE) {
+            // o cancel de um CompletableFuture nao interrompe a consulta, o resultado so e descartado
+            throw new IllegalArgumentException(MAXIMO_CARTOES_EXCEDIDO);
         }
-        Cliente cliente = clienteIntegracao.getCliente(token, cartao.getCpf());
+        Cliente cliente = aguarda(consultaCliente);
         if (cliente == null) {
-            throw new IllegalStateException("Cliente nao cadastrado.");
+            throw new IllegalStateException(CLIENTE_NAO_CADASTRADO);
         }
-        cartao.setId(UUID.randomUUID());
+        cartao.setId(GeradorUuid.novo());
         return cartaoRepository.save(cartao);
     }
 
+    static <T> T aguarda(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException exception) {
+            if (exception.getCause() instanceof RuntimeException causa) {
+                throw causa;
+            }
+            throw exception;
+        }
+    }
+
     @Override
     public Page<Cartao> findAll(Pageable pageable, Cartao cartao) {
         Example<Cartao> cartaoExample = Example.of(cartao);
         return cartaoRepository.findAll(cartaoExample, pageable);
     }
 
+    @Override
+    public PaginaCursor<Cartao> findAll(String cursor, int size, Cartao cartao) {
+        if (size < 1) {
+            throw new IllegalArgumentException(TAMANHO_PAGINA_INVALIDO);
+        }
+        // keyset por id: "where id > :ultimoId order by id limit size + 1", sem offset e sem count
+        ScrollPosition posicao = cursor == null
+                ? ScrollPosition.keyset()
+                : ScrollPosition.forward(Map.of("id", decodificaCursor(cursor)));
+        Window<Cartao> janela = cartaoRepository.findBy(Example.of(cartao),
+                consulta -> consulta.sortBy(Sort.by("id")).limit(size).scroll(posicao));
+        String proximoCursor = null;
+        if (janela.hasNext()) {
+            proximoCursor = codificaCursor(janela.getContent().get(janela.size() - 1).getId());
+        }
+        return new PaginaCursor<>(janela.getContent(), proximoCursor);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void exporta(Cartao cartao, Consumer<Cartao> consumidor) {
+        try (Stream<Cartao> cartoes = cartaoRepository.exporta(cartao.getCpf(), cartao.getNumero())) {
+            cartoes.forEach(cartaoExportado -> {
+                consumidor.accept(cartaoExportado);
+                // sem o detach o contexto de persistencia guardaria todos os cartoes lidos
+                entityManager.detach(cartaoExportado);
+            });
+        }
+    }
+
     @Override
     public Cartao findById(UUID id) {
         return cartaoRepository.findById(id)
-                .orElseThrow(() -> new IllegalArgumentException("Cartao não encontrado com o ID: " + id));
+                .orElseThrow(() -> new IllegalArgumentException(CARTAO_ID_NAO_ENCONTRADO + id));
     }
 
+    /*
+     * Com o ledger, o cartao e descartado (o pendente vai para o banco) e fica
+     * sem novos debitos ate o commit; so entao o limite e lido de novo.
+     */
     @Override
+    @Transactional
     public Cartao update(UUID id, Cartao cartaoParam) {
         Cartao cartao = findById(id);
-        if (StringUtils.isNotEmpty(cartaoParam.getNumero())) {
-            cartao.setNumero(cartaoParam.getNumero());
-        }
         if (cartaoParam.getId() != null && !cartao.getId().equals(cartaoParam.getId())) {
             throw new IllegalArgumentException("Não é possível alterar o id de um cartao.");
         }
         if (cartaoParam.getCpf() != null && !cartao.getCpf().equals(cartaoParam.getCpf())) {
             throw new IllegalArgumentException("Não é possível alterar o cpf de um cartao.");
         }
-        if (cartaoParam.getLimite() != null) {
-            cartao.setLimite(cartaoParam.getLimite());
+        autorizacaoCartaoCache.invalida(cartao.getNumero());
+        if (ledgerLimite == null) {
+            return altera(cartao, cartaoParam);
+        }
+        String numero = cartao.getNumero();
+        ledgerLimite.descarta(numero);
+        try {
+            // com open-in-view o findById devolveria a mesma entidade, com o limite de antes do descarta
+            if (entityManager.contains(cartao)) {
+                entityManager.detach(cartao);
+            }
+            return altera(findById(id), cartaoParam);
+        } finally {
+            ledgerLimite.libera(numero);
+        }
+    }
+
+    /*
+     * O JPA nao grava limite_centavos: o novo limite vai ao banco como diferenca
+     * sobre o valor lido, para nao desfazer um debito gravado depois da leitura.
+     */
+    private Cartao altera(Cartao cartao, Cartao cartaoParam) {
+        if (StringUtils.isNotEmpty(cartaoParam.getNumero())) {
+            cartao.setNumero(cartaoParam.getNumero());
+            autorizacaoCartaoCache.invalida(cartaoParam.getNumero());
         }
+        long ajuste = cartaoParam.getLimiteCentavos() == null
+                ? 0 : cartaoParam.getLimiteCentavos() - cartao.getLimiteCentavos();
         cartao = cartaoRepository.save(cartao);
+        if (ajuste != 0) {
+            cartaoRepository.ajustaLimite(cartao.getId(), ajuste);
+            cartaoRepository.removeDoCache(List.of(cartao.getId()));
+            cartao.setLimiteCentavos(cartao.getLimiteCentavos() + ajuste);
+        }
         return cartao;
     }
 
-
-
     @Override
+    @Transactional
     public void delete(UUID id) {
-        findById(id);
-        cartaoRepository.deleteById(id);
+        Cartao cartao = findById(id);
+        autorizacaoCartaoCache.invalida(cartao.getNumero());
+        if (ledgerLimite == null) {
+            cartaoRepository.deleteById(id);
+            return;
+        }
+        ledgerLimite.descarta(cartao.getNumero());
+        try {
+            cartaoRepository.deleteById(id);
+        } finally {
+            ledgerLimite.libera(cartao.getNumero());
+        }
     }
 
+    /*
+     * O update pelo JdbcTemplate roda numa transacao para usar a mesma conexao
+     * que a requisicao ja segura com open-in-view, sem pedir uma segunda ao pool. O motivo da rejeicao volta como
+     * retorno, e nao como excecao dentro da transacao, para nao marcar como
+     * rollback-only a transacao de quem chama (Idempotency-Key). O combinador
+     * so e usado fora de transacao, ja que o lider de um grupo grava os debitos
+     * dos outros pedidos na propria transacao.
+     */
     @Override
-    public void atualizaLimiteCartao(Double valor, Cartao cartao) {
-        Optional<Cartao> optionalCartao = cartaoRepository.findByNumero(cartao.getNumero());
-        optionalCartao.ifPresentOrElse(
-                (cartaoAux) -> {
-                    if (!cartaoAux.getCpf().equals(cartao.getCpf())) {
-                        throw new IllegalArgumentException("cpf do cartao nao confere");
-                    } else if (!cartaoAux.getCvv().equals(cartao.getCvv())) {
-                        throw new IllegalArgumentException("cvv do cartao nao confere");
-                    } else if (!cartaoAux.getDataValidade().equals(cartao.getDataValidade())) {
-                        throw new IllegalArgumentException("data de validade do cartao nao confere");
-                    }
-                    cartaoAux.setLimite(cartaoAux.getLimite() - valor);
-                    if (cartaoAux.getLimite().compareTo(0D) < 0) {
-                        throw new IllegalArgumentException("nao ha mais limite disponivel no cartao.");
-                    }
-                    cartaoRepository.save(cartaoAux);
-                }, () -> {
-                    throw new IllegalArgumentException("cartao nao encontrado");
-                }
+    public void atualizaLimiteCartao(long valorCentavos, Cartao cartao) {
+        if (valorCentavos <= 0) {
+            throw new IllegalArgumentException(VALOR_INVALIDO);
+        }
+        if (ledgerLimite != null) {
+            ledgerLimite.debita(valorCentavos, cartao);
+            return;
+        }
+        String motivo;
+        if (combinadorDebito != null && !TransactionSynchronizationManager.isActualTransactionActive()) {
+            motivo = combinadorDebito.debita(valorCentavos, cartao, this::debita);
+        } else {
+            motivo = transactionTemplate.execute(status -> debita(valorCentavos, cartao));
+        }
+        if (motivo != null) {
+            throw new IllegalArgumentException(motivo);
+        }
+    }
+
+    /*
+     * Um unico update debita e devolve o cartao como estava antes, de onde sai o
+     * motivo da rejeicao. O cache so evita ir ao banco quando o que ja se sabe do
+     * cartao nao confere; o banco continua conferindo tudo no update.
+     */
+    private String debita(long valorCentavos, Cartao cartao) {
+        String numero = cartao.getNumero();
+        if (numero == null) {
+            return CARTAO_NAO_ENCONTRADO;
+        }
+        AutorizacaoCartao emCache = autorizacaoCartaoCache.consulta(numero);
+        if (emCache != null) {
+            String motivo = confereAutorizacao(emCache, cartao);
+            if (motivo != null) {
+                return motivo;
+            }
+        }
+        SituacaoCartao anterior = cartaoRepository.debitaLimiteComSituacao(
+                numero,
+                cartao.getCpf(),
+                cartao.getCvv(),
+                cartao.getDataValidade(),
+                valorCentavos
         );
+        AutorizacaoCartao autorizacao = anterior == null ? null : anterior.autorizacao();
+        autorizacaoCartaoCache.atualiza(numero, autorizacao);
+        String motivo = confereAutorizacao(autorizacao, cartao);
+        if (motivo == null && anterior.limiteCentavos() < valorCentavos) {
+            motivo = LIMITE_INSUFICIENTE;
+        }
+        if (motivo == null) {
+            cartaoRepository.removeDoCache(List.of(anterior.id()));
+        }
+        return motivo;
+    }
+
+    @Override
+    @Transactional
+    public List<ResultadoDebito> atualizaLimiteCartaoLote(List<DebitoLimite> debitos) {
+        if (debitos.size() > tamanhoMaximoLote) {
+            throw new IllegalArgumentException("o lote pode ter no maximo " + tamanhoMaximoLote + " debitos.");
+        }
+        if (debitos.stream().anyMatch(Objects::isNull)) {
+            throw new IllegalArgumentException(DEBITO_NULO);
+        }
+        if (ledgerLimite != null) {
+            return debitos.stream().map(this::debitaNoLedger).toList();
+        }
+        Map<String, SituacaoCartao> cartoes = new HashMap<>();
+        cartaoRepository.findByNumeroIn(debitos.stream()
+                        .filter(debito -> debito.cartao() != null && debito.cartao().getNumero() != null)
+                        .map(debito -> debito.cartao().getNumero())
+                        .collect(Collectors.toSet()))
+                .forEach(situacao -> cartoes.put(situacao.numero(), situacao));
+
+        ResultadoDebito[] resultados = new ResultadoDebito[debitos.size()];
+        List<Integer> posicoesAceitas = new ArrayList<>();
+        List<DebitoLimite> aceitos = new ArrayList<>();
+        // long[1] por cartao para acumular o total debitado no lote sem boxing
+        Map<String, long[]> debitado = new HashMap<>();
+        for (int i = 0; i < debitos.size(); i++) {
+            DebitoLimite debito = debitos.get(i);
+            String motivo = validaDebito(debito, cartoes, debitado);
+            if (motivo == null) {
+                debitado.computeIfAbsent(debito.cartao().getNumero(), numero -> new long[1])[0] += debito.valorCentavos();
+                posicoesAceitas.add(i);
+                aceitos.add(debito);
+            } else {
+                resultados[i] = ResultadoDebito.rejeitado(numero(debito), motivo);
+            }
+        }
+
+        int[] atualizados = aceitos.isEmpty() ? new int[0] : cartaoRepository.debitaLimiteEmLote(aceitos);
+        Set<UUID> debitados = new HashSet<>();
+        for (int i = 0; i < aceitos.size(); i++) {
+            String numero = aceitos.get(i).cartao().getNumero();
+            if (atualizados[i] == 0) {
+                resultados[posicoesAceitas.get(i)] = ResultadoDebito.rejeitado(numero, LIMITE_INSUFICIENTE);
+            } else {
+                resultados[posicoesAceitas.get(i)] = ResultadoDebito.aceito(numero);
+                debitados.add(cartoes.get(numero).id());
+            }
+        }
+        if (!debitados.isEmpty()) {
+            cartaoRepository.removeDoCache(debitados);
+        }
+        return Arrays.asList(resultados);
+    }
+
+    private ResultadoDebito debitaNoLedger(DebitoLimite debito) {
+        if (debito.valorCentavos() <= 0) {
+            return ResultadoDebito.rejeitado(numero(debito), VALOR_INVALIDO);
+        }
+        if (debito.cartao() == null || debito.cartao().getNumero() == null) {
+            return ResultadoDebito.rejeitado(null, CARTAO_NAO_ENCONTRADO);
+        }
+        try {
+            ledgerLimite.debita(debito.valorCentavos(), debito.cartao());
+            return ResultadoDebito.aceito(debito.cartao().getNumero());
+        } catch (IllegalArgumentException exception) {
+            return ResultadoDebito.rejeitado(debito.cartao().getNumero(), exception.getMessage());
+        }
+    }
+
+    /*
+     * Valida contra a leitura feita no inicio do lote, descontando os debitos
+     * ja aceitos do mesmo cartao. O update em lote ainda confere o limite no banco.
+     */
+    private String validaDebito(DebitoLimite debito, Map<String, SituacaoCartao> cartoes, Map<String, long[]> debitado) {
+        if (debito.valorCentavos() <= 0) {
+            return VALOR_INVALIDO;
+        }
+        Cartao cartao = debito.cartao();
+        SituacaoCartao situacao = cartao == null ? null : cartoes.get(cartao.getNumero());
+        if (situacao == null) {
+            return CARTAO_NAO_ENCONTRADO;
+        } else if (!situacao.cpf().equals(cartao.getCpf())) {
+            return CPF_NAO_CONFERE;
+        } else if (!situacao.cvv().equals(cartao.getCvv())) {
+            return CVV_NAO_CONFERE;
+        } else if (!situacao.dataValidade().equals(cartao.getDataValidade())) {
+            return DATA_VALIDADE_NAO_CONFERE;
+        }
+        long[] jaDebitado = debitado.get(cartao.getNumero());
+        long limite = situacao.limiteCentavos() - (jaDebitado == null ? 0 : jaDebitado[0]);
+        if (limite < debito.valorCentavos()) {
+            return LIMITE_INSUFICIENTE;
+        }
+        return null;
+    }
+
+    private static String numero(DebitoLimite debito) {
+        return debito.cartao() == null ? null : debito.cartao().getNumero();
+    }
+
+    static String confereAutorizacao(AutorizacaoCartao autorizacao, Cartao cartao) {
+        if (autorizacao == null) {
+            return CARTAO_NAO_ENCONTRADO;
+        } else if (!autorizacao.cpf().equals(cartao.getCpf())) {
+            return CPF_NAO_CONFERE;
+        } else if (!autorizacao.cvv().equals(cartao.getCvv())) {
+            return CVV_NAO_CONFERE;
+        } else if (!autorizacao.dataValidade().equals(cartao.getDataValidade())) {
+            return DATA_VALIDADE_NAO_CONFERE;
+        }
+        return null;
+    }
+
+    private static String codificaCursor(UUID id) {
+        ByteBuffer buffer = ByteBuffer.allocate(16);
+        buffer.putLong(id.getMostSignificantBits());
+        buffer.putLong(id.getLeastSignificantBits());
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+    }
+
+    private static UUID decodificaCursor(String cursor) {
+        byte[] bytes;
+        try {
+            bytes = Base64.getUrlDecoder().decode(cursor);
+        } catch (IllegalArgumentException exception) {
+            throw new IllegalArgumentException(CURSOR_INVALIDO);
+        }
+        if (bytes.length != 16) {
+            throw new IllegalArgumentException(CURSOR_INVALIDO);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return new UUID(buffer.getLong(), buffer.getLong());
     }
 }
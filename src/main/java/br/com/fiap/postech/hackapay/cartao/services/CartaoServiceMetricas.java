@@ -0,0 +1,166 @@
+package br.com.fiap.postech.hackapay.cartao.services;
+
+import br.com.fiap.postech.hackapay.cartao.dto.DebitoLimite;
+import br.com.fiap.postech.hackapay.cartao.dto.PaginaCursor;
+import br.com.fiap.postech.hackapay.cartao.dto.ResultadoDebito;
+import br.com.fiap.postech.hackapay.cartao.entities.Cartao;
+import br.com.fiap.postech.hackapay.cartao.integration.ClienteIndisponivelException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Primary;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import static br.com.fiap.postech.hackapay.cartao.services.CartaoServiceImpl.*;
+
+/*
+ * Mede cada metodo do CartaoService por resultado (sucesso, proibido,
+ * nao_encontrado, sem_limite, invalido, indisponivel, erro). O resultado sai do
+ * tipo da excecao e, para IllegalArgumentException, do motivo de rejeicao do
+ * servico: proibido e o cartao que nao confere ou o cliente sem vaga para outro
+ * cartao, invalido e a entrada mal formada (valor, cursor, pagina, lote).
+ */
+@Service
+@Primary
+public class CartaoServiceMetricas implements CartaoService {
+
+    static final String METRICA = "hackapay.cartao.servico";
+    static final String METRICA_DEBITOS_LOTE = "hackapay.cartao.debito.lote";
+
+    private static final Map<String, String> RESULTADO_POR_MOTIVO = Map.of(
+            LIMITE_INSUFICIENTE, "sem_limite",
+            CARTAO_NAO_ENCONTRADO, "nao_encontrado",
+            CPF_NAO_CONFERE, "proibido",
+            CVV_NAO_CONFERE, "proibido",
+            DATA_VALIDADE_NAO_CONFERE, "proibido",
+            MAXIMO_CARTOES_EXCEDIDO, "proibido");
+
+    private final CartaoService cartaoService;
+    private final MeterRegistry meterRegistry;
+
+    @Autowired
+    public CartaoServiceMetricas(@Qualifier("cartaoServiceImpl") CartaoService cartaoService,
+                                 MeterRegistry meterRegistry) {
+        this.cartaoService = cartaoService;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Cartao save(String token, Cartao cartao) {
+        return mede("save", () -> cartaoService.save(token, cartao));
+    }
+
+    @Override
+    public Page<Cartao> findAll(Pageable pageable, Cartao cartao) {
+        return mede("findAll", () -> cartaoService.findAll(pageable, cartao));
+    }
+
+    @Override
+    public PaginaCursor<Cartao> findAll(String cursor, int size, Cartao cartao) {
+        return mede("findAllPorCursor", () -> cartaoService.findAll(cursor, size, cartao));
+    }
+
+    @Override
+    public void exporta(Cartao cartao, Consumer<Cartao> consumidor) {
+        mede("exporta", () -> {
+            cartaoService.exporta(cartao, consumidor);
+            return null;
+        });
+    }
+
+    @Override
+    public Cartao findById(UUID id) {
+        return mede("findById", () -> cartaoService.findById(id));
+    }
+
+    @Override
+    public Cartao update(UUID id, Cartao cartao) {
+        return mede("update", () -> cartaoService.update(id, cartao));
+    }
+
+    @Override
+    public void delete(UUID id) {
+        mede("delete", () -> {
+            cartaoService.delete(id);
+            return null;
+        });
+    }
+
+    @Override
+    public void atualizaLimiteCartao(long valorCentavos, Cartao cartao) {
+        mede("atualizaLimiteCartao", () -> {
+            cartaoService.atualizaLimiteCartao(valorCentavos, cartao);
+            return null;
+        });
+    }
+
+    @Override
+    public List<ResultadoDebito> atualizaLimiteCartaoLote(List<DebitoLimite> debitos) {
+        List<ResultadoDebito> resultados = mede("atualizaLimiteCartaoLote",
+                () -> cartaoService.atualizaLimiteCartaoLote(debitos));
+        // o lote responde sucesso mesmo com debitos rejeitados, por isso cada debito e contado a parte
+        for (ResultadoDebito resultado : resultados) {
+            String tag = resultado.status() == ResultadoDebito.Status.ACEITO
+                    ? "sucesso"
+                    : resultadoRejeicao(resultado.motivo());
+            Counter.builder(METRICA_DEBITOS_LOTE)
+                    .tag("resultado", tag)
+                    .description("debitos processados pelo endpoint de lote")
+                    .register(meterRegistry)
+                    .increment();
+        }
+        return resultados;
+    }
+
+    private <T> T mede(String metodo, Supplier<T> chamada) {
+        Timer.Sample amostra = Timer.start(meterRegistry);
+        String resultado = "sucesso";
+        try {
+            return chamada.get();
+        } catch (RuntimeException exception) {
+            resultado = resultado(exception);
+            throw exception;
+        } finally {
+            amostra.stop(Timer.builder(METRICA)
+                    .tag("metodo", metodo)
+                    .tag("resultado", resultado)
+                    .description("tempo dos metodos do servico de cartao")
+                    .register(meterRegistry));
+        }
+    }
+
+    static String resultado(RuntimeException exception) {
+        if (exception instanceof IllegalArgumentException) {
+            return resultadoRejeicao(exception.getMessage());
+        } else if (exception instanceof IllegalStateException && CLIENTE_NAO_CADASTRADO.equals(exception.getMessage())) {
+            return "nao_encontrado";
+        } else if (exception instanceof ClienteIndisponivelException) {
+            return "indisponivel";
+        }
+        return "erro";
+    }
+
+    /*
+     * So os motivos de rejeicao conhecidos do servico tem resultado proprio;
+     * qualquer outro IllegalArgumentException e entrada invalida.
+     */
+    static String resultadoRejeicao(String motivo) {
+        if (motivo == null) {
+            return "invalido";
+        }
+        if (motivo.startsWith(CARTAO_ID_NAO_ENCONTRADO)) {
+            return "nao_encontrado";
+        }
+        return RESULTADO_POR_MOTIVO.getOrDefault(motivo, "invalido");
+    }
+}
@@ -0,0 +1,25 @@
+package br.com.fiap.postech.hackapay.cartao.services;
+
+import br.com.fiap.postech.hackapay.cartao.entities.Cartao;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.UUID;
+
+public interface CartaoServiceReativo {
+    Mono<Cartao> save(String token, Cartao cartao);
+
+    Mono<Page<Cartao>> findAll(Pageable pageable, Cartao cartao);
+
+    Flux<Cartao> exporta(Cartao cartao);
+
+    Mono<Cartao> findById(UUID id);
+
+    Mono<Cartao> update(UUID id, Cartao cartao);
+
+    Mono<Void> delete(UUID id);
+
+    Mono<Void> atualizaLimiteCartao(long valorCentavos, Cartao cartao);
+}
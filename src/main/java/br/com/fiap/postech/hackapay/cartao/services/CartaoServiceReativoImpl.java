@@ -0,0 +1,175 @@
+package br.com.fiap.postech.hackapay.cartao.services;
+
+import br.com.fiap.postech.hackapay.cartao.dto.AutorizacaoCartao;
+import br.com.fiap.postech.hackapay.cartao.entities.Cartao;
+import br.com.fiap.postech.hackapay.cartao.integration.Cliente;
+import br.com.fiap.postech.hackapay.cartao.integration.ClienteIntegracaoReativa;
+import br.com.fiap.postech.hackapay.cartao.repository.CartaoRepositoryReativo;
+import io.micrometer.common.util.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Signal;
+
+import java.util.Optional;
+import java.util.UUID;
+
+import static br.com.fiap.postech.hackapay.cartao.services.CartaoServiceImpl.*;
+
+/*
+ * Mesmas regras do CartaoServiceImpl (maximo de cartoes por cpf, conferencia de
+ * cpf/cvv/validade e debito condicional que nunca deixa o limite negativo),
+ * sobre R2DBC e WebClient. Diferencas no debito sem Idempotency-Key:
+ * - vai direto ao banco, sem o ledger em memoria nem o combinador de debitos;
+ *   como os debitos com Idempotency-Key passam pelo CartaoServiceImpl, o perfil
+ *   nao sobe com algum dos dois ligado, para nao haver dois caminhos de escrita;
+ * - usa o update condicional seguido de nova leitura quando ele nao afeta linhas,
+ *   e nao o debito que devolve a situacao anterior num unico statement.
+ * A autenticacao tambem difere: ver SegurancaReativaConfiguration.
+ */
+@Service
+@Profile("reativo")
+public class CartaoServiceReativoImpl implements CartaoServiceReativo {
+
+    private final CartaoRepositoryReativo cartaoRepository;
+    private final ClienteIntegracaoReativa clienteIntegracao;
+    private final AutorizacaoCartaoCache autorizacaoCartaoCache;
+
+    static final String LEDGER_OU_COMBINADOR_LIGADO =
+            "o perfil reativo nao suporta hackapay.cartao.ledger.enabled nem hackapay.cartao.combinador.enabled";
+
+    @Autowired
+    public CartaoServiceReativoImpl(CartaoRepositoryReativo cartaoRepository,
+                                    ClienteIntegracaoReativa clienteIntegracao,
+                                    AutorizacaoCartaoCache autorizacaoCartaoCache,
+                                    Optional<LedgerLimite> ledgerLimite,
+                                    Optional<CombinadorDebito> combinadorDebito) {
+        if (ledgerLimite.isPresent() || combinadorDebito.isPresent()) {
+            throw new IllegalStateException(LEDGER_OU_COMBINADOR_LIGADO);
+        }
+        this.cartaoRepository = cartaoRepository;
+        this.clienteIntegracao = clienteIntegracao;
+        this.autorizacaoCartaoCache = autorizacaoCartaoCache;
+    }
+
+    @Override
+    public Mono<Cartao> save(String token, Cartao cartao) {
+        // a consulta ao servico de cliente corre em paralelo com a contagem; o erro dela
+        // so e considerado depois da contagem, como no CartaoServiceImpl
+        Mono<Long> contagem = cartaoRepository.countByCpf(cartao.getCpf())
+                .filter(quantidade -> quantidade < MAXIMO_CARTOES_POR_CLIENTE)
+                .switchIfEmpty(Mono.error(() -> new IllegalArgumentException(MAXIMO_CARTOES_EXCEDIDO)));
+        Mono<Signal<Cliente>> consultaCliente = clienteIntegracao.getCliente(token, cartao.getCpf()).materialize();
+        return Mono.zip(contagem, consultaCliente).flatMap(resultado -> {
+            Signal<Cliente> cliente = resultado.getT2();
+            if (cliente.isOnError()) {
+                return Mono.error(cliente.getThrowable());
+            } else if (!cliente.hasValue()) {
+                return Mono.error(new IllegalStateException(CLIENTE_NAO_CADASTRADO));
+            }
+            cartao.setId(GeradorUuid.novo());
+            return cartaoRepository.insere(cartao);
+        });
+    }
+
+    @Override
+    public Mono<Page<Cartao>> findAll(Pageable pageable, Cartao cartao) {
+        return cartaoRepository.findAll(cartao.getCpf(), cartao.getNumero(), pageable);
+    }
+
+    @Override
+    public Flux<Cartao> exporta(Cartao cartao) {
+        return cartaoRepository.exporta(cartao.getCpf(), cartao.getNumero());
+    }
+
+    @Override
+    public Mono<Cartao> findById(UUID id) {
+        return cartaoRepository.findById(id)
+                .switchIfEmpty(Mono.error(() -> new IllegalArgumentException(CARTAO_ID_NAO_ENCONTRADO + id)));
+    }
+
+    @Override
+    public Mono<Cartao> update(UUID id, Cartao cartaoParam) {
+        return findById(id).flatMap(cartao -> {
+            autorizacaoCartaoCache.invalida(cartao.getNumero());
+            if (StringUtils.isNotEmpty(cartaoParam.getNumero())) {
+                cartao.setNumero(cartaoParam.getNumero());
+            }
+            if (cartaoParam.getId() != null && !cartao.getId().equals(cartaoParam.getId())) {
+                return Mono.error(new IllegalArgumentException("Não é possível alterar o id de um cartao."));
+            }
+            if (cartaoParam.getCpf() != null && !cartao.getCpf().equals(cartaoParam.getCpf())) {
+                return Mono.error(new IllegalArgumentException("Não é possível alterar o cpf de um cartao."));
+            }
+            long ajuste = 0;
+            if (cartaoParam.getLimiteCentavos() != null) {
+                ajuste = cartaoParam.getLimiteCentavos() - cartao.getLimiteCentavos();
+                cartao.setLimiteCentavos(cartaoParam.getLimiteCentavos());
+            }
+            return cartaoRepository.atualiza(cartao, ajuste);
+        });
+    }
+
+    @Override
+    public Mono<Void> delete(UUID id) {
+        return findById(id).flatMap(cartao -> {
+            autorizacaoCartaoCache.invalida(cartao.getNumero());
+            return cartaoRepository.deleteById(id);
+        }).then();
+    }
+
+    @Override
+    public Mono<Void> atualizaLimiteCartao(long valorCentavos, Cartao cartao) {
+        if (valorCentavos <= 0) {
+            return Mono.error(new IllegalArgumentException(VALOR_INVALIDO));
+        }
+        return buscaAutorizacao(cartao.getNumero()).flatMap(autorizacao -> {
+            String motivo = confereAutorizacao(autorizacao.orElse(null), cartao);
+            if (motivo != null) {
+                return Mono.error(new IllegalArgumentException(motivo));
+            }
+            return cartaoRepository.debitaLimite(
+                    cartao.getNumero(),
+                    cartao.getCpf(),
+                    cartao.getCvv(),
+                    cartao.getDataValidade(),
+                    valorCentavos
+            ).flatMap(atualizados -> atualizados == 0
+                    ? motivoRejeicao(cartao).flatMap(rejeicao -> Mono.<Void>error(new IllegalArgumentException(rejeicao)))
+                    : Mono.<Void>empty());
+        }).then();
+    }
+
+    private Mono<Optional<AutorizacaoCartao>> buscaAutorizacao(String numero) {
+        if (numero == null) {
+            return Mono.just(Optional.empty());
+        }
+        AutorizacaoCartao emCache = autorizacaoCartaoCache.consulta(numero);
+        if (emCache != null) {
+            return Mono.just(Optional.of(emCache));
+        }
+        return cartaoRepository.findAutorizacaoByNumero(numero)
+                .doOnNext(autorizacao -> autorizacaoCartaoCache.atualiza(numero, autorizacao))
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty());
+    }
+
+    /*
+     * So e chamado quando o update condicional nao afetou nenhuma linha. Le de novo
+     * o banco, ja que o cartao pode ter sido alterado ou removido depois de entrar no cache.
+     */
+    private Mono<String> motivoRejeicao(Cartao cartao) {
+        return cartaoRepository.findAutorizacaoByNumero(cartao.getNumero())
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .map(autorizacao -> {
+                    autorizacaoCartaoCache.atualiza(cartao.getNumero(), autorizacao.orElse(null));
+                    String motivo = confereAutorizacao(autorizacao.orElse(null), cartao);
+                    return motivo == null ? LIMITE_INSUFICIENTE : motivo;
+                });
+    }
+}
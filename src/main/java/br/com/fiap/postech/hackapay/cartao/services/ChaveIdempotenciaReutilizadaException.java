@@ -0,0 +1,12 @@
+package br.com.fiap.postech.hackapay.cartao.services;
+
+/*
+ * A Idempotency-Key ja foi usada pelo mesmo titular em um debito com outro
+ * cartao ou outro valor; o resultado anterior nao vale para este pedido.
+ */
+public class ChaveIdempotenciaReutilizadaException extends RuntimeException {
+
+    public ChaveIdempotenciaReutilizadaException() {
+        super("Idempotency-Key ja usada em outro debito.");
+    }
+}
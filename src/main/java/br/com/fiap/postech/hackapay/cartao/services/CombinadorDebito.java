@@ -0,0 +1,231 @@
+package br.com.fiap.postech.hackapay.cartao.services;
+
+import br.com.fiap.postech.hackapay.cartao.dto.AutorizacaoCartao;
+import br.com.fiap.postech.hackapay.cartao.dto.SituacaoCartao;
+import br.com.fiap.postech.hackapay.cartao.entities.Cartao;
+import br.com.fiap.postech.hackapay.cartao.repository.CartaoRepository;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static br.com.fiap.postech.hackapay.cartao.services.CartaoServiceImpl.*;
+
+/*
+ * Junta os debitos concorrentes do mesmo cartao. O primeiro pedido espera a
+ * janela (ou o grupo encher), le o limite atual, aplica os pedidos na ordem de
+ * chegada rejeitando os que estourariam o limite e grava o total aceito em um
+ * unico update condicional. Cada chamador recebe o proprio resultado depois do
+ * commit. Um grupo de um pedido so, ou um grupo cujo update falhou mesmo depois
+ * de reler o limite, segue pelo debito individual.
+ */
+@Component
+@ConditionalOnProperty(name = "hackapay.cartao.combinador.enabled", havingValue = "true")
+public class CombinadorDebito {
+
+    private static final int TENTATIVAS = 3;
+
+    /*
+     * Debito de um pedido isolado, devolvendo o motivo da rejeicao ou null quando aceito.
+     */
+    @FunctionalInterface
+    public interface DebitoIndividual {
+        String debita(long valorCentavos, Cartao cartao);
+    }
+
+    private final CartaoRepository cartaoRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final long janelaNanos;
+    private final int tamanhoMaximoGrupo;
+    private final DistributionSummary pedidosPorGrupo;
+    private final Map<String, Grupo> grupos = new ConcurrentHashMap<>();
+
+    @Autowired
+    public CombinadorDebito(CartaoRepository cartaoRepository,
+                            TransactionTemplate transactionTemplate,
+                            MeterRegistry meterRegistry,
+                            @Value("${hackapay.cartao.combinador.janela:300us}") Duration janela,
+                            @Value("${hackapay.cartao.combinador.tamanho-maximo-grupo:64}") int tamanhoMaximoGrupo) {
+        this.cartaoRepository = cartaoRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.janelaNanos = janela.toNanos();
+        this.tamanhoMaximoGrupo = tamanhoMaximoGrupo;
+        this.pedidosPorGrupo = DistributionSummary.builder("hackapay.cartao.combinador.grupo")
+                .description("debitos gravados por update no combinador")
+                .register(meterRegistry);
+    }
+
+    /*
+     * Devolve o motivo da rejeicao, ou null quando o debito foi aceito e gravado.
+     */
+    public String debita(long valorCentavos, Cartao cartao, DebitoIndividual debitoIndividual) {
+        if (cartao.getNumero() == null) {
+            return debitoIndividual.debita(valorCentavos, cartao);
+        }
+        Pedido pedido = new Pedido(valorCentavos, cartao);
+        Grupo grupo = entra(pedido);
+        if (grupo.lider == pedido) {
+            grupo.aguardaJanela(janelaNanos);
+            grupos.remove(cartao.getNumero(), grupo);
+            executa(cartao.getNumero(), grupo.fecha(), debitoIndividual);
+        }
+        return aguarda(pedido.resultado);
+    }
+
+    private Grupo entra(Pedido pedido) {
+        String numero = pedido.cartao.getNumero();
+        while (true) {
+            Grupo grupo = grupos.computeIfAbsent(numero, chave -> new Grupo());
+            if (grupo.adiciona(pedido, tamanhoMaximoGrupo)) {
+                return grupo;
+            }
+            // grupo fechado ou cheio: tira do mapa para o proximo pedido abrir outro
+            grupos.remove(numero, grupo);
+        }
+    }
+
+    private void executa(String numero, List<Pedido> pedidos, DebitoIndividual debitoIndividual) {
+        try {
+            String[] motivos = transactionTemplate.execute(status -> aplica(numero, pedidos, debitoIndividual));
+            for (int i = 0; i < pedidos.size(); i++) {
+                pedidos.get(i).resultado.complete(motivos[i]);
+            }
+        } catch (RuntimeException exception) {
+            pedidos.forEach(pedido -> pedido.resultado.completeExceptionally(exception));
+        } finally {
+            // um Error do lider nao passa pelo catch; sem isto os demais pedidos esperariam para sempre
+            for (Pedido pedido : pedidos) {
+                if (!pedido.resultado.isDone()) {
+                    pedido.resultado.completeExceptionally(new IllegalStateException("debito do grupo interrompido"));
+                }
+            }
+        }
+    }
+
+    private String[] aplica(String numero, List<Pedido> pedidos, DebitoIndividual debitoIndividual) {
+        if (pedidos.size() > 1) {
+            for (int tentativa = 0; tentativa < TENTATIVAS; tentativa++) {
+                SituacaoCartao situacao = cartaoRepository.findByNumeroIn(List.of(numero)).stream()
+                        .findFirst()
+                        .orElse(null);
+                String[] motivos = new String[pedidos.size()];
+                long total = planeja(situacao, pedidos, motivos);
+                if (total == 0) {
+                    return motivos;
+                }
+                // o update ainda confere o limite, caso outro debito tenha sido gravado depois da leitura
+                if (cartaoRepository.debitaLimite(numero, situacao.cpf(), situacao.cvv(), situacao.dataValidade(), total) > 0) {
+                    cartaoRepository.removeDoCache(List.of(situacao.id()));
+                    pedidosPorGrupo.record(Arrays.stream(motivos).filter(Objects::isNull).count());
+                    return motivos;
+                }
+            }
+        }
+        String[] motivos = new String[pedidos.size()];
+        for (int i = 0; i < pedidos.size(); i++) {
+            Pedido pedido = pedidos.get(i);
+            motivos[i] = debitoIndividual.debita(pedido.valorCentavos, pedido.cartao);
+            if (motivos[i] == null) {
+                pedidosPorGrupo.record(1);
+            }
+        }
+        return motivos;
+    }
+
+    /*
+     * Preenche o motivo dos pedidos rejeitados e devolve o total dos aceitos.
+     */
+    static long planeja(SituacaoCartao situacao, List<Pedido> pedidos, String[] motivos) {
+        AutorizacaoCartao autorizacao = situacao == null ? null : situacao.autorizacao();
+        long disponivel = situacao == null ? 0 : situacao.limiteCentavos();
+        long total = 0;
+        for (int i = 0; i < pedidos.size(); i++) {
+            Pedido pedido = pedidos.get(i);
+            motivos[i] = confereAutorizacao(autorizacao, pedido.cartao);
+            if (motivos[i] == null && disponivel - total < pedido.valorCentavos) {
+                motivos[i] = LIMITE_INSUFICIENTE;
+            }
+            if (motivos[i] == null) {
+                total += pedido.valorCentavos;
+            }
+        }
+        return total;
+    }
+
+    static final class Pedido {
+        private final long valorCentavos;
+        private final Cartao cartao;
+        private final CompletableFuture<String> resultado = new CompletableFuture<>();
+
+        Pedido(long valorCentavos, Cartao cartao) {
+            this.valorCentavos = valorCentavos;
+            this.cartao = cartao;
+        }
+    }
+
+    /*
+     * ReentrantLock e park em vez de synchronized e wait, que prendem a thread
+     * carregadora quando o chamador e uma virtual thread.
+     */
+    private static final class Grupo {
+        private final ReentrantLock trava = new ReentrantLock();
+        private final List<Pedido> pedidos = new ArrayList<>();
+        private Pedido lider;
+        private Thread threadLider;
+        private volatile boolean cheio;
+        private boolean fechado;
+
+        boolean adiciona(Pedido pedido, int tamanhoMaximo) {
+            trava.lock();
+            try {
+                if (fechado || pedidos.size() >= tamanhoMaximo) {
+                    return false;
+                }
+                pedidos.add(pedido);
+                if (lider == null) {
+                    lider = pedido;
+                    threadLider = Thread.currentThread();
+                } else if (pedidos.size() == tamanhoMaximo) {
+                    cheio = true;
+                    LockSupport.unpark(threadLider);
+                }
+                return true;
+            } finally {
+                trava.unlock();
+            }
+        }
+
+        void aguardaJanela(long janelaNanos) {
+            long limite = System.nanoTime() + janelaNanos;
+            long restante = janelaNanos;
+            while (!cheio && restante > 0) {
+                LockSupport.parkNanos(this, restante);
+                restante = limite - System.nanoTime();
+            }
+        }
+
+        List<Pedido> fecha() {
+            trava.lock();
+            try {
+                fechado = true;
+                return List.copyOf(pedidos);
+            } finally {
+                trava.unlock();
+            }
+        }
+    }
+}
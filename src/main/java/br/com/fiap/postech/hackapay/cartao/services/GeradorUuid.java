@@ -0,0 +1,40 @@
+package br.com.fiap.postech.hackapay.cartao.services;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Gera UUIDs versao 7 (RFC 9562): 48 bits de timestamp em milissegundos, seguidos
+ * de um contador de 12 bits e de 62 bits aleatorios. Ids novos entram sempre no
+ * fim do indice da chave primaria, em vez de espalhados como os v4; os dois
+ * convivem na mesma coluna uuid.
+ */
+public final class GeradorUuid {
+
+    private static final int BITS_CONTADOR = 12;
+
+    // timestamp << 12 | contador do ultimo id gerado
+    private static final AtomicLong ULTIMO = new AtomicLong();
+
+    private GeradorUuid() {
+    }
+
+    public static UUID novo() {
+        long agora = System.currentTimeMillis();
+        long anterior;
+        long proximo;
+        do {
+            anterior = ULTIMO.get();
+            // no mesmo milissegundo (ou com o relogio voltando) so o contador avanca;
+            // se ele estourar, o id passa a usar o milissegundo seguinte
+            proximo = agora > (anterior >>> BITS_CONTADOR) ? agora << BITS_CONTADOR : anterior + 1;
+        } while (!ULTIMO.compareAndSet(anterior, proximo));
+
+        long timestamp = proximo >>> BITS_CONTADOR;
+        long contador = proximo & ((1L << BITS_CONTADOR) - 1);
+        long maisSignificativos = timestamp << 16 | 0x7000L | contador;
+        long menosSignificativos = ThreadLocalRandom.current().nextLong() & 0x3FFFFFFFFFFFFFFFL | 0x8000000000000000L;
+        return new UUID(maisSignificativos, menosSignificativos);
+    }
+}
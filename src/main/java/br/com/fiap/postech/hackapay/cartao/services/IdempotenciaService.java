@@ -0,0 +1,8 @@
+package br.com.fiap.postech.hackapay.cartao.services;
+
+import br.com.fiap.postech.hackapay.cartao.dto.ResultadoDebito;
+import br.com.fiap.postech.hackapay.cartao.entities.Cartao;
+
+public interface IdempotenciaService {
+    ResultadoDebito atualizaLimiteCartao(String titular, String chave, long valorCentavos, Cartao cartao);
+}
@@ -0,0 +1,145 @@
+package br.com.fiap.postech.hackapay.cartao.services;
+
+import br.com.fiap.postech.hackapay.cartao.dto.ResultadoDebito;
+import br.com.fiap.postech.hackapay.cartao.entities.Cartao;
+import br.com.fiap.postech.hackapay.cartao.entities.Idempotencia;
+import br.com.fiap.postech.hackapay.cartao.repository.IdempotenciaRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+
+/*
+ * Cada titular tem o proprio espaco de chaves: o registro e guardado pela
+ * SHA-256 de (titular, Idempotency-Key). A chave fica presa ao primeiro pedido
+ * que a usou pela assinatura (titular, numero, valor); reusada em outro
+ * pedido, gera ChaveIdempotenciaReutilizadaException em vez de devolver o
+ * resultado anterior.
+ */
+@Service
+public class IdempotenciaServiceImpl implements IdempotenciaService {
+
+    static final int TAMANHO_MAXIMO_CHAVE = 64;
+
+    private static final ResultadoDebito ACEITO = ResultadoDebito.aceito(null);
+
+    private final CartaoService cartaoService;
+    private final IdempotenciaRepository idempotenciaRepository;
+    private final Duration validade;
+    private final Cache<String, Registrado> resultados;
+
+    @Autowired
+    public IdempotenciaServiceImpl(CartaoService cartaoService,
+                                   IdempotenciaRepository idempotenciaRepository,
+                                   @Value("${hackapay.cartao.idempotencia.tamanho-maximo:500000}") long tamanhoMaximo,
+                                   @Value("${hackapay.cartao.idempotencia.validade:24h}") Duration validade) {
+        this.cartaoService = cartaoService;
+        this.idempotenciaRepository = idempotenciaRepository;
+        this.validade = validade;
+        this.resultados = Caffeine.newBuilder()
+                .maximumSize(tamanhoMaximo)
+                .expireAfterWrite(validade)
+                .build();
+    }
+
+    @Override
+    @Transactional
+    public ResultadoDebito atualizaLimiteCartao(String titular, String chave, long valorCentavos, Cartao cartao) {
+        if (chave.isBlank() || chave.length() > TAMANHO_MAXIMO_CHAVE) {
+            throw new IllegalArgumentException("Idempotency-Key deve ter entre 1 e " + TAMANHO_MAXIMO_CHAVE + " caracteres.");
+        }
+        String titularOuVazio = titular == null ? "" : titular;
+        String chaveDoTitular = sha256(titularOuVazio, chave);
+        String assinatura = sha256(titularOuVazio, String.valueOf(cartao.getNumero()), Long.toString(valorCentavos));
+        Registrado registrado = resultados.getIfPresent(chaveDoTitular);
+        if (registrado != null) {
+            return registrado.resultadoPara(assinatura);
+        }
+        var registro = idempotenciaRepository.findById(chaveDoTitular);
+        if (registro.isPresent()) {
+            registrado = new Registrado(registro.get().getAssinatura(),
+                    paraResultado(registro.get().isAceito(), registro.get().getMotivo()));
+            resultados.put(chaveDoTitular, registrado);
+            return registrado.resultadoPara(assinatura);
+        }
+
+        // a chave e gravada antes do debito: com o flush uma chave repetida em paralelo
+        // falha aqui, sem debitar, o que vale tambem para o ledger, que nao participa do rollback
+        Idempotencia idempotencia = idempotenciaRepository.saveAndFlush(
+                new Idempotencia(chaveDoTitular, assinatura, false, null));
+        ResultadoDebito resultado;
+        try {
+            cartaoService.atualizaLimiteCartao(valorCentavos, cartao);
+            resultado = ACEITO;
+        } catch (IllegalArgumentException exception) {
+            resultado = paraResultado(false, exception.getMessage());
+        }
+        idempotencia.registraResultado(resultado.status() == ResultadoDebito.Status.ACEITO, resultado.motivo());
+        idempotenciaRepository.save(idempotencia);
+        registraAposCommit(chaveDoTitular, new Registrado(assinatura, resultado));
+        return resultado;
+    }
+
+    @Scheduled(fixedDelayString = "${hackapay.cartao.idempotencia.intervalo-limpeza:PT1H}")
+    public void removeExpiradas() {
+        idempotenciaRepository.removeCriadasAntesDe(Instant.now().minus(validade));
+    }
+
+    private void registraAposCommit(String chave, Registrado registrado) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            resultados.put(chave, registrado);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                resultados.put(chave, registrado);
+            }
+        });
+    }
+
+    private static ResultadoDebito paraResultado(boolean aceito, String motivo) {
+        if (aceito) {
+            return ACEITO;
+        }
+        // os motivos sao poucas constantes, o intern evita uma copia por chave no cache
+        return ResultadoDebito.rejeitado(null, motivo == null ? null : motivo.intern());
+    }
+
+    static String sha256(String... partes) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String parte : partes) {
+                // o tamanho antes de cada parte impede que ("ab", "c") e ("a", "bc") colidam
+                byte[] bytes = parte.getBytes(StandardCharsets.UTF_8);
+                digest.update(Integer.toString(bytes.length).getBytes(StandardCharsets.US_ASCII));
+                digest.update((byte) ':');
+                digest.update(bytes);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException exception) {
+            throw new IllegalStateException(exception);
+        }
+    }
+
+    private record Registrado(String assinatura, ResultadoDebito resultado) {
+        ResultadoDebito resultadoPara(String assinaturaDoPedido) {
+            if (!assinatura.equals(assinaturaDoPedido)) {
+                throw new ChaveIdempotenciaReutilizadaException();
+            }
+            return resultado;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package br.com.fiap.postech.hackapay.cartao.services;
+
+import br.com.fiap.postech.hackapay.cartao.dto.FormatoImportacao;
+import br.com.fiap.postech.hackapay.cartao.dto.ResultadoImportacao;
+
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.UUID;
+
+public interface ImportacaoCartaoService {
+    ResultadoImportacao importa(String token, FormatoImportacao formato, InputStream corpo);
+
+    Path relatorioRejeitados(UUID id);
+}
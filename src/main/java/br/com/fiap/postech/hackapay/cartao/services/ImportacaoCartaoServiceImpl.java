@@ -0,0 +1,390 @@
+package br.com.fiap.postech.hackapay.cartao.services;
+
+import br.com.fiap.postech.hackapay.cartao.dto.Centavos;
+import br.com.fiap.postech.hackapay.cartao.dto.FormatoImportacao;
+import br.com.fiap.postech.hackapay.cartao.dto.ResultadoImportacao;
+import br.com.fiap.postech.hackapay.cartao.entities.Cartao;
+import br.com.fiap.postech.hackapay.cartao.integration.Cliente;
+import br.com.fiap.postech.hackapay.cartao.integration.ClienteIntegracao;
+import br.com.fiap.postech.hackapay.cartao.repository.CartaoRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+import static br.com.fiap.postech.hackapay.cartao.services.CartaoServiceImpl.*;
+
+/*
+ * Le o corpo linha a linha e grava em lotes de tamanho fixo, cada lote na sua
+ * propria transacao: a memoria usada depende do tamanho do lote, nao do arquivo.
+ * As linhas rejeitadas vao para um relatorio CSV em disco.
+ */
+@Service
+public class ImportacaoCartaoServiceImpl implements ImportacaoCartaoService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ImportacaoCartaoServiceImpl.class);
+
+    static final String CABECALHO_INVALIDO = "o csv deve comecar por um cabecalho com as colunas cpf, numero, data_validade, cvv e limite";
+    static final String LINHA_INVALIDA = "linha invalida";
+    static final String CPF_INVALIDO = "cpf invalido";
+    static final String NUMERO_INVALIDO = "numero invalido";
+    static final String DATA_VALIDADE_INVALIDA = "data de validade invalida";
+    static final String CVV_INVALIDO = "cvv invalido";
+    static final String LIMITE_INVALIDO = "limite invalido";
+    static final String NUMERO_JA_CADASTRADO = "ja existe um cartao cadastrado com este numero";
+    static final String FALHA_CONSULTA_CLIENTE = "falha ao consultar o cliente";
+    static final String RELATORIO_NAO_ENCONTRADO = "relatorio de importacao nao encontrado";
+
+    private static final List<String> COLUNAS = List.of("cpf", "numero", "data_validade", "cvv", "limite");
+    private static final Pattern CPF = Pattern.compile("\\d{11}");
+    private static final Pattern NUMERO = Pattern.compile("\\d{13,19}");
+    private static final Pattern DATA_VALIDADE = Pattern.compile("(0[1-9]|1[0-2])/\\d{2}");
+    private static final Pattern CVV = Pattern.compile("\\d{3,4}");
+    private static final String PREFIXO_RELATORIO = "importacao-cartao-";
+    private static final String SUFIXO_RELATORIO = "-rejeitados.csv";
+
+    private final CartaoRepository cartaoRepository;
+    private final ClienteIntegracao clienteIntegracao;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final int tamanhoLote;
+    /*
+     * Compartilhado por todas as importacoes em andamento e bem abaixo do
+     * bulkhead do servico de cliente, para sobrar vagas ao cadastro (POST /cartao).
+     */
+    private final Semaphore consultas;
+    private final Path diretorioRelatorios;
+    private final Duration validadeRelatorio;
+
+    @Autowired
+    public ImportacaoCartaoServiceImpl(CartaoRepository cartaoRepository,
+                                       ClienteIntegracao clienteIntegracao,
+                                       ObjectMapper objectMapper,
+                                       TransactionTemplate transactionTemplate,
+                                       @Value("${hackapay.cartao.importacao.tamanho-lote:5000}") int tamanhoLote,
+                                       @Value("${hackapay.cartao.importacao.consultas-cliente-paralelas:10}") int consultasParalelas,
+                                       @Value("${hackapay.cartao.importacao.diretorio-relatorios:${java.io.tmpdir}}") String diretorioRelatorios,
+                                       @Value("${hackapay.cartao.importacao.validade-relatorio:24h}") Duration validadeRelatorio) {
+        this.cartaoRepository = cartaoRepository;
+        this.clienteIntegracao = clienteIntegracao;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = transactionTemplate;
+        this.tamanhoLote = tamanhoLote;
+        this.consultas = new Semaphore(consultasParalelas);
+        this.diretorioRelatorios = Path.of(diretorioRelatorios);
+        this.validadeRelatorio = validadeRelatorio;
+    }
+
+    @Override
+    public ResultadoImportacao importa(String token, FormatoImportacao formato, InputStream corpo) {
+        UUID id = UUID.randomUUID();
+        try (BufferedReader leitor = new BufferedReader(new InputStreamReader(corpo, StandardCharsets.UTF_8))) {
+            long numeroLinha = 0;
+            Function<String, Cartao> conversor;
+            if (formato == FormatoImportacao.CSV) {
+                conversor = conversorCsv(leitor.readLine());
+                numeroLinha++;
+            } else {
+                conversor = this::converteJson;
+            }
+            long recebidos = 0;
+            long importados = 0;
+            // as consultas ao servico de cliente ficam em threads virtuais, limitadas pelo semaforo
+            try (Relatorio relatorio = new Relatorio(Files.newBufferedWriter(caminhoRelatorio(id)));
+                 ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                List<Linha> lote = new ArrayList<>(tamanhoLote);
+                String conteudo;
+                while ((conteudo = leitor.readLine()) != null) {
+                    numeroLinha++;
+                    if (conteudo.isBlank()) {
+                        continue;
+                    }
+                    recebidos++;
+                    try {
+                        lote.add(new Linha(numeroLinha, conteudo, valida(conversor.apply(conteudo))));
+                    } catch (IllegalArgumentException exception) {
+                        relatorio.registra(numeroLinha, exception.getMessage(), conteudo);
+                    }
+                    if (lote.size() == tamanhoLote) {
+                        importados += gravaLote(token, lote, relatorio, executor, true);
+                        lote.clear();
+                    }
+                }
+                if (!lote.isEmpty()) {
+                    importados += gravaLote(token, lote, relatorio, executor, true);
+                }
+                LOGGER.info("importacao {}: {} cartoes recebidos, {} importados, {} rejeitados",
+                        id, recebidos, importados, relatorio.rejeitados);
+                return new ResultadoImportacao(id, recebidos, importados, relatorio.rejeitados);
+            }
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    @Override
+    public Path relatorioRejeitados(UUID id) {
+        Path relatorio = caminhoRelatorio(id);
+        if (!Files.isRegularFile(relatorio)) {
+            throw new IllegalArgumentException(RELATORIO_NAO_ENCONTRADO);
+        }
+        return relatorio;
+    }
+
+    @Scheduled(fixedDelayString = "${hackapay.cartao.importacao.intervalo-limpeza:PT1H}")
+    public void removeRelatoriosExpirados() {
+        Instant limite = Instant.now().minus(validadeRelatorio);
+        try (DirectoryStream<Path> relatorios = Files.newDirectoryStream(diretorioRelatorios,
+                PREFIXO_RELATORIO + "*" + SUFIXO_RELATORIO)) {
+            for (Path relatorio : relatorios) {
+                if (Files.getLastModifiedTime(relatorio).toInstant().isBefore(limite)) {
+                    Files.deleteIfExists(relatorio);
+                }
+            }
+        } catch (IOException exception) {
+            LOGGER.warn("falha ao remover relatorios de importacao expirados", exception);
+        }
+    }
+
+    /*
+     * Confere o lote inteiro com duas consultas ao banco (cartoes por cpf e
+     * numeros ja cadastrados) em vez de uma por linha, e grava os aceitos num
+     * unico batch. Se um cadastro concorrente violar a chave unica, o lote e
+     * conferido de novo uma vez.
+     */
+    private long gravaLote(String token, List<Linha> lote, Relatorio relatorio,
+                           ExecutorService executor, boolean podeRepetir) {
+        Map<String, CompletableFuture<Cliente>> clientes = new HashMap<>();
+        for (Linha linha : lote) {
+            clientes.computeIfAbsent(linha.cartao().getCpf(),
+                    cpf -> CompletableFuture.supplyAsync(() -> consultaCliente(token, cpf), executor));
+        }
+        Map<String, Long> cartoesPorCpf = new HashMap<>(cartaoRepository.contaPorCpf(clientes.keySet()));
+        Set<String> numerosCadastrados = new HashSet<>(cartaoRepository.numerosCadastrados(
+                lote.stream().map(linha -> linha.cartao().getNumero()).toList()));
+        List<Linha> aceitas = new ArrayList<>(lote.size());
+        for (Linha linha : lote) {
+            Cartao cartao = linha.cartao();
+            String motivo = motivoRejeicao(cartao, cartoesPorCpf, numerosCadastrados, clientes.get(cartao.getCpf()));
+            if (motivo != null) {
+                relatorio.registra(linha.numero(), motivo, linha.conteudo());
+                continue;
+            }
+            cartoesPorCpf.merge(cartao.getCpf(), 1L, Long::sum);
+            numerosCadastrados.add(cartao.getNumero());
+            cartao.setId(GeradorUuid.novo());
+            aceitas.add(linha);
+        }
+        if (aceitas.isEmpty()) {
+            return 0;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                    cartaoRepository.insereEmLote(aceitas.stream().map(Linha::cartao).toList()));
+        } catch (DataIntegrityViolationException exception) {
+            if (!podeRepetir) {
+                throw exception;
+            }
+            return gravaLote(token, aceitas, relatorio, executor, false);
+        }
+        return aceitas.size();
+    }
+
+    private static String motivoRejeicao(Cartao cartao, Map<String, Long> cartoesPorCpf,
+                                         Set<String> numerosCadastrados, CompletableFuture<Cliente> cliente) {
+        if (numerosCadastrados.contains(cartao.getNumero())) {
+            return NUMERO_JA_CADASTRADO;
+        } else if (cartoesPorCpf.getOrDefault(cartao.getCpf(), 0L) >= MAXIMO_CARTOES_POR_CLIENTE) {
+            return MAXIMO_CARTOES_EXCEDIDO;
+        }
+        try {
+            return aguarda(cliente) == null ? CLIENTE_NAO_CADASTRADO : null;
+        } catch (RuntimeException exception) {
+            return FALHA_CONSULTA_CLIENTE;
+        }
+    }
+
+    private Cliente consultaCliente(String token, String cpf) {
+        consultas.acquireUninterruptibly();
+        try {
+            return clienteIntegracao.getCliente(token, cpf);
+        } finally {
+            consultas.release();
+        }
+    }
+
+    private static Function<String, Cartao> conversorCsv(String cabecalho) {
+        if (cabecalho == null) {
+            throw new IllegalArgumentException(CABECALHO_INVALIDO);
+        }
+        List<String> colunas;
+        try {
+            colunas = campos(cabecalho).stream().map(String::toLowerCase).toList();
+        } catch (IllegalArgumentException exception) {
+            throw new IllegalArgumentException(CABECALHO_INVALIDO);
+        }
+        int[] posicoes = COLUNAS.stream().mapToInt(colunas::indexOf).toArray();
+        if (Arrays.stream(posicoes).anyMatch(posicao -> posicao < 0)) {
+            throw new IllegalArgumentException(CABECALHO_INVALIDO);
+        }
+        return conteudo -> {
+            List<String> campos = campos(conteudo);
+            if (campos.size() != colunas.size()) {
+                throw new IllegalArgumentException(LINHA_INVALIDA);
+            }
+            return new Cartao(
+                    campos.get(posicoes[0]),
+                    limite(campos.get(posicoes[4])),
+                    campos.get(posicoes[1]),
+                    campos.get(posicoes[2]),
+                    campos.get(posicoes[3]));
+        };
+    }
+
+    /*
+     * Separa os campos de uma linha CSV (RFC 4180): a virgula entre aspas faz parte
+     * do campo e "" entre aspas vira uma aspa. Colunas vazias no fim da linha contam.
+     * Campos com quebra de linha nao sao aceitos, ja que a leitura e linha a linha.
+     */
+    private static List<String> campos(String linha) {
+        List<String> campos = new ArrayList<>();
+        StringBuilder campo = new StringBuilder();
+        boolean entreAspas = false;
+        for (int i = 0; i < linha.length(); i++) {
+            char caractere = linha.charAt(i);
+            if (entreAspas) {
+                if (caractere != '"') {
+                    campo.append(caractere);
+                } else if (i + 1 < linha.length() && linha.charAt(i + 1) == '"') {
+                    campo.append('"');
+                    i++;
+                } else {
+                    entreAspas = false;
+                }
+            } else if (caractere == '"') {
+                entreAspas = true;
+            } else if (caractere == ',') {
+                campos.add(campo.toString().strip());
+                campo.setLength(0);
+            } else {
+                campo.append(caractere);
+            }
+        }
+        if (entreAspas) {
+            throw new IllegalArgumentException(LINHA_INVALIDA);
+        }
+        campos.add(campo.toString().strip());
+        return campos;
+    }
+
+    private Cartao converteJson(String conteudo) {
+        try {
+            return objectMapper.readValue(conteudo, Cartao.class);
+        } catch (JsonProcessingException exception) {
+            // o limite com mais de duas casas decimais chega aqui embrulhado pelo Jackson
+            if (exception.getCause() instanceof IllegalArgumentException causa) {
+                throw causa;
+            }
+            throw new IllegalArgumentException(LINHA_INVALIDA);
+        }
+    }
+
+    private static Long limite(String valor) {
+        try {
+            return Centavos.de(new BigDecimal(valor));
+        } catch (NumberFormatException exception) {
+            throw new IllegalArgumentException(LIMITE_INVALIDO);
+        }
+    }
+
+    private static Cartao valida(Cartao cartao) {
+        if (!confere(CPF, cartao.getCpf())) {
+            throw new IllegalArgumentException(CPF_INVALIDO);
+        } else if (!confere(NUMERO, cartao.getNumero())) {
+            throw new IllegalArgumentException(NUMERO_INVALIDO);
+        } else if (!confere(DATA_VALIDADE, cartao.getDataValidade())) {
+            throw new IllegalArgumentException(DATA_VALIDADE_INVALIDA);
+        } else if (!confere(CVV, cartao.getCvv())) {
+            throw new IllegalArgumentException(CVV_INVALIDO);
+        } else if (cartao.getLimiteCentavos() == null || cartao.getLimiteCentavos() < 0) {
+            throw new IllegalArgumentException(LIMITE_INVALIDO);
+        }
+        return cartao;
+    }
+
+    private static boolean confere(Pattern padrao, String valor) {
+        return valor != null && padrao.matcher(valor).matches();
+    }
+
+    private Path caminhoRelatorio(UUID id) {
+        return diretorioRelatorios.resolve(PREFIXO_RELATORIO + id + SUFIXO_RELATORIO);
+    }
+
+    private record Linha(long numero, String conteudo, Cartao cartao) {
+    }
+
+    private static final class Relatorio implements Closeable {
+        private final BufferedWriter escritor;
+        private long rejeitados;
+
+        private Relatorio(BufferedWriter escritor) throws IOException {
+            this.escritor = escritor;
+            escritor.write("linha,motivo,conteudo");
+            escritor.newLine();
+        }
+
+        private void registra(long linha, String motivo, String conteudo) {
+            try {
+                escritor.write(linha + "," + comAspas(motivo) + "," + comAspas(conteudo));
+                escritor.newLine();
+                rejeitados++;
+            } catch (IOException exception) {
+                throw new UncheckedIOException(exception);
+            }
+        }
+
+        private static String comAspas(String valor) {
+            return "\"" + String.valueOf(valor).replace("\"", "\"\"") + "\"";
+        }
+
+        @Override
+        public void close() throws IOException {
+            escritor.close();
+        }
+    }
+}
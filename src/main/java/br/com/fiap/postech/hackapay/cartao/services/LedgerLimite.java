@@ -0,0 +1,315 @@
+package br.com.fiap.postech.hackapay.cartao.services;
+
+import br.com.fiap.postech.hackapay.cartao.entities.Cartao;
+import br.com.fiap.postech.hackapay.cartao.repository.CartaoRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static br.com.fiap.postech.hackapay.cartao.services.CartaoServiceImpl.*;
+
+/*
+ * Mantem em memoria o limite disponivel dos cartoes debitados e grava no banco,
+ * em lote, apenas o total debitado desde o ultimo flush. So e seguro com uma
+ * unica instancia do servico debitando os mesmos cartoes.
+ */
+@Component
+@ConditionalOnProperty(name = "hackapay.cartao.ledger.enabled", havingValue = "true")
+public class LedgerLimite implements SmartLifecycle {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LedgerLimite.class);
+    private static final String SQL_FLUSH = "update tb_cartao set limite_centavos = limite_centavos - ? where numero = ?";
+    private static final int TRAVAS = 64;
+
+    private final CartaoRepository cartaoRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final Duration intervaloFlush;
+    private final TransactionTemplate novaTransacao;
+    private final Map<String, Entrada> entradas = new ConcurrentHashMap<>();
+    // cartoes em update/delete: nao sao carregados de novo ate o libera
+    private final Map<String, Integer> bloqueios = new ConcurrentHashMap<>();
+    private final ReentrantLock[] travas = new ReentrantLock[TRAVAS];
+    private final Condition[] liberacoes = new Condition[TRAVAS];
+    // muda a cada descarta na trava; uma leitura que comecou antes e descartada
+    private final long[] geracoes = new long[TRAVAS];
+    private ScheduledExecutorService agendador;
+
+    @Autowired
+    public LedgerLimite(CartaoRepository cartaoRepository,
+                        JdbcTemplate jdbcTemplate,
+                        TransactionTemplate transactionTemplate,
+                        @Value("${hackapay.cartao.ledger.flush-interval:200ms}") Duration intervaloFlush) {
+        this.cartaoRepository = cartaoRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.intervaloFlush = intervaloFlush;
+        // o descarta pode ser chamado dentro da transacao de um update; o pendente
+        // e gravado na propria transacao, para nao ser perdido num rollback dele
+        this.novaTransacao = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        this.novaTransacao.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        for (int i = 0; i < TRAVAS; i++) {
+            travas[i] = new ReentrantLock();
+            liberacoes[i] = travas[i].newCondition();
+        }
+    }
+
+    public void debita(long valorCentavos, Cartao cartao) {
+        String numero = cartao.getNumero();
+        int indice = indice(numero);
+        ReentrantLock trava = travas[indice];
+        while (true) {
+            long geracao;
+            trava.lock();
+            try {
+                while (bloqueios.containsKey(numero)) {
+                    liberacoes[indice].awaitUninterruptibly();
+                }
+                Entrada entrada = entradas.get(numero);
+                if (entrada != null) {
+                    aplica(entrada, valorCentavos, cartao);
+                    return;
+                }
+                geracao = geracoes[indice];
+            } finally {
+                trava.unlock();
+            }
+            // a leitura do banco fica fora da trava, para nao parar os outros cartoes dela
+            Entrada lida = new Entrada(cartaoRepository.findByNumero(numero)
+                    .orElseThrow(() -> new IllegalArgumentException(CARTAO_NAO_ENCONTRADO)));
+            trava.lock();
+            try {
+                // um descarta durante a leitura pode ter deixado o valor lido para tras: le de novo
+                if (geracoes[indice] == geracao) {
+                    entradas.putIfAbsent(numero, lida);
+                }
+            } finally {
+                trava.unlock();
+            }
+        }
+    }
+
+    /*
+     * Grava o que estiver pendente e remove o cartao da memoria, para que
+     * alteracoes feitas fora do ledger (update, delete) partam do valor do banco.
+     * Espera o flush em andamento do cartao, se houver, e bloqueia os debitos
+     * dele ate o libera, para que nenhum carregue o limite de antes da alteracao.
+     */
+    public void descarta(String numero) {
+        int indice = indice(numero);
+        ReentrantLock trava = travas[indice];
+        Entrada entrada;
+        trava.lock();
+        try {
+            bloqueios.merge(numero, 1, Integer::sum);
+            geracoes[indice]++;
+            while ((entrada = entradas.get(numero)) != null && entrada.gravando != 0) {
+                liberacoes[indice].awaitUninterruptibly();
+            }
+            entradas.remove(numero);
+        } finally {
+            trava.unlock();
+        }
+        if (entrada == null || entrada.pendente == 0) {
+            return;
+        }
+        try {
+            grava(List.<Object[]>of(new Object[]{entrada.pendente, numero}));
+        } catch (RuntimeException exception) {
+            // o pendente volta para a memoria e o proximo flush tenta de novo
+            trava.lock();
+            try {
+                entradas.put(numero, entrada);
+            } finally {
+                trava.unlock();
+            }
+            desbloqueia(numero);
+            throw exception;
+        }
+        cartaoRepository.removeDoCache(List.of(entrada.id));
+    }
+
+    /*
+     * Volta a aceitar debitos do cartao descartado. Dentro de uma transacao, so
+     * depois do commit ou do rollback dela.
+     */
+    public void libera(String numero) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            desbloqueia(numero);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                desbloqueia(numero);
+            }
+        });
+    }
+
+    public void flush() {
+        List<Gravacao> gravacoes = new ArrayList<>();
+        for (Map.Entry<String, Entrada> item : entradas.entrySet()) {
+            ReentrantLock trava = travas[indice(item.getKey())];
+            trava.lock();
+            try {
+                Entrada entrada = item.getValue();
+                // a entrada pode ter sido descartada depois de lida pelo iterador
+                if (entrada.pendente != 0 && entradas.get(item.getKey()) == entrada) {
+                    gravacoes.add(new Gravacao(item.getKey(), entrada, entrada.pendente));
+                    entrada.gravando += entrada.pendente;
+                    entrada.pendente = 0;
+                }
+            } finally {
+                trava.unlock();
+            }
+        }
+        if (gravacoes.isEmpty()) {
+            return;
+        }
+        boolean gravado = false;
+        try {
+            grava(gravacoes.stream().map(gravacao -> new Object[]{gravacao.valor, gravacao.numero}).toList());
+            gravado = true;
+        } catch (RuntimeException exception) {
+            LOGGER.error("falha ao gravar {} debitos do ledger, serao reenviados no proximo flush", gravacoes.size(), exception);
+        } finally {
+            conclui(gravacoes, gravado);
+        }
+        if (gravado) {
+            cartaoRepository.removeDoCache(gravacoes.stream().map(gravacao -> gravacao.entrada.id).toList());
+        }
+    }
+
+    /*
+     * Nao ha reconciliacao na subida: o ledger comeca vazio e o limite de cada
+     * cartao e lido do banco no primeiro debito (carrega), de modo que o banco
+     * e sempre a referencia apos um restart.
+     */
+    @Override
+    public void start() {
+        agendador = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ledger-limite-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalo = intervaloFlush.toMillis();
+        agendador.scheduleWithFixedDelay(this::flush, intervalo, intervalo, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void stop() {
+        agendador.shutdown();
+        try {
+            agendador.awaitTermination(intervaloFlush.toMillis() * 2, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+        agendador = null;
+        flush();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return agendador != null;
+    }
+
+    @Override
+    public int getPhase() {
+        // para depois do servidor web, que deixa de aceitar debitos antes do ultimo flush
+        return SmartLifecycle.DEFAULT_PHASE - 4096;
+    }
+
+    private static void aplica(Entrada entrada, long valorCentavos, Cartao cartao) {
+        if (!entrada.cpf.equals(cartao.getCpf())) {
+            throw new IllegalArgumentException(CPF_NAO_CONFERE);
+        } else if (!entrada.cvv.equals(cartao.getCvv())) {
+            throw new IllegalArgumentException(CVV_NAO_CONFERE);
+        } else if (!entrada.dataValidade.equals(cartao.getDataValidade())) {
+            throw new IllegalArgumentException(DATA_VALIDADE_NAO_CONFERE);
+        } else if (entrada.disponivel < valorCentavos) {
+            throw new IllegalArgumentException(LIMITE_INSUFICIENTE);
+        }
+        entrada.disponivel -= valorCentavos;
+        entrada.pendente += valorCentavos;
+    }
+
+    private void grava(List<Object[]> lote) {
+        novaTransacao.executeWithoutResult(status -> jdbcTemplate.batchUpdate(SQL_FLUSH, lote));
+    }
+
+    /*
+     * A entrada continua no mapa enquanto ha gravacao em andamento (o descarta
+     * espera), entao uma gravacao que falhou sempre tem para onde devolver o valor.
+     */
+    private void conclui(List<Gravacao> gravacoes, boolean gravado) {
+        for (Gravacao gravacao : gravacoes) {
+            int indice = indice(gravacao.numero);
+            travas[indice].lock();
+            try {
+                gravacao.entrada.gravando -= gravacao.valor;
+                if (!gravado) {
+                    gravacao.entrada.pendente += gravacao.valor;
+                }
+                liberacoes[indice].signalAll();
+            } finally {
+                travas[indice].unlock();
+            }
+        }
+    }
+
+    private void desbloqueia(String numero) {
+        int indice = indice(numero);
+        travas[indice].lock();
+        try {
+            bloqueios.computeIfPresent(numero, (chave, quantidade) -> quantidade == 1 ? null : quantidade - 1);
+            liberacoes[indice].signalAll();
+        } finally {
+            travas[indice].unlock();
+        }
+    }
+
+    private static int indice(String numero) {
+        int hash = numero.hashCode();
+        return (hash ^ (hash >>> 16)) & (TRAVAS - 1);
+    }
+
+    private record Gravacao(String numero, Entrada entrada, long valor) {
+    }
+
+    private static final class Entrada {
+        private final UUID id;
+        private final String cpf;
+        private final String cvv;
+        private final String dataValidade;
+        private long disponivel;
+        private long pendente;
+        private long gravando;
+
+        private Entrada(Cartao cartao) {
+            this.id = cartao.getId();
+            this.cpf = cartao.getCpf();
+            this.cvv = cartao.getCvv();
+            this.dataValidade = cartao.getDataValidade();
+            this.disponivel = cartao.getLimiteCentavos();
+        }
+    }
+}
@@ -0,0 +1,20 @@
+create table tb_cartao (
+    id uuid not null,
+    cpf varchar(255) not null,
+    limite double precision not null,
+    numero varchar(255) not null,
+    data_validade varchar(255) not null,
+    cvv varchar(255) not null,
+    constraint pk_cartao primary key (id)
+);
+
+create table tb_idempotencia (
+    chave varchar(64) not null,
+    aceito boolean not null,
+    motivo varchar(100),
+    criado_em timestamp(6) with time zone not null,
+    constraint pk_idempotencia primary key (chave)
+);
+
+-- limpeza periodica das chaves expiradas
+create index ix_idempotencia_criado_em on tb_idempotencia (criado_em);
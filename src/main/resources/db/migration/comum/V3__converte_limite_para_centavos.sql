@@ -0,0 +1,10 @@
+-- limite passa de double precision (reais) para bigint (centavos).
+-- o valor passa por numeric antes de multiplicar, para que um double como
+-- 12.34 (12.339999...) vire exatamente 1234 e nao 1233
+alter table tb_cartao add column limite_centavos bigint;
+
+update tb_cartao set limite_centavos = cast(round(cast(limite as numeric(19, 4)) * 100) as bigint);
+
+alter table tb_cartao alter column limite_centavos set not null;
+
+alter table tb_cartao drop column limite;
@@ -0,0 +1,7 @@
+-- a chave passa a ser a SHA-256 de (titular, Idempotency-Key) e cada registro
+-- guarda a assinatura do pedido que a usou primeiro: SHA-256 de (titular,
+-- numero, valor em centavos). Os registros antigos tem a chave sem titular,
+-- que nao volta a ser consultada, e sao descartados
+delete from tb_idempotencia;
+
+alter table tb_idempotencia add column assinatura varchar(64) not null;
@@ -0,0 +1,4 @@
+-- o H2 nao suporta include, entao aqui o indice de numero nao e de cobertura
+create unique index ux_cartao_numero on tb_cartao (numero);
+
+create index ix_cartao_cpf on tb_cartao (cpf, id);
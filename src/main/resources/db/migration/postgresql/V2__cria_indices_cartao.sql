@@ -0,0 +1,8 @@
+-- findByNumero / findByNumeroIn e o debito condicional filtram por numero.
+-- os demais campos conferidos no debito ficam no proprio indice, o que permite
+-- index-only scan na validacao; limite fica de fora de proposito, para que o
+-- update do debito nao altere nenhuma coluna indexada e continue sendo HOT
+create unique index ux_cartao_numero on tb_cartao (numero) include (cpf, cvv, data_validade);
+
+-- countByCpf no cadastro e o filtro por cpf da listagem por cursor
+create index ix_cartao_cpf on tb_cartao (cpf, id);
@@ -0,0 +1,48 @@
+package br.com.fiap.postech.hackapay.cartao.perf;
+
+import br.com.fiap.postech.hackapay.cartao.entities.Cartao;
+import br.com.fiap.postech.hackapay.cartao.services.CartaoService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Cadastro com o cliente simulado respondendo depois da latencia indicada:
+ * como a consulta ao cliente corre em paralelo com a contagem de cartoes do
+ * cpf, o p50 deve ficar perto de max(latencia, contagem + insert) e nao da soma.
+ * consultaParalela=false e a linha de base sequencial para comparar p50 e p99.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class CadastroCartaoBenchmark {
+
+    @Param({"0ms", "20ms"})
+    public String latenciaCliente;
+
+    @Param({"true", "false"})
+    public boolean consultaParalela;
+
+    private ConfigurableApplicationContext contexto;
+    private CartaoService cartaoService;
+
+    @Setup(Level.Trial)
+    public void inicia() {
+        contexto = ContextoBenchmark.inicia("hackapay.perf.cliente.latencia=" + latenciaCliente,
+                "hackapay.cartao.cadastro.consulta-paralela=" + consultaParalela);
+        cartaoService = contexto.getBean(CartaoService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void encerra() {
+        contexto.close();
+    }
+
+    @Benchmark
+    public Cartao save() {
+        Cartao cartao = new Cartao(ContextoBenchmark.proximoCpf(), 100000L, ContextoBenchmark.proximoNumero(),
+                "12/30", "123");
+        return cartaoService.save(ContextoBenchmark.TOKEN, cartao);
+    }
+}
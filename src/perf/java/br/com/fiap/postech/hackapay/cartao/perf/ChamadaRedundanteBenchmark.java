@@ -0,0 +1,89 @@
+package br.com.fiap.postech.hackapay.cartao.perf;
+
+import br.com.fiap.postech.hackapay.cartao.integration.ChamadaRedundante;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Cauda da latencia contra um stub HTTP bimodal: uma a cada 20 requisicoes
+ * demora 300ms, as demais 1ms. Com o hedging o p99 deve ficar perto do atraso
+ * do percentil configurado, e nao dos 300ms; comparar com habilitada=false.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ChamadaRedundanteBenchmark {
+
+    private static final long LATENCIA_LENTA_MILLIS = 300;
+
+    @Param({"true", "false"})
+    public boolean habilitada;
+
+    private HttpServer stub;
+    private HttpClient httpClient;
+    private HttpRequest requisicao;
+    private ChamadaRedundante<String> chamadaRedundante;
+
+    @Setup(Level.Trial)
+    public void inicia() throws IOException {
+        AtomicInteger requisicoes = new AtomicInteger();
+        stub = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        stub.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        stub.createContext("/cliente", troca -> {
+            dorme(requisicoes.incrementAndGet() % 20 == 0 ? LATENCIA_LENTA_MILLIS : 1);
+            // sem corpo a resposta sai em uma unica escrita, sem o atraso do algoritmo de Nagle
+            troca.sendResponseHeaders(204, -1);
+            troca.close();
+        });
+        stub.start();
+        httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        requisicao = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + stub.getAddress().getPort() + "/cliente")).build();
+        chamadaRedundante = new ChamadaRedundante<>(new SimpleMeterRegistry(), "benchmark", habilitada,
+                0.9, Duration.ofMillis(10), 0.2);
+    }
+
+    @TearDown(Level.Trial)
+    public void encerra() {
+        chamadaRedundante.close();
+        httpClient.shutdownNow();
+        stub.stop(0);
+    }
+
+    @Benchmark
+    public String consulta() {
+        return chamadaRedundante.executa(this::consultaStub);
+    }
+
+    private String consultaStub() {
+        try {
+            return httpClient.send(requisicao, HttpResponse.BodyHandlers.discarding()).statusCode() == 204 ? "cliente" : null;
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(exception);
+        }
+    }
+
+    private static void dorme(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
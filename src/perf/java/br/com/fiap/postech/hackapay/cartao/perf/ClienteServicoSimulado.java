@@ -0,0 +1,83 @@
+package br.com.fiap.postech.hackapay.cartao.perf;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Servico de cliente falso, no mesmo processo, respondendo GET /api/cliente/findByCpf/{cpf}
+ * depois de uma latencia sorteada. Uma fracao das chamadas responde 500 e outra 404.
+ * Cada requisicao roda numa thread virtual, entao a latencia simulada nao limita
+ * a concorrencia do simulador.
+ */
+final class ClienteServicoSimulado implements AutoCloseable {
+
+    private static final byte[] CLIENTE = "{}".getBytes(StandardCharsets.UTF_8);
+
+    private final HttpServer servidor;
+    private final ExecutorService executor;
+    private final DistribuicaoLatencia latencia;
+    private final double taxaErro;
+    private final double taxaNaoEncontrado;
+
+    private ClienteServicoSimulado(DistribuicaoLatencia latencia, double taxaErro, double taxaNaoEncontrado) throws IOException {
+        this.latencia = latencia;
+        this.taxaErro = taxaErro;
+        this.taxaNaoEncontrado = taxaNaoEncontrado;
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        // sem TCP_NODELAY o corpo espera o ACK atrasado do cabecalho e cada resposta ganha ~40ms
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        // acima de 200 conexoes ociosas o servidor fecha as excedentes sem avisar e o pool
+        // do cliente HTTP as reutiliza, o que aparece como NoHttpResponseException sob carga alta
+        System.setProperty("sun.net.httpserver.maxIdleConnections", "10000");
+        this.servidor = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 4096);
+        servidor.setExecutor(executor);
+        servidor.createContext("/api/cliente/findByCpf/", this::responde);
+    }
+
+    static ClienteServicoSimulado inicia(DistribuicaoLatencia latencia, double taxaErro, double taxaNaoEncontrado)
+            throws IOException {
+        ClienteServicoSimulado simulado = new ClienteServicoSimulado(latencia, taxaErro, taxaNaoEncontrado);
+        simulado.servidor.start();
+        return simulado;
+    }
+
+    String url() {
+        return "http://127.0.0.1:" + servidor.getAddress().getPort() + "/api/cliente";
+    }
+
+    private void responde(HttpExchange troca) throws IOException {
+        try (troca) {
+            TimeUnit.NANOSECONDS.sleep(latencia.sorteiaNanos());
+            double sorteio = ThreadLocalRandom.current().nextDouble();
+            if (sorteio < taxaErro) {
+                troca.sendResponseHeaders(500, -1);
+            } else if (sorteio < taxaErro + taxaNaoEncontrado) {
+                troca.sendResponseHeaders(404, -1);
+            } else {
+                troca.getResponseHeaders().set("Content-Type", "application/json");
+                troca.sendResponseHeaders(200, CLIENTE.length);
+                try (OutputStream corpo = troca.getResponseBody()) {
+                    corpo.write(CLIENTE);
+                }
+            }
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() {
+        servidor.stop(0);
+        executor.shutdownNow();
+    }
+}
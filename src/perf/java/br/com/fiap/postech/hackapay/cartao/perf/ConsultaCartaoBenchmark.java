@@ -0,0 +1,89 @@
+package br.com.fiap.postech.hackapay.cartao.perf;
+
+import br.com.fiap.postech.hackapay.cartao.dto.AutorizacaoCartao;
+import br.com.fiap.postech.hackapay.cartao.dto.PaginaCursor;
+import br.com.fiap.postech.hackapay.cartao.entities.Cartao;
+import br.com.fiap.postech.hackapay.cartao.repository.CartaoRepository;
+import br.com.fiap.postech.hackapay.cartao.services.CartaoService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Consultas por Example, por cursor e por numero numa tabela com a quantidade
+ * de cartoes indicada. Com 1000000 de cartoes mede se os indices de numero e
+ * cpf seguram a busca; o carregamento inicial leva alguns segundos.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ConsultaCartaoBenchmark {
+
+    @Param({"10000", "1000000"})
+    public int cartoes;
+
+    private ConfigurableApplicationContext contexto;
+    private CartaoService cartaoService;
+    private CartaoRepository cartaoRepository;
+    private List<Cartao> cadastrados;
+
+    @Setup(Level.Trial)
+    public void inicia() {
+        contexto = ContextoBenchmark.inicia();
+        cartaoService = contexto.getBean(CartaoService.class);
+        cartaoRepository = contexto.getBean(CartaoRepository.class);
+        cadastrados = ContextoBenchmark.novosCartoes(cartoes, 100000L);
+        ContextoBenchmark.insere(contexto, cadastrados);
+    }
+
+    @TearDown(Level.Trial)
+    public void encerra() {
+        contexto.close();
+    }
+
+    private Cartao sorteia() {
+        return cadastrados.get(ThreadLocalRandom.current().nextInt(cadastrados.size()));
+    }
+
+    private static Cartao criterio(String cpf, String numero) {
+        Cartao criterio = new Cartao(cpf, null, numero, null, null);
+        criterio.setId(null);
+        return criterio;
+    }
+
+    @Benchmark
+    public Page<Cartao> findAllPorCpf() {
+        return cartaoService.findAll(PageRequest.of(0, 10), criterio(sorteia().getCpf(), null));
+    }
+
+    @Benchmark
+    public Page<Cartao> findAllPorNumero() {
+        return cartaoService.findAll(PageRequest.of(0, 10), criterio(null, sorteia().getNumero()));
+    }
+
+    @Benchmark
+    public Page<Cartao> findAllSemFiltro() {
+        return cartaoService.findAll(PageRequest.of(0, 10), criterio(null, null));
+    }
+
+    @Benchmark
+    public PaginaCursor<Cartao> findAllPorCursor() {
+        return cartaoService.findAll(null, 10, criterio(null, null));
+    }
+
+    @Benchmark
+    public Optional<Cartao> findByNumero() {
+        return cartaoRepository.findByNumero(sorteia().getNumero());
+    }
+
+    @Benchmark
+    public Optional<AutorizacaoCartao> findAutorizacaoByNumero() {
+        return cartaoRepository.findAutorizacaoByNumero(sorteia().getNumero());
+    }
+}
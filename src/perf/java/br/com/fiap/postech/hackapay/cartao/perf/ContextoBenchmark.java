@@ -0,0 +1,140 @@
+package br.com.fiap.postech.hackapay.cartao.perf;
+
+import br.com.fiap.postech.hackapay.cartao.HackaPayCartaoApplication;
+import br.com.fiap.postech.hackapay.cartao.entities.Cartao;
+import br.com.fiap.postech.hackapay.cartao.integration.Cliente;
+import br.com.fiap.postech.hackapay.cartao.integration.ClienteIntegracao;
+import br.com.fiap.postech.hackapay.cartao.repository.CartaoRepository;
+import br.com.fiap.postech.hackapay.cartao.services.GeradorUuid;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Sobe a aplicacao com o perfil de teste (H2 e Flyway) e um ClienteIntegracao
+ * simulado, que responde sem rede depois de hackapay.perf.cliente.latencia.
+ * Para medir contra PostgreSQL: -Djmh.opcoes="-jvmArgsAppend -Dhackapay.perf.perfil=default
+ * -Dspring.datasource.url=jdbc:postgresql://..."
+ */
+final class ContextoBenchmark {
+
+    static final String TOKEN = "token-benchmark";
+    private static final int TAMANHO_LOTE = 5000;
+    private static final AtomicLong SEQUENCIA = new AtomicLong();
+
+    private ContextoBenchmark() {
+    }
+
+    /*
+     * As propriedades entram como argumentos de linha de comando para valer
+     * sobre o application.properties.
+     */
+    static ConfigurableApplicationContext inicia(String... propriedades) {
+        List<String> comClienteSimulado = new ArrayList<>(List.of(propriedades));
+        comClienteSimulado.add(ClienteSimulado.PROPRIEDADE + "=true");
+        return inicia(List.of(ClienteSimulado.class), List.of(), comClienteSimulado.toArray(String[]::new));
+    }
+
+    static ConfigurableApplicationContext inicia(List<Class<?>> configuracoes, List<String> perfisAdicionais,
+                                                 String... propriedades) {
+        // o restart do devtools chamaria o main de novo com os argumentos do Spring
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        String perfil = System.getProperty("hackapay.perf.perfil", "test");
+        List<String> argumentos = new ArrayList<>(List.of("--server.port=0", "--logging.level.root=WARN"));
+        if ("test".equals(perfil)) {
+            // nos ITs quem troca o driver e o @AutoConfigureTestDatabase
+            argumentos.add("--spring.datasource.driver-class-name=org.h2.Driver");
+        }
+        for (String propriedade : propriedades) {
+            argumentos.add("--" + propriedade);
+        }
+        List<Class<?>> fontes = new ArrayList<>(configuracoes);
+        fontes.add(0, HackaPayCartaoApplication.class);
+        List<String> perfis = new ArrayList<>(perfisAdicionais);
+        perfis.add(0, perfil);
+        return new SpringApplicationBuilder(fontes.toArray(Class<?>[]::new))
+                .profiles(perfis.toArray(String[]::new))
+                .run(argumentos.toArray(String[]::new));
+    }
+
+    static String proximoCpf() {
+        return String.format("%011d", SEQUENCIA.incrementAndGet());
+    }
+
+    static String proximoNumero() {
+        return String.format("5%015d", SEQUENCIA.incrementAndGet());
+    }
+
+    /*
+     * Dois cartoes por cpf, o maximo que o cadastro aceita.
+     */
+    static List<Cartao> novosCartoes(int quantidade, long limiteCentavos) {
+        List<Cartao> cartoes = new ArrayList<>(quantidade);
+        String cpf = null;
+        for (int i = 0; i < quantidade; i++) {
+            if (i % 2 == 0) {
+                cpf = proximoCpf();
+            }
+            cartoes.add(new Cartao(cpf, limiteCentavos, proximoNumero(), "12/30", "123"));
+        }
+        return cartoes;
+    }
+
+    static void insere(ConfigurableApplicationContext contexto, List<Cartao> cartoes) {
+        CartaoRepository cartaoRepository = contexto.getBean(CartaoRepository.class);
+        TransactionTemplate transactionTemplate = contexto.getBean(TransactionTemplate.class);
+        for (int inicio = 0; inicio < cartoes.size(); inicio += TAMANHO_LOTE) {
+            List<Cartao> lote = cartoes.subList(inicio, Math.min(inicio + TAMANHO_LOTE, cartoes.size()));
+            lote.forEach(cartao -> cartao.setId(GeradorUuid.novo()));
+            transactionTemplate.executeWithoutResult(status -> cartaoRepository.insereEmLote(lote));
+        }
+    }
+
+    /*
+     * A varredura de componentes da aplicacao tambem encontra esta classe; sem a
+     * condicao ela trocaria o cliente HTTP do HarnessCarga pelo simulado.
+     */
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnProperty(ClienteSimulado.PROPRIEDADE)
+    static class ClienteSimulado {
+        static final String PROPRIEDADE = "hackapay.perf.cliente.simulado";
+
+        @Bean
+        @Primary
+        ClienteIntegracao clienteIntegracaoSimulado(@Value("${hackapay.perf.cliente.latencia:0ms}") Duration latencia) {
+            return new ClienteIntegracaoSimulado(latencia);
+        }
+    }
+
+    static final class ClienteIntegracaoSimulado extends ClienteIntegracao {
+        private static final Cliente CLIENTE = new Cliente();
+        private final long latenciaMillis;
+
+        ClienteIntegracaoSimulado(Duration latencia) {
+            super(null, null, null, null, null, null, null);
+            this.latenciaMillis = latencia.toMillis();
+        }
+
+        @Override
+        public Cliente getCliente(String token, String cpf) {
+            if (latenciaMillis > 0) {
+                try {
+                    Thread.sleep(latenciaMillis);
+                } catch (InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return CLIENTE;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package br.com.fiap.postech.hackapay.cartao.perf;
+
+import br.com.fiap.postech.hackapay.cartao.entities.Cartao;
+import br.com.fiap.postech.hackapay.cartao.services.CartaoService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Debito unitario (cache de autorizacao + update condicional por JDBC) e,
+ * com ledger=true, o debito em memoria com flush periodico.
+ * Com -t 8 as threads disputam os mesmos cartoes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class DebitoCartaoBenchmark {
+
+    @Param({"1000"})
+    public int cartoes;
+
+    @Param({"false", "true"})
+    public boolean ledger;
+
+    private ConfigurableApplicationContext contexto;
+    private CartaoService cartaoService;
+    private List<Cartao> debitados;
+
+    @Setup(Level.Trial)
+    public void inicia() {
+        contexto = ContextoBenchmark.inicia("hackapay.cartao.ledger.enabled=" + ledger);
+        cartaoService = contexto.getBean(CartaoService.class);
+        debitados = ContextoBenchmark.novosCartoes(cartoes, Long.MAX_VALUE / 2);
+        ContextoBenchmark.insere(contexto, debitados);
+    }
+
+    @TearDown(Level.Trial)
+    public void encerra() {
+        contexto.close();
+    }
+
+    @Benchmark
+    public void atualizaLimiteCartao() {
+        Cartao cartao = debitados.get(ThreadLocalRandom.current().nextInt(debitados.size()));
+        cartaoService.atualizaLimiteCartao(1L, cartao);
+    }
+}
@@ -0,0 +1,40 @@
+package br.com.fiap.postech.hackapay.cartao.perf;
+
+import org.springframework.boot.convert.DurationStyle;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/*
+ * Latencia do cliente simulado, no formato da opcao --cliente-latencia:
+ * fixa:20ms, uniforme:5ms:50ms ou lognormal:20ms:0.5 (mediana e sigma).
+ */
+interface DistribuicaoLatencia {
+
+    long sorteiaNanos();
+
+    static DistribuicaoLatencia de(String especificacao) {
+        String[] partes = especificacao.split(":");
+        switch (partes[0]) {
+            case "fixa" -> {
+                long fixa = nanos(partes[1]);
+                return () -> fixa;
+            }
+            case "uniforme" -> {
+                long minima = nanos(partes[1]);
+                long maxima = nanos(partes[2]);
+                return () -> ThreadLocalRandom.current().nextLong(minima, maxima + 1);
+            }
+            case "lognormal" -> {
+                double mediana = nanos(partes[1]);
+                double sigma = Double.parseDouble(partes[2]);
+                return () -> (long) (mediana * Math.exp(sigma * ThreadLocalRandom.current().nextGaussian()));
+            }
+            default -> throw new IllegalArgumentException("distribuicao de latencia desconhecida: " + especificacao);
+        }
+    }
+
+    private static long nanos(String duracao) {
+        return DurationStyle.detectAndParse(duracao).toNanos();
+    }
+}
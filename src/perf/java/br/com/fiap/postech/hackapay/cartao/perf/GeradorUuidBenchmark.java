@@ -0,0 +1,27 @@
+package br.com.fiap.postech.hackapay.cartao.perf;
+
+import br.com.fiap.postech.hackapay.cartao.services.GeradorUuid;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Custo de gerar o id: UUIDv7 (CAS num AtomicLong) contra o UUIDv4 do JDK
+ * (SecureRandom). Rodar tambem com -t 8 para ver a disputa no CAS.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class GeradorUuidBenchmark {
+
+    @Benchmark
+    public UUID uuidV7() {
+        return GeradorUuid.novo();
+    }
+
+    @Benchmark
+    public UUID uuidV4() {
+        return UUID.randomUUID();
+    }
+}
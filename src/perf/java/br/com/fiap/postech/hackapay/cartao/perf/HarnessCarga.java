@@ -0,0 +1,295 @@
+package br.com.fiap.postech.hackapay.cartao.perf;
+
+import br.com.fiap.postech.hackapay.cartao.entities.Cartao;
+import br.com.fiap.postech.hackapay.cartao.helper.UserHelper;
+import br.com.fiap.postech.hackapay.security.UserDetailsServiceImpl;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.mockito.Mockito;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.mockito.ArgumentMatchers.anyString;
+
+/*
+ * Carga mista (cadastro, listagem e debito) contra a aplicacao inteira, com H2 e
+ * o servico de cliente simulado em ClienteServicoSimulado.
+ *
+ * Modelo aberto: as chegadas seguem um processo de Poisson na taxa pedida, sem
+ * esperar as respostas anteriores. A latencia e medida a partir do instante em
+ * que a requisicao deveria ter saido, para que uma fila no cliente de carga nao
+ * esconda a lentidao do servico (omissao coordenada).
+ *
+ * mvn -Pperf verify -Djmh.skip=true -Dcarga.skip=false -Dcarga.opcoes="--rps=300 --threads=ambos"
+ *
+ * Opcoes (--nome=valor): rps, duracao, aquecimento, mix (cadastro:10,listagem:30,debito:60),
+ * cartoes, cliente-latencia (ver DistribuicaoLatencia), cliente-erros, cliente-nao-encontrado,
+ * threads (plataforma, virtual, reativo, ambos ou todos) e saida. Em "ambos" rodam as
+ * duas pilhas servlet; "todos" inclui a pilha reativa (perfil reativo, WebFlux e R2DBC).
+ */
+public final class HarnessCarga {
+
+    private static final Duration TIMEOUT_REQUISICAO = Duration.ofSeconds(30);
+
+    private final Map<String, String> opcoes;
+    private final Map<Operacao, Integer> mix;
+    private final int pesoTotal;
+    private final HttpClient httpClient;
+    private final String autorizacao = UserHelper.getToken("usuario-carga");
+    private List<Cartao> cartoes;
+    private String url;
+
+    private HarnessCarga(Map<String, String> opcoes) {
+        this.opcoes = opcoes;
+        this.mix = mix(opcao("mix", "cadastro:10,listagem:30,debito:60"));
+        this.pesoTotal = mix.values().stream().mapToInt(Integer::intValue).sum();
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opcoes = new HashMap<>();
+        for (String argumento : args) {
+            String[] chaveValor = argumento.replaceFirst("^--", "").split("=", 2);
+            opcoes.put(chaveValor[0], chaveValor.length > 1 ? chaveValor[1] : "true");
+        }
+        HarnessCarga harness = new HarnessCarga(opcoes);
+        String threads = harness.opcao("threads", "plataforma");
+        List<String> modos = switch (threads) {
+            case "ambos" -> List.of("plataforma", "virtual");
+            case "todos" -> List.of("plataforma", "virtual", "reativo");
+            default -> List.of(threads);
+        };
+        Map<String, Object> resultado = new LinkedHashMap<>();
+        resultado.put("opcoes", opcoes);
+        for (String modo : modos) {
+            resultado.put(modo, harness.executa(modo));
+        }
+        Path saida = Path.of(harness.opcao("saida", "target/carga-resultado.json"));
+        Files.createDirectories(saida.toAbsolutePath().getParent());
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(saida.toFile(), resultado);
+        System.out.println("resultado gravado em " + saida.toAbsolutePath());
+        System.exit(0);
+    }
+
+    private Map<String, Object> executa(String modo) throws IOException {
+        List<String> perfis = "plataforma".equals(modo) ? List.of() : List.of(modo);
+        List<String> propriedades = new ArrayList<>();
+        if ("test".equals(System.getProperty("hackapay.perf.perfil", "test"))) {
+            // um banco em memoria por modo, para que conexoes presas no modo anterior nao o mantenham
+            // aberto e os cartoes inseridos nao se repitam entre os modos; no reativo o JDBC
+            // (Flyway) e o R2DBC precisam enxergar o mesmo banco
+            String banco = "hackapay-carga-" + modo + ";DB_CLOSE_DELAY=-1";
+            propriedades.add("spring.datasource.url=jdbc:h2:mem:" + banco);
+            propriedades.add("spring.r2dbc.url=r2dbc:h2:mem:///" + banco);
+            propriedades.add("spring.r2dbc.username=sa");
+            propriedades.add("spring.r2dbc.password=");
+        }
+        try (ClienteServicoSimulado cliente = ClienteServicoSimulado.inicia(
+                DistribuicaoLatencia.de(opcao("cliente-latencia", "lognormal:20ms:0.5")),
+                Double.parseDouble(opcao("cliente-erros", "0.0")),
+                Double.parseDouble(opcao("cliente-nao-encontrado", "0.0")));
+             ConfigurableApplicationContext contexto = ContextoBenchmark.inicia(
+                     List.of(UsuarioSimulado.class), perfis, comUrlCliente(propriedades, cliente.url()))) {
+            url = "http://127.0.0.1:" + contexto.getEnvironment().getProperty("local.server.port") + "/api/cartao";
+            cartoes = ContextoBenchmark.novosCartoes(Integer.parseInt(opcao("cartoes", "1000")), Long.MAX_VALUE / 2);
+            ContextoBenchmark.insere(contexto, cartoes);
+
+            double rps = Double.parseDouble(opcao("rps", "200"));
+            System.out.printf("%n[%s] aquecimento a %.0f rps%n", modo, rps);
+            gera(rps, DurationStyle.detectAndParse(opcao("aquecimento", "15s")), new Medicao());
+            System.out.printf("[%s] medicao a %.0f rps%n", modo, rps);
+            Duration duracao = DurationStyle.detectAndParse(opcao("duracao", "60s"));
+            Medicao medicao = new Medicao();
+            gera(rps, duracao, medicao);
+            return medicao.relatorio(modo, duracao);
+        }
+    }
+
+    private static String[] comUrlCliente(List<String> propriedades, String urlCliente) {
+        List<String> todas = new ArrayList<>(propriedades);
+        todas.add("hackapay.cliente.url=" + urlCliente);
+        return todas.toArray(String[]::new);
+    }
+
+    /*
+     * Agenda as chegadas em tempo absoluto: se uma requisicao atrasar, as
+     * seguintes nao sao empurradas para frente.
+     */
+    private void gera(double rps, Duration duracao, Medicao medicao) {
+        double intervaloMedioNanos = TimeUnit.SECONDS.toNanos(1) / rps;
+        long inicio = System.nanoTime();
+        long fim = inicio + duracao.toNanos();
+        long prevista = inicio;
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            while (prevista < fim) {
+                long espera = prevista - System.nanoTime();
+                if (espera > 0) {
+                    LockSupport.parkNanos(espera);
+                }
+                long saida = prevista;
+                Operacao operacao = sorteiaOperacao();
+                executor.execute(() -> envia(operacao, saida, medicao));
+                prevista += (long) (-Math.log(1 - ThreadLocalRandom.current().nextDouble()) * intervaloMedioNanos);
+            }
+        }
+    }
+
+    private void envia(Operacao operacao, long prevista, Medicao medicao) {
+        boolean sucesso;
+        try {
+            HttpResponse<Void> resposta = httpClient.send(requisicao(operacao), HttpResponse.BodyHandlers.discarding());
+            sucesso = resposta.statusCode() / 100 == 2;
+        } catch (IOException exception) {
+            sucesso = false;
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        medicao.registra(operacao, System.nanoTime() - prevista, sucesso);
+    }
+
+    private HttpRequest requisicao(Operacao operacao) {
+        Cartao cartao = cartoes.get(ThreadLocalRandom.current().nextInt(cartoes.size()));
+        HttpRequest.Builder requisicao = switch (operacao) {
+            case CADASTRO -> HttpRequest.newBuilder(URI.create(url))
+                    .POST(json(ContextoBenchmark.proximoCpf(), ContextoBenchmark.proximoNumero(), "12/30", "123"));
+            case LISTAGEM -> HttpRequest.newBuilder(URI.create(url + "?page=0&size=10&cpf=" + cartao.getCpf()))
+                    .GET();
+            case DEBITO -> HttpRequest.newBuilder(URI.create(url + "/atualizaLimiteCartao/0.01"))
+                    .POST(json(cartao.getCpf(), cartao.getNumero(), cartao.getDataValidade(), cartao.getCvv()));
+        };
+        return requisicao
+                .header("Content-Type", "application/json")
+                .header("Authorization", autorizacao)
+                .timeout(TIMEOUT_REQUISICAO)
+                .build();
+    }
+
+    private static HttpRequest.BodyPublisher json(String cpf, String numero, String dataValidade, String cvv) {
+        return HttpRequest.BodyPublishers.ofString(String.format(
+                "{\"cpf\":\"%s\",\"numero\":\"%s\",\"data_validade\":\"%s\",\"cvv\":\"%s\",\"limite\":1000.00}",
+                cpf, numero, dataValidade, cvv));
+    }
+
+    private Operacao sorteiaOperacao() {
+        int sorteio = ThreadLocalRandom.current().nextInt(pesoTotal);
+        for (Map.Entry<Operacao, Integer> peso : mix.entrySet()) {
+            sorteio -= peso.getValue();
+            if (sorteio < 0) {
+                return peso.getKey();
+            }
+        }
+        throw new IllegalStateException("mix vazio");
+    }
+
+    private static Map<Operacao, Integer> mix(String especificacao) {
+        Map<Operacao, Integer> mix = new EnumMap<>(Operacao.class);
+        for (String item : especificacao.split(",")) {
+            String[] operacaoPeso = item.split(":");
+            mix.put(Operacao.valueOf(operacaoPeso[0].strip().toUpperCase()), Integer.parseInt(operacaoPeso[1].strip()));
+        }
+        return mix;
+    }
+
+    private String opcao(String nome, String padrao) {
+        return opcoes.getOrDefault(nome, padrao);
+    }
+
+    private enum Operacao {
+        CADASTRO,
+        LISTAGEM,
+        DEBITO
+    }
+
+    private static final class Medicao {
+        private final Map<Operacao, Histogram> latencias = new EnumMap<>(Operacao.class);
+        private final Map<Operacao, LongAdder> erros = new EnumMap<>(Operacao.class);
+
+        private Medicao() {
+            for (Operacao operacao : Operacao.values()) {
+                latencias.put(operacao, new ConcurrentHistogram(TimeUnit.MINUTES.toMicros(1), 3));
+                erros.put(operacao, new LongAdder());
+            }
+        }
+
+        private void registra(Operacao operacao, long latenciaNanos, boolean sucesso) {
+            Histogram latencia = latencias.get(operacao);
+            latencia.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(latenciaNanos), latencia.getHighestTrackableValue()));
+            if (!sucesso) {
+                erros.get(operacao).increment();
+            }
+        }
+
+        private Map<String, Object> relatorio(String modo, Duration duracao) {
+            Map<String, Object> relatorio = new LinkedHashMap<>();
+            System.out.printf("%-10s %10s %8s %9s %9s %9s %9s %9s %9s%n",
+                    modo, "requisicoes", "erros", "rps", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+            for (Operacao operacao : Operacao.values()) {
+                Histogram latencia = latencias.get(operacao);
+                long total = latencia.getTotalCount();
+                Map<String, Object> linha = new LinkedHashMap<>();
+                linha.put("requisicoes", total);
+                linha.put("erros", erros.get(operacao).sum());
+                linha.put("rps", total / (double) duracao.toSeconds());
+                List<Double> percentis = new ArrayList<>();
+                for (double percentil : new double[]{50, 90, 99, 99.9}) {
+                    double millis = latencia.getValueAtPercentile(percentil) / 1000.0;
+                    linha.put("p" + percentil, millis);
+                    percentis.add(millis);
+                }
+                linha.put("max", latencia.getMaxValue() / 1000.0);
+                relatorio.put(operacao.name().toLowerCase(), linha);
+                System.out.printf("%-10s %10d %8d %9.1f %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                        operacao.name().toLowerCase(), total, erros.get(operacao).sum(), linha.get("rps"),
+                        percentis.get(0), percentis.get(1), percentis.get(2), percentis.get(3),
+                        latencia.getMaxValue() / 1000.0);
+            }
+            return relatorio;
+        }
+    }
+
+    /*
+     * Como nos ITs, o usuario do token nao e buscado no servico de usuarios.
+     */
+    @Configuration(proxyBeanMethods = false)
+    static class UsuarioSimulado {
+        @Bean
+        @Primary
+        UserDetailsServiceImpl userDetailsServiceSimulado() {
+            UserDetailsServiceImpl userDetailsService = Mockito.mock(UserDetailsServiceImpl.class);
+            Mockito.when(userDetailsService.loadUserByUsername(anyString()))
+                    .thenAnswer(invocacao -> UserHelper.getUserDetails(invocacao.getArgument(0)));
+            return userDetailsService;
+        }
+    }
+}
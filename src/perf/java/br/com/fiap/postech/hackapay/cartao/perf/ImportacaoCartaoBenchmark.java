@@ -0,0 +1,62 @@
+package br.com.fiap.postech.hackapay.cartao.perf;
+
+import br.com.fiap.postech.hackapay.cartao.dto.FormatoImportacao;
+import br.com.fiap.postech.hackapay.cartao.dto.ResultadoImportacao;
+import br.com.fiap.postech.hackapay.cartao.entities.Cartao;
+import br.com.fiap.postech.hackapay.cartao.services.ImportacaoCartaoService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Importacao de um CSV inteiro, do parse ao commit de cada lote. O resultado
+ * e em cartoes por segundo; a meta e 50 mil por segundo no PostgreSQL.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ImportacaoCartaoBenchmark {
+
+    private static final int LINHAS = 50_000;
+
+    private ConfigurableApplicationContext contexto;
+    private ImportacaoCartaoService importacaoCartaoService;
+    private byte[] csv;
+
+    @Setup(Level.Trial)
+    public void inicia() {
+        contexto = ContextoBenchmark.inicia();
+        importacaoCartaoService = contexto.getBean(ImportacaoCartaoService.class);
+    }
+
+    @Setup(Level.Invocation)
+    public void preparaCsv() {
+        StringBuilder corpo = new StringBuilder(LINHAS * 48).append("cpf,numero,data_validade,cvv,limite\n");
+        for (Cartao cartao : ContextoBenchmark.novosCartoes(LINHAS, 100000L)) {
+            corpo.append(cartao.getCpf()).append(',')
+                    .append(cartao.getNumero()).append(',')
+                    .append(cartao.getDataValidade()).append(',')
+                    .append(cartao.getCvv()).append(",1000.00\n");
+        }
+        csv = corpo.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @TearDown(Level.Trial)
+    public void encerra() {
+        contexto.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINHAS)
+    public ResultadoImportacao importaCsv() {
+        ResultadoImportacao resultado = importacaoCartaoService.importa(ContextoBenchmark.TOKEN,
+                FormatoImportacao.CSV, new ByteArrayInputStream(csv));
+        if (resultado.importados() != LINHAS) {
+            throw new IllegalStateException("importacao rejeitou " + resultado.rejeitados() + " linhas");
+        }
+        return resultado;
+    }
+}
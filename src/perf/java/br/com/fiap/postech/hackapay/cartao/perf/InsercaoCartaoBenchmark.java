@@ -0,0 +1,60 @@
+package br.com.fiap.postech.hackapay.cartao.perf;
+
+import br.com.fiap.postech.hackapay.cartao.entities.Cartao;
+import br.com.fiap.postech.hackapay.cartao.repository.CartaoRepository;
+import br.com.fiap.postech.hackapay.cartao.services.GeradorUuid;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/*
+ * Insercao em lote com ids UUIDv4 (aleatorios) e UUIDv7 (crescentes). A tabela
+ * cresce durante a medicao: com v4 cada lote toca paginas espalhadas do indice
+ * da chave primaria, com v7 so as ultimas. O resultado e em cartoes por segundo.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class InsercaoCartaoBenchmark {
+
+    private static final int TAMANHO_LOTE = 1000;
+
+    @Param({"V4", "V7"})
+    public String versaoUuid;
+
+    private ConfigurableApplicationContext contexto;
+    private CartaoRepository cartaoRepository;
+    private TransactionTemplate transactionTemplate;
+    private Supplier<UUID> gerador;
+    private List<Cartao> lote;
+
+    @Setup(Level.Trial)
+    public void inicia() {
+        contexto = ContextoBenchmark.inicia();
+        cartaoRepository = contexto.getBean(CartaoRepository.class);
+        transactionTemplate = contexto.getBean(TransactionTemplate.class);
+        gerador = "V4".equals(versaoUuid) ? UUID::randomUUID : GeradorUuid::novo;
+    }
+
+    @Setup(Level.Invocation)
+    public void preparaLote() {
+        lote = ContextoBenchmark.novosCartoes(TAMANHO_LOTE, 100000L);
+        lote.forEach(cartao -> cartao.setId(gerador.get()));
+    }
+
+    @TearDown(Level.Trial)
+    public void encerra() {
+        contexto.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TAMANHO_LOTE)
+    public void insereEmLote() {
+        transactionTemplate.executeWithoutResult(status -> cartaoRepository.insereEmLote(lote));
+    }
+}
@@ -0,0 +1,56 @@
+package br.com.fiap.postech.hackapay.cartao.perf;
+
+import br.com.fiap.postech.hackapay.cartao.entities.Cartao;
+import br.com.fiap.postech.hackapay.cartao.services.GeradorUuid;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Serializacao das respostas de GET /cartao/{id} e GET /cartao, com o
+ * ObjectMapper montado como o do Spring Boot, sem subir a aplicacao.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SerializacaoCartaoBenchmark {
+
+    @Param({"10", "100"})
+    public int tamanhoPagina;
+
+    private ObjectMapper objectMapper;
+    private Cartao cartao;
+    private byte[] cartaoJson;
+    private PageImpl<Cartao> pagina;
+
+    @Setup(Level.Trial)
+    public void inicia() throws IOException {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        List<Cartao> cartoes = ContextoBenchmark.novosCartoes(tamanhoPagina, 123456L);
+        cartoes.forEach(cartaoDaPagina -> cartaoDaPagina.setId(GeradorUuid.novo()));
+        cartao = cartoes.get(0);
+        cartaoJson = objectMapper.writeValueAsBytes(cartao);
+        pagina = new PageImpl<>(cartoes, PageRequest.of(0, tamanhoPagina), 1_000_000);
+    }
+
+    @Benchmark
+    public byte[] serializaCartao() throws IOException {
+        return objectMapper.writeValueAsBytes(cartao);
+    }
+
+    @Benchmark
+    public Cartao desserializaCartao() throws IOException {
+        return objectMapper.readValue(cartaoJson, Cartao.class);
+    }
+
+    @Benchmark
+    public byte[] serializaPagina() throws IOException {
+        return objectMapper.writeValueAsBytes(pagina);
+    }
+}
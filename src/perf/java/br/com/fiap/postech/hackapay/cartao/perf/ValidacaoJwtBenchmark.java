@@ -0,0 +1,44 @@
+package br.com.fiap.postech.hackapay.cartao.perf;
+
+import br.com.fiap.postech.hackapay.cartao.security.JwtServiceComCache;
+import br.com.fiap.postech.hackapay.security.JwtService;
+import br.com.fiap.postech.hackapay.security.User;
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Custo por requisicao de obter as claims do token: verificacao completa
+ * (decodificacao, HMAC e parse do JSON) contra o acerto no cache, que so
+ * calcula a SHA-256 do token.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ValidacaoJwtBenchmark {
+
+    private JwtService jwtService;
+    private JwtServiceComCache jwtServiceComCache;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        jwtService = new JwtService();
+        jwtServiceComCache = new JwtServiceComCache(new SimpleMeterRegistry(), 100_000, Duration.ofMinutes(10));
+        token = jwtService.generateToken(new User("usuario-carga", "umaSenhaQualquer"));
+        jwtServiceComCache.extractAllClaims(token);
+    }
+
+    @Benchmark
+    public Claims semCache() {
+        return jwtService.extractAllClaims(token);
+    }
+
+    @Benchmark
+    public Claims comCache() {
+        return jwtServiceComCache.extractAllClaims(token);
+    }
+}
@@ -26,6 +26,7 @@ import java.util.UUID;
 
 import static io.restassured.RestAssured.given;
 import static io.restassured.module.jsv.JsonSchemaValidator.matchesJsonSchemaInClasspath;
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.equalTo;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.when;
@@ -56,6 +57,7 @@ public class CartaoControllerIT {
         @Test
         void devePermitirCadastrarCartao() {
             var cartao = CartaoHelper.getCartao(false);
+            cartao.setNumero(RandomStringUtils.randomNumeric(16));
             var userDetails = UserHelper.getUserDetails("umUsuarioQualquer");
             var cliente = ClienteHelper.getCliente();
             when(userDetailsService.loadUserByUsername(anyString())).thenReturn(userDetails);
@@ -150,6 +152,23 @@ public class CartaoControllerIT {
                 .statusCode(HttpStatus.OK.value())
                 .body(matchesJsonSchemaInClasspath("schemas/cartao.page.schema.json"));
         }
+
+        @Test
+        void devePermitirExportarCartoes() {
+            var userDetails = UserHelper.getUserDetails("umUsuarioQualquer");
+            when(userDetailsService.loadUserByUsername(anyString())).thenReturn(userDetails);
+            var corpo = given()
+                    .header(HttpHeaders.AUTHORIZATION, UserHelper.getToken(userDetails.getUsername()))
+                    .queryParam("cpf", "80346534038")
+            .when()
+                .get(CARTAO + "/export")
+            .then()
+                .statusCode(HttpStatus.OK.value())
+                .contentType(MediaType.APPLICATION_NDJSON_VALUE)
+                .extract().asString();
+            assertThat(corpo.lines()).hasSize(1);
+            assertThat(corpo).contains("\"numero\":\"4417810025751018\"");
+        }
     }
 
     @Nested
@@ -160,7 +179,7 @@ public class CartaoControllerIT {
             when(userDetailsService.loadUserByUsername(anyString())).thenReturn(userDetails);
             var cartao = new Cartao(
                     "52816804046",
-                    1002D,
+                    100200L,
                     RandomStringUtils.random(20, true, true),
                     RandomStringUtils.random(20, true, true),
                     RandomStringUtils.random(20, true, true)
@@ -214,7 +233,7 @@ public class CartaoControllerIT {
             when(userDetailsService.loadUserByUsername(anyString())).thenReturn(userDetails);
             var cartao = new Cartao(
                     "ccc@ddd.com",
-                    1003D,
+                    100300L,
                     RandomStringUtils.random(20, true, true),
                     RandomStringUtils.random(20, true, true),
                     RandomStringUtils.random(20, true, true)
@@ -242,4 +261,129 @@ public class CartaoControllerIT {
                 .body(equalTo("Cartao não encontrado com o ID: " + cartao.getId()));
         }
     }
+
+    @Nested
+    class AtualizarLimiteCartao {
+        @Test
+        void devePermitirAtualizarLimiteCartao_umaVezPorIdempotencyKey() {
+            var id = "56833f9a-7fda-49d5-a760-8e1ba41f35a8";
+            var cartao = new Cartao("80346534038", null, "4417810025751018", "12/30", "253");
+            var userDetails = UserHelper.getUserDetails("umUsuarioQualquer");
+            when(userDetailsService.loadUserByUsername(anyString())).thenReturn(userDetails);
+            var token = UserHelper.getToken(userDetails.getUsername());
+            float limiteAntes = given()
+                    .header(HttpHeaders.AUTHORIZATION, token)
+                .when()
+                    .get(CARTAO + "/{id}", id)
+                .then()
+                    .extract().path("limite");
+            for (int i = 0; i < 2; i++) {
+                given()
+                    .body(cartao).contentType(MediaType.APPLICATION_JSON_VALUE)
+                        .header(HttpHeaders.AUTHORIZATION, token)
+                        .header("Idempotency-Key", "debito-" + id)
+                .when()
+                    .post(CARTAO + "/atualizaLimiteCartao/{valor}", 10)
+                .then()
+                    .statusCode(HttpStatus.ACCEPTED.value());
+            }
+            given()
+                    .header(HttpHeaders.AUTHORIZATION, token)
+            .when()
+                .get(CARTAO + "/{id}", id)
+            .then()
+                .statusCode(HttpStatus.OK.value())
+                .body("limite", equalTo(limiteAntes - 10));
+        }
+
+        @Test
+        void deveGerarExcecao_QuandoIdempotencyKeyReutilizadaComOutroValor() {
+            var id = "56833f9a-7fda-49d5-a760-8e1ba41f35a8";
+            var cartao = new Cartao("80346534038", null, "4417810025751018", "12/30", "253");
+            var userDetails = UserHelper.getUserDetails("umUsuarioQualquer");
+            when(userDetailsService.loadUserByUsername(anyString())).thenReturn(userDetails);
+            var token = UserHelper.getToken(userDetails.getUsername());
+            given()
+                .body(cartao).contentType(MediaType.APPLICATION_JSON_VALUE)
+                    .header(HttpHeaders.AUTHORIZATION, token)
+                    .header("Idempotency-Key", "debito-reutilizado-" + id)
+            .when()
+                .post(CARTAO + "/atualizaLimiteCartao/{valor}", 10)
+            .then()
+                .statusCode(HttpStatus.ACCEPTED.value());
+            given()
+                .body(cartao).contentType(MediaType.APPLICATION_JSON_VALUE)
+                    .header(HttpHeaders.AUTHORIZATION, token)
+                    .header("Idempotency-Key", "debito-reutilizado-" + id)
+            .when()
+                .post(CARTAO + "/atualizaLimiteCartao/{valor}", 20)
+            .then()
+                .statusCode(HttpStatus.UNPROCESSABLE_ENTITY.value())
+                .body(equalTo("Idempotency-Key ja usada em outro debito."));
+        }
+
+        @Test
+        void deveGerarExcecao_QuandoAtualizarLimiteCartao_valorNegativo() {
+            var id = "56833f9a-7fda-49d5-a760-8e1ba41f35a8";
+            var cartao = new Cartao("80346534038", null, "4417810025751018", "12/30", "253");
+            var userDetails = UserHelper.getUserDetails("umUsuarioQualquer");
+            when(userDetailsService.loadUserByUsername(anyString())).thenReturn(userDetails);
+            var token = UserHelper.getToken(userDetails.getUsername());
+            float limiteAntes = given()
+                    .header(HttpHeaders.AUTHORIZATION, token)
+                .when()
+                    .get(CARTAO + "/{id}", id)
+                .then()
+                    .extract().path("limite");
+            given()
+                .body(cartao).contentType(MediaType.APPLICATION_JSON_VALUE)
+                    .header(HttpHeaders.AUTHORIZATION, token)
+            .when()
+                .post(CARTAO + "/atualizaLimiteCartao/{valor}", -10)
+            .then()
+                .statusCode(HttpStatus.BAD_REQUEST.value())
+                .body(equalTo("valor do debito deve ser maior que zero"));
+            given()
+                    .header(HttpHeaders.AUTHORIZATION, token)
+            .when()
+                .get(CARTAO + "/{id}", id)
+            .then()
+                .statusCode(HttpStatus.OK.value())
+                .body("limite", equalTo(limiteAntes));
+        }
+
+        @Test
+        void deveGerarExcecao_QuandoAtualizarLimiteCartaoLote_debitoNulo() {
+            var userDetails = UserHelper.getUserDetails("umUsuarioQualquer");
+            when(userDetailsService.loadUserByUsername(anyString())).thenReturn(userDetails);
+            given()
+                .body("[null]").contentType(MediaType.APPLICATION_JSON_VALUE)
+                    .header(HttpHeaders.AUTHORIZATION, UserHelper.getToken(userDetails.getUsername()))
+            .when()
+                .post(CARTAO + "/atualizaLimiteCartao/lote")
+            .then()
+                .statusCode(HttpStatus.BAD_REQUEST.value())
+                .body(equalTo("o lote nao pode ter debitos nulos."));
+        }
+
+        @Test
+        void deveRejeitarAtualizarLimiteCartao_comIdempotencyKey_QuandoCvvNaoConfere() {
+            var id = "56833f9a-7fda-49d5-a760-8e1ba41f35a8";
+            var cartao = new Cartao("80346534038", null, "4417810025751018", "12/30", "999");
+            var userDetails = UserHelper.getUserDetails("umUsuarioQualquer");
+            when(userDetailsService.loadUserByUsername(anyString())).thenReturn(userDetails);
+            var token = UserHelper.getToken(userDetails.getUsername());
+            for (int i = 0; i < 2; i++) {
+                given()
+                    .body(cartao).contentType(MediaType.APPLICATION_JSON_VALUE)
+                        .header(HttpHeaders.AUTHORIZATION, token)
+                        .header("Idempotency-Key", "debito-cvv-" + id)
+                .when()
+                    .post(CARTAO + "/atualizaLimiteCartao/{valor}", 10)
+                .then()
+                    .statusCode(HttpStatus.BAD_REQUEST.value())
+                    .body(equalTo("cvv do cartao nao confere"));
+            }
+        }
+    }
 }
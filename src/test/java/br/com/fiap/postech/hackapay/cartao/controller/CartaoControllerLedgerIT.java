@@ -0,0 +1,139 @@
+package br.com.fiap.postech.hackapay.cartao.controller;
+
+import br.com.fiap.postech.hackapay.cartao.entities.Cartao;
+import br.com.fiap.postech.hackapay.cartao.helper.UserHelper;
+import br.com.fiap.postech.hackapay.cartao.integration.ClienteIntegracao;
+import br.com.fiap.postech.hackapay.cartao.services.LedgerLimite;
+import br.com.fiap.postech.hackapay.security.UserDetailsServiceImpl;
+import io.restassured.RestAssured;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static io.restassured.RestAssured.given;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+/*
+ * Debitos pelo ledger, com open-in-view ligado (padrao) e um flush-interval
+ * longo, para que os debitos so cheguem ao banco pelo descarta.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "hackapay.cartao.ledger.enabled=true",
+        "hackapay.cartao.ledger.flush-interval=1h"
+})
+@AutoConfigureTestDatabase
+@ActiveProfiles("test")
+public class CartaoControllerLedgerIT {
+
+    public static final String CARTAO = "/api/cartao";
+    private static final String ID = "56833f9a-7fda-49d5-a760-8e1ba41f35a8";
+
+    @LocalServerPort
+    private int port;
+
+    @MockBean
+    private UserDetailsServiceImpl userDetailsService;
+
+    @MockBean
+    private ClienteIntegracao clienteIntegracao;
+
+    @Autowired
+    private LedgerLimite ledgerLimite;
+
+    private String token;
+
+    @BeforeEach
+    void setup() {
+        RestAssured.port = port;
+        RestAssured.enableLoggingOfRequestAndResponseIfValidationFails();
+        var userDetails = UserHelper.getUserDetails("umUsuarioQualquer");
+        when(userDetailsService.loadUserByUsername(anyString())).thenReturn(userDetails);
+        token = UserHelper.getToken(userDetails.getUsername());
+    }
+
+    @Test
+    void deveManterDebitosDoLedger_QuandoAlterarCartao() {
+        var cartao = new Cartao("80346534038", null, "4417810025751018", "12/30", "253");
+        float limiteAntes = limite();
+        given()
+            .body(cartao).contentType(MediaType.APPLICATION_JSON_VALUE)
+                .header(HttpHeaders.AUTHORIZATION, token)
+        .when()
+            .post(CARTAO + "/atualizaLimiteCartao/{valor}", 10)
+        .then()
+            .statusCode(HttpStatus.ACCEPTED.value());
+        given()
+            .body(cartao).contentType(MediaType.APPLICATION_JSON_VALUE)
+                .header(HttpHeaders.AUTHORIZATION, token)
+        .when()
+            .put(CARTAO + "/{id}", ID)
+        .then()
+            .statusCode(HttpStatus.ACCEPTED.value())
+            .body("limite", equalTo(limiteAntes - 10));
+        given()
+                .header(HttpHeaders.AUTHORIZATION, token)
+        .when()
+            .get(CARTAO + "/{id}", ID)
+        .then()
+            .statusCode(HttpStatus.OK.value())
+            .body("limite", equalTo(limiteAntes - 10));
+    }
+
+    @Test
+    void deveDebitarUmaVez_QuandoMesmaIdempotencyKeyEmParalelo() throws Exception {
+        var cartao = new Cartao("80346534038", null, "4417810025751018", "12/30", "253");
+        float limiteAntes = limite();
+        int requisicoes = 8;
+        var largada = new CountDownLatch(1);
+        List<Future<Integer>> respostas = new ArrayList<>();
+        try (var executor = Executors.newFixedThreadPool(requisicoes)) {
+            for (int i = 0; i < requisicoes; i++) {
+                respostas.add(executor.submit(() -> {
+                    largada.await();
+                    return given()
+                            .body(cartao).contentType(MediaType.APPLICATION_JSON_VALUE)
+                            .header(HttpHeaders.AUTHORIZATION, token)
+                            .header("Idempotency-Key", "debito-paralelo-" + ID)
+                        .when()
+                            .post(CARTAO + "/atualizaLimiteCartao/{valor}", 10)
+                        .then()
+                            .extract().statusCode();
+                }));
+            }
+            largada.countDown();
+            for (Future<Integer> resposta : respostas) {
+                assertThat(resposta.get(30, TimeUnit.SECONDS))
+                        .isIn(HttpStatus.ACCEPTED.value(), HttpStatus.CONFLICT.value());
+            }
+        }
+        ledgerLimite.flush();
+        assertThat(limite()).isEqualTo(limiteAntes - 10);
+    }
+
+    private float limite() {
+        return given()
+                .header(HttpHeaders.AUTHORIZATION, token)
+            .when()
+                .get(CARTAO + "/{id}", ID)
+            .then()
+                .extract().path("limite");
+    }
+}
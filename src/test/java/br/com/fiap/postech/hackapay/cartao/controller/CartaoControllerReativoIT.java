@@ -0,0 +1,302 @@
+package br.com.fiap.postech.hackapay.cartao.controller;
+
+import br.com.fiap.postech.hackapay.cartao.entities.Cartao;
+import br.com.fiap.postech.hackapay.cartao.helper.CartaoHelper;
+import br.com.fiap.postech.hackapay.cartao.helper.ClienteHelper;
+import br.com.fiap.postech.hackapay.cartao.helper.UserHelper;
+import br.com.fiap.postech.hackapay.cartao.integration.ClienteIndisponivelException;
+import br.com.fiap.postech.hackapay.cartao.integration.ClienteIntegracaoReativa;
+import br.com.fiap.postech.hackapay.security.UserDetailsServiceImpl;
+import io.restassured.RestAssured;
+import org.apache.commons.lang3.RandomStringUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.test.context.ActiveProfiles;
+import reactor.core.publisher.Mono;
+
+import java.util.UUID;
+
+import static io.restassured.RestAssured.given;
+import static io.restassured.module.jsv.JsonSchemaValidator.matchesJsonSchemaInClasspath;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+/*
+ * Mesmo contrato do CartaoControllerIT, agora sobre WebFlux e R2DBC. O banco em
+ * memoria tem nome proprio para que o JDBC (Flyway) e o R2DBC enxerguem as mesmas tabelas.
+ */
+@SpringBootTest(
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {
+                "spring.datasource.url=jdbc:h2:mem:hackapay-cartao-reativo;DB_CLOSE_DELAY=-1",
+                "spring.datasource.driver-class-name=org.h2.Driver",
+                "spring.r2dbc.url=r2dbc:h2:mem:///hackapay-cartao-reativo;DB_CLOSE_DELAY=-1",
+                "spring.r2dbc.username=sa",
+                "spring.r2dbc.password="
+        }
+)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles({"test", "reativo"})
+public class CartaoControllerReativoIT {
+
+    public static final String CARTAO = "/api/cartao";
+    private static final String TOKEN = UserHelper.getToken("umUsuarioQualquer");
+
+    @LocalServerPort
+    private int port;
+
+    @MockBean
+    private ClienteIntegracaoReativa clienteIntegracao;
+
+    @MockBean
+    private UserDetailsServiceImpl userDetailsService;
+
+    @BeforeEach
+    void setup() {
+        RestAssured.port = port;
+        RestAssured.enableLoggingOfRequestAndResponseIfValidationFails();
+        when(userDetailsService.loadUserByUsername(anyString())).thenReturn(UserHelper.getUserDetails("umUsuarioQualquer"));
+    }
+
+    @Test
+    void deveGerarExcecao_QuandoRequisicaoSemToken() {
+        given()
+        .when()
+            .get(CARTAO)
+        .then()
+            .statusCode(HttpStatus.UNAUTHORIZED.value());
+    }
+
+    @Test
+    void deveGerarExcecao_QuandoUsuarioDoTokenNaoExiste() {
+        when(userDetailsService.loadUserByUsername(anyString())).thenThrow(new UsernameNotFoundException("umUsuarioQualquer"));
+        given()
+                .header(HttpHeaders.AUTHORIZATION, TOKEN)
+        .when()
+            .get(CARTAO)
+        .then()
+            .statusCode(HttpStatus.UNAUTHORIZED.value());
+    }
+
+    @Test
+    void deveGerarExcecao_QuandoUsuarioDoTokenEstaBloqueado() {
+        var bloqueado = User.withUsername("umUsuarioQualquer").password("senha").disabled(true).build();
+        when(userDetailsService.loadUserByUsername(anyString())).thenReturn(bloqueado);
+        given()
+                .header(HttpHeaders.AUTHORIZATION, TOKEN)
+        .when()
+            .get(CARTAO)
+        .then()
+            .statusCode(HttpStatus.UNAUTHORIZED.value());
+    }
+
+    @Nested
+    class CadastrarCartao {
+        @Test
+        void devePermitirCadastrarCartao() {
+            var cartao = CartaoHelper.getCartao(false);
+            cartao.setCpf(RandomStringUtils.randomNumeric(11));
+            cartao.setNumero(RandomStringUtils.randomNumeric(16));
+            when(clienteIntegracao.getCliente(anyString(), anyString())).thenReturn(Mono.just(ClienteHelper.getCliente()));
+            given()
+                .contentType(MediaType.APPLICATION_JSON_VALUE).body(cartao)
+                    .header(HttpHeaders.AUTHORIZATION, TOKEN)
+            .when()
+                .post(CARTAO)
+            .then()
+                .statusCode(HttpStatus.OK.value())
+                .body(matchesJsonSchemaInClasspath("schemas/cartao.schema.json"));
+        }
+
+        @Test
+        void deveGerarExcecao_QuandoCadastrarCartao_ClienteNaoCadastrado() {
+            var cartao = CartaoHelper.getCartao(false);
+            cartao.setCpf(RandomStringUtils.randomNumeric(11));
+            cartao.setNumero(RandomStringUtils.randomNumeric(16));
+            when(clienteIntegracao.getCliente(anyString(), anyString())).thenReturn(Mono.empty());
+            given()
+                .contentType(MediaType.APPLICATION_JSON_VALUE).body(cartao)
+                    .header(HttpHeaders.AUTHORIZATION, TOKEN)
+            .when()
+                .post(CARTAO)
+            .then()
+                .statusCode(HttpStatus.INTERNAL_SERVER_ERROR.value())
+                .body(equalTo("Cliente nao cadastrado."));
+        }
+
+        @Test
+        void deveGerarExcecao_QuandoCadastrarCartao_ClienteIndisponivel() {
+            var cartao = CartaoHelper.getCartao(false);
+            cartao.setCpf(RandomStringUtils.randomNumeric(11));
+            cartao.setNumero(RandomStringUtils.randomNumeric(16));
+            when(clienteIntegracao.getCliente(anyString(), anyString()))
+                    .thenReturn(Mono.error(new ClienteIndisponivelException(new IllegalStateException("circuito aberto"))));
+            given()
+                .contentType(MediaType.APPLICATION_JSON_VALUE).body(cartao)
+                    .header(HttpHeaders.AUTHORIZATION, TOKEN)
+            .when()
+                .post(CARTAO)
+            .then()
+                .statusCode(HttpStatus.SERVICE_UNAVAILABLE.value());
+        }
+
+        @Test
+        void deveGerarExcecao_QuandoCadastrarCartao_MaisDeDoisCartoesPorCpf() {
+            String cpf = RandomStringUtils.randomNumeric(11);
+            when(clienteIntegracao.getCliente(anyString(), anyString())).thenReturn(Mono.just(ClienteHelper.getCliente()));
+            for (int i = 0; i < 2; i++) {
+                var cartao = CartaoHelper.getCartao(false);
+                cartao.setCpf(cpf);
+                cartao.setNumero(RandomStringUtils.randomNumeric(16));
+                given()
+                    .contentType(MediaType.APPLICATION_JSON_VALUE).body(cartao)
+                        .header(HttpHeaders.AUTHORIZATION, TOKEN)
+                .when()
+                    .post(CARTAO)
+                .then()
+                    .statusCode(HttpStatus.OK.value());
+            }
+            var cartao = CartaoHelper.getCartao(false);
+            cartao.setCpf(cpf);
+            cartao.setNumero(RandomStringUtils.randomNumeric(16));
+            given()
+                .contentType(MediaType.APPLICATION_JSON_VALUE).body(cartao)
+                    .header(HttpHeaders.AUTHORIZATION, TOKEN)
+            .when()
+                .post(CARTAO)
+            .then()
+                .statusCode(HttpStatus.FORBIDDEN.value())
+                .body(equalTo("um Cliente pode ter no maximo 2 cartoes."));
+        }
+    }
+
+    @Nested
+    class BuscarCartao {
+        @Test
+        void devePermitirBuscarCartaoPorId() {
+            given()
+                    .header(HttpHeaders.AUTHORIZATION, TOKEN)
+            .when()
+                .get(CARTAO + "/{id}", "56833f9a-7fda-49d5-a760-8e1ba41f35a8")
+            .then()
+                .statusCode(HttpStatus.OK.value())
+                .body(matchesJsonSchemaInClasspath("schemas/cartao.schema.json"));
+        }
+
+        @Test
+        void deveGerarExcecao_QuandoBuscarCartaoPorId_idNaoExiste() {
+            var id = UUID.randomUUID();
+            given()
+                    .header(HttpHeaders.AUTHORIZATION, TOKEN)
+            .when()
+                .get(CARTAO + "/{id}", id)
+            .then()
+                .statusCode(HttpStatus.BAD_REQUEST.value())
+                .body(equalTo("Cartao não encontrado com o ID: " + id));
+        }
+
+        @Test
+        void devePermitirBuscarCartoes_PorCpf() {
+            given()
+                    .header(HttpHeaders.AUTHORIZATION, TOKEN)
+                    .queryParam("cpf", "52816804046")
+            .when()
+                .get(CARTAO)
+            .then()
+                .statusCode(HttpStatus.OK.value())
+                .body("totalElements", equalTo(1))
+                .body("content[0].numero", equalTo("4417810025752222"));
+        }
+
+        @Test
+        void devePermitirExportarCartoes() {
+            String corpo = given()
+                    .header(HttpHeaders.AUTHORIZATION, TOKEN)
+                    .queryParam("cpf", "52816804046")
+            .when()
+                .get(CARTAO + "/export")
+            .then()
+                .statusCode(HttpStatus.OK.value())
+                .contentType(MediaType.APPLICATION_NDJSON_VALUE)
+                .extract().asString();
+            assertThat(corpo).contains("\"numero\":\"4417810025752222\"");
+        }
+    }
+
+    @Nested
+    class AlterarCartao {
+        @Test
+        void deveGerarExcecao_QuandoAlterarCpf() {
+            var cartao = new Cartao("00000000000", null, null, null, null);
+            given()
+                .body(cartao).contentType(MediaType.APPLICATION_JSON_VALUE)
+                    .header(HttpHeaders.AUTHORIZATION, TOKEN)
+            .when()
+                .put(CARTAO + "/{id}", "8855e7b2-77b6-448b-97f8-8a0b529f3976")
+            .then()
+                .statusCode(HttpStatus.BAD_REQUEST.value())
+                .body(equalTo("Não é possível alterar o cpf de um cartao."));
+        }
+    }
+
+    @Nested
+    class AtualizarLimiteCartao {
+        @Test
+        void devePermitirDebitarAteZerarLimite_SemFicarNegativo() {
+            var cartao = new Cartao("52816804046", null, "4417810025752222", "12/30", "254");
+            given()
+                .body(cartao).contentType(MediaType.APPLICATION_JSON_VALUE)
+                    .header(HttpHeaders.AUTHORIZATION, TOKEN)
+            .when()
+                .post(CARTAO + "/atualizaLimiteCartao/{valor}", "2000.00")
+            .then()
+                .statusCode(HttpStatus.ACCEPTED.value());
+            given()
+                .body(cartao).contentType(MediaType.APPLICATION_JSON_VALUE)
+                    .header(HttpHeaders.AUTHORIZATION, TOKEN)
+            .when()
+                .post(CARTAO + "/atualizaLimiteCartao/{valor}", "0.01")
+            .then()
+                .statusCode(HttpStatus.BAD_REQUEST.value())
+                .body(equalTo("nao ha mais limite disponivel no cartao."));
+        }
+
+        @Test
+        void deveGerarExcecao_QuandoCvvNaoConfere() {
+            var cartao = new Cartao("80346534038", null, "4417810025751018", "12/30", "999");
+            given()
+                .body(cartao).contentType(MediaType.APPLICATION_JSON_VALUE)
+                    .header(HttpHeaders.AUTHORIZATION, TOKEN)
+            .when()
+                .post(CARTAO + "/atualizaLimiteCartao/{valor}", 10)
+            .then()
+                .statusCode(HttpStatus.BAD_REQUEST.value())
+                .body(equalTo("cvv do cartao nao confere"));
+        }
+
+        @Test
+        void deveGerarExcecao_QuandoCartaoNaoExiste() {
+            var cartao = new Cartao("80346534038", null, "0000000000000000", "12/30", "253");
+            given()
+                .body(cartao).contentType(MediaType.APPLICATION_JSON_VALUE)
+                    .header(HttpHeaders.AUTHORIZATION, TOKEN)
+            .when()
+                .post(CARTAO + "/atualizaLimiteCartao/{valor}", 10)
+            .then()
+                .statusCode(HttpStatus.BAD_REQUEST.value())
+                .body(equalTo("cartao nao encontrado"));
+        }
+    }
+}
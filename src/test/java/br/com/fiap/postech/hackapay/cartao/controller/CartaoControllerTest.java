@@ -1,10 +1,16 @@
 package br.com.fiap.postech.hackapay.cartao.controller;
 
+import br.com.fiap.postech.hackapay.cartao.dto.DebitoLimite;
+import br.com.fiap.postech.hackapay.cartao.dto.PaginaCursor;
+import br.com.fiap.postech.hackapay.cartao.dto.ResultadoDebito;
 import br.com.fiap.postech.hackapay.cartao.entities.Cartao;
 import br.com.fiap.postech.hackapay.cartao.helper.CartaoHelper;
 import br.com.fiap.postech.hackapay.cartao.helper.ClienteHelper;
+import br.com.fiap.postech.hackapay.cartao.integration.ClienteIndisponivelException;
 import br.com.fiap.postech.hackapay.cartao.integration.ClienteIntegracao;
 import br.com.fiap.postech.hackapay.cartao.services.CartaoService;
+import br.com.fiap.postech.hackapay.cartao.services.ChaveIdempotenciaReutilizadaException;
+import br.com.fiap.postech.hackapay.cartao.services.IdempotenciaService;
 import br.com.fiap.postech.hackapay.security.SecurityHelper;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.AfterEach;
@@ -13,6 +19,7 @@ import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
@@ -23,11 +30,13 @@ import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
+import java.util.function.Consumer;
 
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
-import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 class CartaoControllerTest {
     public static final String CARTAO = "/cartao";
@@ -38,12 +47,15 @@ class CartaoControllerTest {
     private SecurityHelper securityHelper;
     @Mock
     private ClienteIntegracao clienteIntegracao;
+    @Mock
+    private IdempotenciaService idempotenciaService;
     private AutoCloseable mock;
 
     @BeforeEach
     void setUp() {
         mock = MockitoAnnotations.openMocks(this);
-        CartaoController cartaoController = new CartaoController(cartaoService, securityHelper);
+        CartaoController cartaoController = new CartaoController(cartaoService, securityHelper, idempotenciaService,
+                new ObjectMapper());
         mockMvc = MockMvcBuilders.standaloneSetup(cartaoController).build();
     }
 
@@ -92,6 +104,23 @@ class CartaoControllerTest {
             verify(cartaoService, times(1)).save(anyString(), any(Cartao.class));
         }
 
+        @Test
+        void deveGerarExcecao_QuandoRegistrarCartao_clienteIndisponivel() throws Exception {
+            // Arrange
+            var cartao = CartaoHelper.getCartao(false);
+            when(cartaoService.save(anyString(), any(Cartao.class))).thenThrow(
+                    new ClienteIndisponivelException(new RuntimeException("circuito aberto"))
+            );
+            when(securityHelper.getToken()).thenReturn("token");
+            // Act
+            mockMvc.perform(
+                            post(CARTAO).contentType(MediaType.APPLICATION_JSON)
+                                    .content(asJsonString(cartao)))
+                    .andExpect(status().isServiceUnavailable());
+            // Assert
+            verify(cartaoService, times(1)).save(anyString(), any(Cartao.class));
+        }
+
         @Test
         void deveGerarExcecao_QuandoRegistrarCartao_maisQueDoisCartoes() throws Exception {
             // Arrange
@@ -124,7 +153,42 @@ class CartaoControllerTest {
             // Assert
             verify(cartaoService, never()).save(anyString(), any(Cartao.class));
         }
+
+        @Test
+        void deveGerarExcecao_QuandoRegistrarCartao_numeroJaCadastrado() throws Exception {
+            // Arrange
+            var cartao = CartaoHelper.getCartao(false);
+            when(cartaoService.save(anyString(), any(Cartao.class))).thenThrow(
+                    new DataIntegrityViolationException("ux_cartao_numero")
+            );
+            when(securityHelper.getToken()).thenReturn("token");
+            // Act
+            mockMvc.perform(
+                            post(CARTAO).contentType(MediaType.APPLICATION_JSON)
+                                    .content(asJsonString(cartao)))
+                    .andExpect(status().isConflict());
+            // Assert
+            verify(cartaoService, times(1)).save(anyString(), any(Cartao.class));
+        }
+
+        @Test
+        void deveRepassarExcecao_QuandoRegistrarCartao_outraRestricaoViolada() {
+            // Arrange
+            var cartao = CartaoHelper.getCartao(false);
+            when(cartaoService.save(anyString(), any(Cartao.class))).thenThrow(
+                    new DataIntegrityViolationException("NULL not allowed for column \"CPF\"")
+            );
+            when(securityHelper.getToken()).thenReturn("token");
+            // Act
+            assertThatThrownBy(() -> mockMvc.perform(
+                            post(CARTAO).contentType(MediaType.APPLICATION_JSON)
+                                    .content(asJsonString(cartao))))
+                    .hasCauseInstanceOf(DataIntegrityViolationException.class);
+            // Assert
+            verify(cartaoService, times(1)).save(anyString(), any(Cartao.class));
+        }
     }
+
     @Nested
     class BuscarCartao {
         @Test
@@ -184,6 +248,77 @@ class CartaoControllerTest {
             // Assert
             verify(cartaoService, times(1)).findAll(pageable, criterioCartao);
         }
+
+        @Test
+        void devePermitirBuscarCartaoPorCursor() throws Exception {
+            // Arrange
+            var cartao = CartaoHelper.getCartao(true);
+            var criterioCartao = new Cartao(cartao.getCpf(), null, null, null, null);
+            criterioCartao.setId(null);
+            when(cartaoService.findAll("cursor-1", 10, criterioCartao))
+                    .thenReturn(new PaginaCursor<>(List.of(cartao), "cursor-2"));
+            // Act
+            mockMvc.perform(
+                            get("/cartao/cursor")
+                                    .param("cursor", "cursor-1")
+                                    .param("cpf", cartao.getCpf())
+                    )
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.conteudo[0].numero").value(cartao.getNumero()))
+                    .andExpect(jsonPath("$.proximoCursor").value("cursor-2"));
+            // Assert
+            verify(cartaoService, times(1)).findAll("cursor-1", 10, criterioCartao);
+        }
+
+        @Test
+        void deveGerarExcecao_QuandoBuscarCartaoPorCursor_CursorInvalido() throws Exception {
+            // Arrange
+            when(cartaoService.findAll(anyString(), anyInt(), any(Cartao.class)))
+                    .thenThrow(new IllegalArgumentException("cursor invalido"));
+            // Act
+            mockMvc.perform(get("/cartao/cursor").param("cursor", "???"))
+                    .andExpect(status().isBadRequest());
+            // Assert
+            verify(cartaoService, times(1)).findAll(anyString(), anyInt(), any(Cartao.class));
+        }
+
+        @Test
+        void devePermitirExportarCartoesEmJsonPorLinha() throws Exception {
+            // Arrange
+            var cartao = CartaoHelper.getCartao(true);
+            var outroCartao = CartaoHelper.getCartao(true);
+            doAnswer(invocation -> {
+                Consumer<Cartao> consumidor = invocation.getArgument(1);
+                consumidor.accept(cartao);
+                consumidor.accept(outroCartao);
+                return null;
+            }).when(cartaoService).exporta(any(Cartao.class), any());
+            // Act
+            var resultado = mockMvc.perform(get("/cartao/export").param("cpf", cartao.getCpf()))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+            mockMvc.perform(asyncDispatch(resultado))
+                    .andExpect(status().isOk())
+                    .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                    .andExpect(content().string(asJsonString(cartao) + "\n" + asJsonString(outroCartao) + "\n"));
+            // Assert
+            verify(cartaoService, times(1)).exporta(
+                    argThat(filtro -> cartao.getCpf().equals(filtro.getCpf()) && filtro.getNumero() == null), any());
+        }
+
+        @Test
+        void devePermitirExportarCartoesEmJsonPorLinha_semCartoes() throws Exception {
+            // Arrange
+            doNothing().when(cartaoService).exporta(any(Cartao.class), any());
+            // Act
+            var resultado = mockMvc.perform(get("/cartao/export").param("cpf", "80346534038"))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+            // Assert
+            mockMvc.perform(asyncDispatch(resultado))
+                    .andExpect(status().isOk())
+                    .andExpect(content().string(""));
+        }
     }
 
     @Nested
@@ -229,6 +364,38 @@ class CartaoControllerTest {
             // Assert
             verify(cartaoService, times(1)).update(any(UUID.class), any(Cartao.class));
         }
+
+        @Test
+        void deveGerarExcecao_QuandoAlterarCartao_numeroJaCadastrado() throws Exception {
+            // Arrange
+            var cartao = CartaoHelper.getCartao(true);
+            when(cartaoService.update(cartao.getId(), cartao)).thenThrow(
+                    new DataIntegrityViolationException("ux_cartao_numero")
+            );
+            // Act
+            mockMvc.perform(put("/cartao/{id}", cartao.getId())
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(asJsonString(cartao)))
+                    .andExpect(status().isConflict());
+            // Assert
+            verify(cartaoService, times(1)).update(cartao.getId(), cartao);
+        }
+
+        @Test
+        void deveRepassarExcecao_QuandoAlterarCartao_outraRestricaoViolada() {
+            // Arrange
+            var cartao = CartaoHelper.getCartao(true);
+            when(cartaoService.update(cartao.getId(), cartao)).thenThrow(
+                    new DataIntegrityViolationException("NULL not allowed for column \"NUMERO\"")
+            );
+            // Act
+            assertThatThrownBy(() -> mockMvc.perform(put("/cartao/{id}", cartao.getId())
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(asJsonString(cartao))))
+                    .hasCauseInstanceOf(DataIntegrityViolationException.class);
+            // Assert
+            verify(cartaoService, times(1)).update(cartao.getId(), cartao);
+        }
     }
 
     @Nested
@@ -268,7 +435,7 @@ class CartaoControllerTest {
             var valor = 100.0;
             var cartao = CartaoHelper.getCartao(false);
             var cliente = ClienteHelper.getCliente();
-            doNothing().when(cartaoService).atualizaLimiteCartao(anyDouble(), any(Cartao.class));
+            doNothing().when(cartaoService).atualizaLimiteCartao(anyLong(), any(Cartao.class));
             when(securityHelper.getToken()).thenReturn("token");
             // Act
             mockMvc.perform(
@@ -276,7 +443,20 @@ class CartaoControllerTest {
                                     .content(asJsonString(cartao)))
                     .andExpect(status().isAccepted());
             // Assert
-            verify(cartaoService, times(1)).atualizaLimiteCartao(anyDouble(), any(Cartao.class));
+            verify(cartaoService, times(1)).atualizaLimiteCartao(eq(10000L), any(Cartao.class));
+        }
+
+        @Test
+        void deveGerarExcecao_QuandoAtualizarLimiteCartao_valorComMaisDeDuasCasas() throws Exception {
+            // Arrange
+            var cartao = CartaoHelper.getCartao(false);
+            // Act
+            mockMvc.perform(
+                            post(CARTAO + "/atualizaLimiteCartao/10.005").contentType(MediaType.APPLICATION_JSON)
+                                    .content(asJsonString(cartao)))
+                    .andExpect(status().isBadRequest());
+            // Assert
+            verify(cartaoService, never()).atualizaLimiteCartao(anyLong(), any(Cartao.class));
         }
 
         @Test
@@ -286,7 +466,7 @@ class CartaoControllerTest {
             var cartao = CartaoHelper.getCartao(false);
             doThrow(
                     new IllegalArgumentException("cpf do cartao nao confere")
-            ).when(cartaoService).atualizaLimiteCartao(anyDouble(), any(Cartao.class));
+            ).when(cartaoService).atualizaLimiteCartao(anyLong(), any(Cartao.class));
             when(securityHelper.getToken()).thenReturn("token");
             // Act
             mockMvc.perform(
@@ -294,7 +474,60 @@ class CartaoControllerTest {
                                     .content(asJsonString(cartao)))
                     .andExpect(status().isBadRequest());
             // Assert
-            verify(cartaoService, times(1)).atualizaLimiteCartao(anyDouble(), any(Cartao.class));
+            verify(cartaoService, times(1)).atualizaLimiteCartao(anyLong(), any(Cartao.class));
+        }
+
+        @Test
+        void devePermitirAtualizarLimiteCartao_comIdempotencyKey() throws Exception {
+            // Arrange
+            var valor = 100.0;
+            var cartao = CartaoHelper.getCartao(false);
+            when(idempotenciaService.atualizaLimiteCartao(any(), eq("chave-1"), anyLong(), any(Cartao.class)))
+                    .thenReturn(ResultadoDebito.aceito(null));
+            // Act
+            mockMvc.perform(
+                            post(CARTAO + "/atualizaLimiteCartao/" + valor).contentType(MediaType.APPLICATION_JSON)
+                                    .header("Idempotency-Key", "chave-1")
+                                    .content(asJsonString(cartao)))
+                    .andExpect(status().isAccepted());
+            // Assert
+            verify(idempotenciaService, times(1)).atualizaLimiteCartao(any(), eq("chave-1"), anyLong(), any(Cartao.class));
+            verify(cartaoService, never()).atualizaLimiteCartao(anyLong(), any(Cartao.class));
+        }
+
+        @Test
+        void deveGerarExcecao_QuandoAtualizarLimiteCartao_comIdempotencyKeyRejeitada() throws Exception {
+            // Arrange
+            var valor = 100.0;
+            var cartao = CartaoHelper.getCartao(false);
+            when(idempotenciaService.atualizaLimiteCartao(any(), eq("chave-1"), anyLong(), any(Cartao.class)))
+                    .thenReturn(ResultadoDebito.rejeitado(null, "cvv do cartao nao confere"));
+            // Act
+            mockMvc.perform(
+                            post(CARTAO + "/atualizaLimiteCartao/" + valor).contentType(MediaType.APPLICATION_JSON)
+                                    .header("Idempotency-Key", "chave-1")
+                                    .content(asJsonString(cartao)))
+                    .andExpect(status().isBadRequest());
+            // Assert
+            verify(idempotenciaService, times(1)).atualizaLimiteCartao(any(), eq("chave-1"), anyLong(), any(Cartao.class));
+        }
+
+        @Test
+        void deveGerarExcecao_QuandoAtualizarLimiteCartao_comIdempotencyKeyReutilizada() throws Exception {
+            // Arrange
+            var valor = 100.0;
+            var cartao = CartaoHelper.getCartao(false);
+            when(idempotenciaService.atualizaLimiteCartao(eq("umUsuarioQualquer"), eq("chave-1"), anyLong(), any(Cartao.class)))
+                    .thenThrow(new ChaveIdempotenciaReutilizadaException());
+            // Act
+            mockMvc.perform(
+                            post(CARTAO + "/atualizaLimiteCartao/" + valor).contentType(MediaType.APPLICATION_JSON)
+                                    .header("Idempotency-Key", "chave-1")
+                                    .principal(() -> "umUsuarioQualquer")
+                                    .content(asJsonString(cartao)))
+                    .andExpect(status().isUnprocessableEntity());
+            // Assert
+            verify(idempotenciaService, times(1)).atualizaLimiteCartao(eq("umUsuarioQualquer"), eq("chave-1"), anyLong(), any(Cartao.class));
         }
 
         @Test
@@ -312,4 +545,41 @@ class CartaoControllerTest {
             verify(cartaoService, never()).save(anyString(), any(Cartao.class));
         }
     }
+
+    @Nested
+    class AtualizaLimiteCartaoLote {
+        @Test
+        void devePermitirAtualizarLimiteCartaoEmLote() throws Exception {
+            // Arrange
+            var cartao = CartaoHelper.getCartao(false);
+            var debitos = List.of(new DebitoLimite(10000L, cartao));
+            when(cartaoService.atualizaLimiteCartaoLote(anyList()))
+                    .thenReturn(List.of(ResultadoDebito.aceito(cartao.getNumero())));
+            // Act
+            mockMvc.perform(
+                            post(CARTAO + "/atualizaLimiteCartao/lote").contentType(MediaType.APPLICATION_JSON)
+                                    .content(asJsonString(debitos)))
+                    .andExpect(status().isOk());
+            // Assert
+            verify(cartaoService, times(1)).atualizaLimiteCartaoLote(anyList());
+            verify(cartaoService, never()).atualizaLimiteCartao(anyLong(), any(Cartao.class));
+        }
+
+        @Test
+        void deveGerarExcecao_QuandoLoteExcederTamanhoMaximo() throws Exception {
+            // Arrange
+            var cartao = CartaoHelper.getCartao(false);
+            var debitos = List.of(new DebitoLimite(10000L, cartao));
+            when(cartaoService.atualizaLimiteCartaoLote(anyList())).thenThrow(
+                    new IllegalArgumentException("o lote pode ter no maximo 500 debitos.")
+            );
+            // Act
+            mockMvc.perform(
+                            post(CARTAO + "/atualizaLimiteCartao/lote").contentType(MediaType.APPLICATION_JSON)
+                                    .content(asJsonString(debitos)))
+                    .andExpect(status().isBadRequest());
+            // Assert
+            verify(cartaoService, times(1)).atualizaLimiteCartaoLote(anyList());
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,139 @@
+package br.com.fiap.postech.hackapay.cartao.controller;
+
+import br.com.fiap.postech.hackapay.cartao.entities.Cartao;
+import br.com.fiap.postech.hackapay.cartao.helper.UserHelper;
+import br.com.fiap.postech.hackapay.cartao.integration.ClienteIntegracao;
+import br.com.fiap.postech.hackapay.security.UserDetailsServiceImpl;
+import io.restassured.RestAssured;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static io.restassured.RestAssured.given;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+/*
+ * Requisicoes concorrentes no perfil "virtual", com o ledger ligado e flush
+ * frequente, gravando os eventos jdk.VirtualThreadPinned do JFR. O teste falha
+ * quando o primeiro quadro fora do JDK na pilha presa e do servico: um
+ * synchronized nosso, ou um metodo do JDK que trava um monitor chamado direto
+ * por nos (ConcurrentHashMap.compute, por exemplo). As prisoes dentro de
+ * bibliotecas (H2, Hibernate) ficam de fora. O -Djdk.tracePinnedThreads nao e
+ * usado porque pode travar a JVM no JDK 21.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "hackapay.cartao.ledger.enabled=true",
+        "hackapay.cartao.ledger.flush-interval=10ms"
+})
+@AutoConfigureTestDatabase
+@ActiveProfiles({"test", "virtual"})
+public class CartaoControllerVirtualIT {
+
+    public static final String CARTAO = "/api/cartao";
+    private static final String ID = "56833f9a-7fda-49d5-a760-8e1ba41f35a8";
+    private static final String PACOTE = "br.com.fiap.postech.hackapay.cartao.";
+    private static final String EVENTO_PRESA = "jdk.VirtualThreadPinned";
+    private static final int REQUISICOES = 64;
+
+    @LocalServerPort
+    private int port;
+
+    @MockBean
+    private UserDetailsServiceImpl userDetailsService;
+
+    @MockBean
+    private ClienteIntegracao clienteIntegracao;
+
+    private String token;
+
+    @BeforeEach
+    void setup() {
+        RestAssured.port = port;
+        var userDetails = UserHelper.getUserDetails("umUsuarioQualquer");
+        when(userDetailsService.loadUserByUsername(anyString())).thenReturn(userDetails);
+        token = UserHelper.getToken(userDetails.getUsername());
+    }
+
+    @Test
+    void naoDevePrenderCarrierThread_NoCodigoDoServico() throws Exception {
+        var cartao = new Cartao("80346534038", null, "4417810025751018", "12/30", "253");
+        List<String> prisoes = new CopyOnWriteArrayList<>();
+        try (var gravacao = new RecordingStream()) {
+            gravacao.enable(EVENTO_PRESA).withThreshold(Duration.ZERO).withStackTrace();
+            gravacao.onEvent(EVENTO_PRESA, evento -> {
+                if (presaPeloServico(evento)) {
+                    prisoes.add(evento.getStackTrace().toString());
+                }
+            });
+            gravacao.startAsync();
+            var largada = new CountDownLatch(1);
+            List<Future<List<Integer>>> respostas = new ArrayList<>();
+            try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (int i = 0; i < REQUISICOES; i++) {
+                    String chave = "virtual-" + i;
+                    respostas.add(executor.submit(() -> {
+                        largada.await();
+                        int debito = given()
+                                .body(cartao).contentType(MediaType.APPLICATION_JSON_VALUE)
+                                .header(HttpHeaders.AUTHORIZATION, token)
+                                .header("Idempotency-Key", chave)
+                            .when()
+                                .post(CARTAO + "/atualizaLimiteCartao/{valor}", 1)
+                            .then()
+                                .extract().statusCode();
+                        int consulta = given()
+                                .header(HttpHeaders.AUTHORIZATION, token)
+                            .when()
+                                .get(CARTAO + "/{id}", ID)
+                            .then()
+                                .extract().statusCode();
+                        return List.of(debito, consulta);
+                    }));
+                }
+                largada.countDown();
+                for (Future<List<Integer>> resposta : respostas) {
+                    assertThat(resposta.get(30, TimeUnit.SECONDS))
+                            .containsExactly(HttpStatus.ACCEPTED.value(), HttpStatus.OK.value());
+                }
+            }
+            // o stop entrega os eventos que ainda estao no buffer
+            gravacao.stop();
+        }
+        assertThat(prisoes).isEmpty();
+    }
+
+    private static boolean presaPeloServico(RecordedEvent evento) {
+        if (evento.getStackTrace() == null) {
+            return false;
+        }
+        for (RecordedFrame quadro : evento.getStackTrace().getFrames()) {
+            String classe = quadro.getMethod().getType().getName();
+            if (classe.startsWith("java.") || classe.startsWith("jdk.") || classe.startsWith("sun.")) {
+                continue;
+            }
+            return classe.startsWith(PACOTE);
+        }
+        return false;
+    }
+}
@@ -0,0 +1,51 @@
+package br.com.fiap.postech.hackapay.cartao.controller;
+
+import br.com.fiap.postech.hackapay.cartao.integration.ClienteCache;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class ClienteCacheControllerTest {
+    private MockMvc mockMvc;
+    @Mock
+    private ClienteCache clienteCache;
+    private AutoCloseable mock;
+
+    @BeforeEach
+    void setUp() {
+        mock = MockitoAnnotations.openMocks(this);
+        ClienteCacheController clienteCacheController = new ClienteCacheController(clienteCache);
+        mockMvc = MockMvcBuilders.standaloneSetup(clienteCacheController).build();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        mock.close();
+    }
+
+    @Test
+    void devePermitirInvalidarClientePorCpf() throws Exception {
+        // Act
+        mockMvc.perform(delete("/cliente-cache/{cpf}", "25310413030"))
+                .andExpect(status().isNoContent());
+        // Assert
+        verify(clienteCache, times(1)).invalida("25310413030");
+    }
+
+    @Test
+    void devePermitirInvalidarTodosClientes() throws Exception {
+        // Act
+        mockMvc.perform(delete("/cliente-cache"))
+                .andExpect(status().isNoContent());
+        // Assert
+        verify(clienteCache, times(1)).invalidaTodos();
+    }
+}
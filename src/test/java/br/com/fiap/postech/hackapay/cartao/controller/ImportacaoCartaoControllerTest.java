@@ -0,0 +1,127 @@
+package br.com.fiap.postech.hackapay.cartao.controller;
+
+import br.com.fiap.postech.hackapay.cartao.dto.FormatoImportacao;
+import br.com.fiap.postech.hackapay.cartao.dto.ResultadoImportacao;
+import br.com.fiap.postech.hackapay.cartao.services.ImportacaoCartaoService;
+import br.com.fiap.postech.hackapay.security.SecurityHelper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+class ImportacaoCartaoControllerTest {
+    private MockMvc mockMvc;
+    @Mock
+    private ImportacaoCartaoService importacaoCartaoService;
+    @Mock
+    private SecurityHelper securityHelper;
+    private AutoCloseable mock;
+
+    @BeforeEach
+    void setUp() {
+        mock = MockitoAnnotations.openMocks(this);
+        ImportacaoCartaoController importacaoCartaoController =
+                new ImportacaoCartaoController(importacaoCartaoService, securityHelper);
+        mockMvc = MockMvcBuilders.standaloneSetup(importacaoCartaoController).build();
+        when(securityHelper.getToken()).thenReturn("token");
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        mock.close();
+    }
+
+    @Nested
+    class ImportarCartoes {
+        @Test
+        void devePermitirImportarCsv() throws Exception {
+            // Arrange
+            var id = UUID.randomUUID();
+            when(importacaoCartaoService.importa(eq("token"), eq(FormatoImportacao.CSV), any(InputStream.class)))
+                    .thenReturn(new ResultadoImportacao(id, 3, 2, 1));
+            // Act
+            mockMvc.perform(post("/cartao/import")
+                            .contentType("text/csv")
+                            .content("cpf,numero,data_validade,cvv,limite\n"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.id").value(id.toString()))
+                    .andExpect(jsonPath("$.importados").value(2))
+                    .andExpect(jsonPath("$.rejeitados").value(1));
+            // Assert
+            verify(importacaoCartaoService, times(1)).importa(eq("token"), eq(FormatoImportacao.CSV), any(InputStream.class));
+        }
+
+        @Test
+        void devePermitirImportarNdjson() throws Exception {
+            // Arrange
+            when(importacaoCartaoService.importa(eq("token"), eq(FormatoImportacao.NDJSON), any(InputStream.class)))
+                    .thenReturn(new ResultadoImportacao(UUID.randomUUID(), 1, 1, 0));
+            // Act
+            mockMvc.perform(post("/cartao/import")
+                            .contentType(MediaType.APPLICATION_NDJSON)
+                            .content("{}\n"))
+                    .andExpect(status().isOk());
+            // Assert
+            verify(importacaoCartaoService, times(1)).importa(eq("token"), eq(FormatoImportacao.NDJSON), any(InputStream.class));
+        }
+
+        @Test
+        void deveGerarExcecao_QuandoImportarCsv_CabecalhoInvalido() throws Exception {
+            // Arrange
+            when(importacaoCartaoService.importa(any(), any(), any()))
+                    .thenThrow(new IllegalArgumentException("cabecalho invalido"));
+            // Act && Assert
+            mockMvc.perform(post("/cartao/import")
+                            .contentType("text/csv")
+                            .content("a,b\n"))
+                    .andExpect(status().isBadRequest());
+        }
+    }
+
+    @Nested
+    class BaixarRelatorio {
+        @Test
+        void devePermitirBaixarRelatorioDeRejeitados(@TempDir Path diretorio) throws Exception {
+            // Arrange
+            var id = UUID.randomUUID();
+            var relatorio = Files.writeString(diretorio.resolve("rejeitados.csv"), "linha,motivo,conteudo\n");
+            when(importacaoCartaoService.relatorioRejeitados(id)).thenReturn(relatorio);
+            // Act
+            mockMvc.perform(get("/cartao/import/{id}/rejeitados", id))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string("Content-Disposition", "attachment; filename=\"rejeitados.csv\""))
+                    .andExpect(content().string("linha,motivo,conteudo\n"));
+            // Assert
+            verify(importacaoCartaoService, times(1)).relatorioRejeitados(id);
+        }
+
+        @Test
+        void deveGerarExcecao_QuandoRelatorioNaoExistir() throws Exception {
+            // Arrange
+            var id = UUID.randomUUID();
+            when(importacaoCartaoService.relatorioRejeitados(id))
+                    .thenThrow(new IllegalArgumentException("relatorio de importacao nao encontrado"));
+            // Act && Assert
+            mockMvc.perform(get("/cartao/import/{id}/rejeitados", id))
+                    .andExpect(status().isBadRequest());
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package br.com.fiap.postech.hackapay.cartao.controller;
+
+import br.com.fiap.postech.hackapay.cartao.helper.CartaoHelper;
+import br.com.fiap.postech.hackapay.cartao.helper.UserHelper;
+import br.com.fiap.postech.hackapay.security.UserDetailsServiceImpl;
+import io.restassured.RestAssured;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.containsString;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureTestDatabase
+@AutoConfigureObservability(tracing = false)
+@ActiveProfiles("test")
+class MetricasIT {
+
+    @LocalServerPort
+    private int port;
+
+    @MockBean
+    private UserDetailsServiceImpl userDetailsService;
+
+    @BeforeEach
+    void setup() {
+        RestAssured.port = port;
+        RestAssured.enableLoggingOfRequestAndResponseIfValidationFails();
+    }
+
+    @Test
+    void deveExporMetricasNoFormatoPrometheus() {
+        // Arrange
+        var userDetails = UserHelper.getUserDetails("umUsuarioQualquer");
+        when(userDetailsService.loadUserByUsername(anyString())).thenReturn(userDetails);
+        var cartao = CartaoHelper.getCartao(false);
+        cartao.setNumero("0000000000000000");
+        given()
+                .contentType(MediaType.APPLICATION_JSON_VALUE).body(cartao)
+                .header(HttpHeaders.AUTHORIZATION, UserHelper.getToken(userDetails.getUsername()))
+        .when()
+                .post("/api/cartao/atualizaLimiteCartao/{valor}", 10)
+        .then()
+                .statusCode(HttpStatus.BAD_REQUEST.value());
+        // Act && Assert
+        given()
+        .when()
+                .get("/api/actuator/prometheus")
+        .then()
+                .statusCode(HttpStatus.OK.value())
+                .body(containsString("hackapay_cartao_servico_seconds_bucket{"),
+                        containsString("metodo=\"atualizaLimiteCartao\""),
+                        containsString("resultado=\"nao_encontrado\""),
+                        containsString("http_server_requests_seconds_bucket{"),
+                        containsString("uri=\"/cartao/atualizaLimiteCartao/{valor}\""));
+    }
+}
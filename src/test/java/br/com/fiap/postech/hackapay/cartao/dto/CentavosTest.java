@@ -0,0 +1,35 @@
+package br.com.fiap.postech.hackapay.cartao.dto;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CentavosTest {
+
+    @Test
+    void deveConverterValorEmCentavos() {
+        // Act
+        var centavos = Centavos.de(new BigDecimal("10.500"));
+        // Assert
+        assertThat(centavos).isEqualTo(1050L);
+    }
+
+    @Test
+    void deveGerarExcecao_QuandoValorTemMaisDeDuasCasas() {
+        // Act
+        assertThatThrownBy(() -> Centavos.de(new BigDecimal("10.001")))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("valor deve ter no maximo duas casas decimais");
+    }
+
+    @Test
+    void deveGerarExcecao_QuandoValorForaDoIntervalo() {
+        // Act
+        assertThatThrownBy(() -> Centavos.de(new BigDecimal("100000000000000000000")))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("valor fora do intervalo permitido");
+    }
+}
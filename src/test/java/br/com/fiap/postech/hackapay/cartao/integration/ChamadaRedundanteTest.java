@@ -0,0 +1,146 @@
+package br.com.fiap.postech.hackapay.cartao.integration;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ChamadaRedundanteTest {
+    private static final int CHAMADAS_AQUECIMENTO = 128;
+
+    private SimpleMeterRegistry meterRegistry;
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void deveResponderPelaChamadaExtra_QuandoOriginalNaoResponde() throws Exception {
+        // Arrange
+        var liberaOriginal = new CountDownLatch(1);
+        var chamadas = new AtomicInteger();
+        try (var chamadaRedundante = nova(true, 0.2)) {
+            aquece(chamadaRedundante, () -> "cliente");
+            // Act
+            var resultado = executor.submit(() -> chamadaRedundante.executa(() -> {
+                if (chamadas.incrementAndGet() == 1) {
+                    aguarda(liberaOriginal);
+                    return "original";
+                }
+                return "extra";
+            }));
+            // Assert
+            // a original so responde depois do assert: sem a chamada extra o get estouraria o tempo
+            assertThat(resultado.get(5, TimeUnit.SECONDS)).isEqualTo("extra");
+            assertThat(contador("enviada")).isEqualTo(1);
+            assertThat(contador("vencedora")).isEqualTo(1);
+        } finally {
+            liberaOriginal.countDown();
+        }
+    }
+
+    @Test
+    void naoDeveEnviarChamadaExtra_QuandoDesabilitada() {
+        // Arrange
+        var chamadas = new AtomicInteger();
+        try (var chamadaRedundante = nova(false, 0.2)) {
+            aquece(chamadaRedundante, () -> "cliente");
+            // Act
+            var resultado = chamadaRedundante.executa(() -> {
+                chamadas.incrementAndGet();
+                dorme(30);
+                return "cliente";
+            });
+            // Assert
+            assertThat(resultado).isEqualTo("cliente");
+            assertThat(chamadas).hasValue(1);
+            assertThat(contador("enviada")).isZero();
+        }
+    }
+
+    @Test
+    void deveLimitarChamadasExtras_AoOrcamento() {
+        // Arrange
+        try (var chamadaRedundante = nova(true, 0)) {
+            aquece(chamadaRedundante, () -> "cliente");
+            // Act
+            for (int i = 0; i < 15; i++) {
+                chamadaRedundante.executa(() -> {
+                    dorme(30);
+                    return "cliente";
+                });
+            }
+            // Assert
+            assertThat(contador("enviada")).isEqualTo(10);
+            assertThat(contador("sem_orcamento")).isEqualTo(5);
+        }
+    }
+
+    @Test
+    void deveDevolverChamadaExtra_QuandoOriginalFalhar() {
+        // Arrange
+        var chamadas = new AtomicInteger();
+        try (var chamadaRedundante = nova(true, 0.2)) {
+            aquece(chamadaRedundante, () -> "cliente");
+            // Act
+            var resultado = chamadaRedundante.executa(() -> {
+                if (chamadas.incrementAndGet() == 1) {
+                    dorme(50);
+                    throw new IllegalStateException("falhou");
+                }
+                return "extra";
+            });
+            // Assert
+            assertThat(resultado).isEqualTo("extra");
+            assertThat(chamadas).hasValue(2);
+        }
+    }
+
+    private ChamadaRedundante<String> nova(boolean habilitada, double orcamento) {
+        return new ChamadaRedundante<>(meterRegistry, "teste", habilitada, 0.9, Duration.ofMillis(10), orcamento);
+    }
+
+    private static void aquece(ChamadaRedundante<String> chamadaRedundante, Supplier<String> chamada) {
+        for (int i = 0; i < CHAMADAS_AQUECIMENTO; i++) {
+            chamadaRedundante.executa(chamada);
+        }
+    }
+
+    private double contador(String resultado) {
+        return meterRegistry.get("hackapay.chamada.redundante").tag("resultado", resultado).counter().count();
+    }
+
+    private static void aguarda(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void dorme(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package br.com.fiap.postech.hackapay.cartao.integration;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ChamadaUnicaTest {
+    private SimpleMeterRegistry meterRegistry;
+    private ChamadaUnica<String, String> chamadaUnica;
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        chamadaUnica = new ChamadaUnica<>(meterRegistry, "teste");
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void deveCompartilharChamadaEmAndamento() throws Exception {
+        // Arrange
+        var liberaChamada = new CountDownLatch(1);
+        var chamadas = new AtomicInteger();
+        var primeira = executor.submit(() -> chamadaUnica.executa("cpf", () -> {
+            chamadas.incrementAndGet();
+            aguarda(liberaChamada);
+            return "cliente";
+        }));
+        aguardaChamadaIniciar(chamadas);
+        // Act
+        var segunda = executor.submit(() -> chamadaUnica.executa("cpf", () -> {
+            chamadas.incrementAndGet();
+            return "outro";
+        }));
+        aguardaCoalescida(1);
+        liberaChamada.countDown();
+        // Assert
+        assertThat(primeira.get(5, TimeUnit.SECONDS)).isEqualTo("cliente");
+        assertThat(segunda.get(5, TimeUnit.SECONDS)).isEqualTo("cliente");
+        assertThat(chamadas).hasValue(1);
+        assertThat(contador("executada")).isEqualTo(1);
+    }
+
+    @Test
+    void deveCompartilharExcecaoDaChamadaEmAndamento() throws Exception {
+        // Arrange
+        var liberaChamada = new CountDownLatch(1);
+        var chamadas = new AtomicInteger();
+        var primeira = executor.submit(() -> chamadaUnica.executa("cpf", () -> {
+            chamadas.incrementAndGet();
+            aguarda(liberaChamada);
+            throw new IllegalStateException("falhou");
+        }));
+        aguardaChamadaIniciar(chamadas);
+        var segunda = executor.submit(() -> chamadaUnica.executa("cpf", () -> "outro"));
+        aguardaCoalescida(1);
+        // Act
+        liberaChamada.countDown();
+        // Assert
+        assertThatThrownBy(() -> primeira.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> segunda.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void deveLiberarChamadasCoalescidas_QuandoChamadaLancarError() throws Exception {
+        // Arrange
+        var liberaChamada = new CountDownLatch(1);
+        var chamadas = new AtomicInteger();
+        var primeira = executor.submit(() -> chamadaUnica.executa("cpf", () -> {
+            chamadas.incrementAndGet();
+            aguarda(liberaChamada);
+            throw new AssertionError("falhou");
+        }));
+        aguardaChamadaIniciar(chamadas);
+        var segunda = executor.submit(() -> chamadaUnica.executa("cpf", () -> "outro"));
+        aguardaCoalescida(1);
+        // Act
+        liberaChamada.countDown();
+        // Assert
+        assertThatThrownBy(() -> primeira.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(AssertionError.class);
+        assertThatThrownBy(() -> segunda.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(AssertionError.class);
+        assertThat(chamadaUnica.executa("cpf", () -> "cliente")).isEqualTo("cliente");
+    }
+
+    @Test
+    void deveExecutarNovamente_QuandoChamadaAnteriorTerminou() {
+        // Act
+        chamadaUnica.executa("cpf", () -> "cliente");
+        var resultado = chamadaUnica.executa("cpf", () -> "outro");
+        // Assert
+        assertThat(resultado).isEqualTo("outro");
+        assertThat(contador("executada")).isEqualTo(2);
+        assertThat(contador("coalescida")).isZero();
+    }
+
+    private double contador(String resultado) {
+        return meterRegistry.get("hackapay.chamada.unica").tag("resultado", resultado).counter().count();
+    }
+
+    private void aguardaChamadaIniciar(AtomicInteger chamadas) throws InterruptedException {
+        while (chamadas.get() == 0) {
+            Thread.sleep(1);
+        }
+    }
+
+    private void aguardaCoalescida(int quantidade) throws InterruptedException {
+        while (contador("coalescida") < quantidade) {
+            Thread.sleep(1);
+        }
+    }
+
+    private static void aguarda(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
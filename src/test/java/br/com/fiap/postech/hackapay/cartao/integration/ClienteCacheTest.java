@@ -0,0 +1,68 @@
+package br.com.fiap.postech.hackapay.cartao.integration;
+
+import br.com.fiap.postech.hackapay.cartao.helper.ClienteHelper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ClienteCacheTest {
+    private SimpleMeterRegistry meterRegistry;
+    private ClienteCache clienteCache;
+    private AtomicInteger chamadas;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        clienteCache = new ClienteCache(meterRegistry, 100, Duration.ofHours(1), Duration.ofSeconds(30));
+        chamadas = new AtomicInteger();
+    }
+
+    @Test
+    void deveBuscarClienteUmaVez_QuandoClienteEncontrado() {
+        // Arrange
+        var cliente = ClienteHelper.getCliente();
+        // Act
+        var primeiro = clienteCache.busca("25310413030", () -> carrega(cliente));
+        var segundo = clienteCache.busca("25310413030", () -> carrega(cliente));
+        // Assert
+        assertThat(primeiro).isSameAs(cliente);
+        assertThat(segundo).isSameAs(cliente);
+        assertThat(chamadas).hasValue(1);
+        assertThat(meterRegistry.get("cache.gets").tag("result", "hit").functionCounter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("cache.gets").tag("result", "miss").functionCounter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void deveGuardarCpfSemCliente() {
+        // Act
+        var primeiro = clienteCache.busca("25310413030", () -> carrega(null));
+        var segundo = clienteCache.busca("25310413030", () -> carrega(ClienteHelper.getCliente()));
+        // Assert
+        assertThat(primeiro).isNull();
+        assertThat(segundo).isNull();
+        assertThat(chamadas).hasValue(1);
+    }
+
+    @Test
+    void deveBuscarNovamente_QuandoCpfInvalidado() {
+        // Arrange
+        clienteCache.busca("25310413030", () -> carrega(null));
+        var cliente = ClienteHelper.getCliente();
+        // Act
+        clienteCache.invalida("25310413030");
+        var encontrado = clienteCache.busca("25310413030", () -> carrega(cliente));
+        // Assert
+        assertThat(encontrado).isSameAs(cliente);
+        assertThat(chamadas).hasValue(2);
+    }
+
+    private Cliente carrega(Cliente cliente) {
+        chamadas.incrementAndGet();
+        return cliente;
+    }
+}
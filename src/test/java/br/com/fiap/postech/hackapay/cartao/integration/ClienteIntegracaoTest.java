@@ -2,6 +2,9 @@ package br.com.fiap.postech.hackapay.cartao.integration;
 
 import br.com.fiap.postech.hackapay.cartao.helper.ClienteHelper;
 import br.com.fiap.postech.hackapay.cartao.helper.UserHelper;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.transaction.Transactional;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -21,6 +24,7 @@ import org.springframework.web.client.RestClient;
 
 import java.net.URISyntaxException;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.springframework.test.web.client.match.MockRestRequestMatchers.*;
 import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
@@ -40,8 +44,27 @@ class ClienteIntegracaoTest {
     @InjectMocks
     private ClienteIntegracao clienteIntegracao;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private CircuitBreaker clienteCircuitBreaker;
+
+    @Autowired
+    private Bulkhead clienteBulkhead;
+
     private MockRestServiceServer mockServer;
 
+    @Test
+    void deveExporMetricasDoPoolDeConexoes() {
+        assertThat(meterRegistry.find("httpcomponents.httpclient.pool.total.connections")
+                .tag("httpclient", "cliente").tag("state", "leased").gauge()).isNotNull();
+        assertThat(meterRegistry.find("httpcomponents.httpclient.pool.total.connections")
+                .tag("httpclient", "cliente").tag("state", "available").gauge()).isNotNull();
+        assertThat(meterRegistry.find("httpcomponents.httpclient.pool.total.pending")
+                .tag("httpclient", "cliente").gauge()).isNotNull();
+    }
+
     @Test
     void atualizaLimiteCartao() throws URISyntaxException {
         var cpf = "cpf";
@@ -58,4 +81,53 @@ class ClienteIntegracaoTest {
         assertThatThrownBy(() -> clienteIntegracao.getCliente(token, cpf))
                 .isInstanceOf(ResourceAccessException.class);
     }
-}
\ No newline at end of file
+
+    @Test
+    void deveMedirErro_QuandoServicoDeClienteFalhar() {
+        // Arrange
+        var cpf = "cpf-indisponivel";
+        // Act
+        assertThatThrownBy(() -> clienteIntegracao.getCliente("token", cpf))
+                .isInstanceOf(ResourceAccessException.class);
+        // Assert
+        assertThat(meterRegistry.get("hackapay.cliente.integracao").tag("resultado", "erro")
+                .tag("excecao", "ResourceAccessException").timer().count()).isPositive();
+    }
+
+    @Test
+    void deveRecusarNaHora_QuandoCircuitoAberto() {
+        // Arrange
+        clienteCircuitBreaker.transitionToForcedOpenState();
+        try {
+            // Act && Assert
+            assertThatThrownBy(() -> clienteIntegracao.getCliente("token", "cpf-circuito-aberto"))
+                    .isInstanceOf(ClienteIndisponivelException.class);
+            assertThat(meterRegistry.get("hackapay.cliente.rejeitadas").tag("motivo", "circuito_aberto")
+                    .counter().count()).isPositive();
+            assertThat(meterRegistry.find("resilience4j.circuitbreaker.state").tag("name", "cliente")
+                    .tag("state", "forced_open").gauge().value()).isEqualTo(1);
+        } finally {
+            clienteCircuitBreaker.transitionToClosedState();
+        }
+    }
+
+    @Test
+    void deveRecusar_QuandoBulkheadCheio() {
+        // Arrange
+        int ocupadas = 0;
+        while (clienteBulkhead.tryAcquirePermission()) {
+            ocupadas++;
+        }
+        try {
+            // Act && Assert
+            assertThatThrownBy(() -> clienteIntegracao.getCliente("token", "cpf-bulkhead-cheio"))
+                    .isInstanceOf(ClienteIndisponivelException.class);
+            assertThat(meterRegistry.get("hackapay.cliente.rejeitadas").tag("motivo", "bulkhead_cheio")
+                    .counter().count()).isPositive();
+        } finally {
+            for (int i = 0; i < ocupadas; i++) {
+                clienteBulkhead.onComplete();
+            }
+        }
+    }
+}
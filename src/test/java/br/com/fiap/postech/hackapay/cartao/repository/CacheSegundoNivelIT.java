@@ -0,0 +1,90 @@
+package br.com.fiap.postech.hackapay.cartao.repository;
+
+import br.com.fiap.postech.hackapay.cartao.dto.DebitoLimite;
+import br.com.fiap.postech.hackapay.cartao.entities.Cartao;
+import br.com.fiap.postech.hackapay.cartao.helper.CartaoHelper;
+import br.com.fiap.postech.hackapay.cartao.integration.ClienteIntegracao;
+import br.com.fiap.postech.hackapay.cartao.services.CartaoService;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.apache.commons.lang3.RandomStringUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+ * Sem @Transactional: cada chamada usa o seu proprio contexto de persistencia,
+ * e o que volta do findById vem do cache de segundo nivel ou do banco.
+ */
+@SpringBootTest(properties = "hackapay.cartao.cache-segundo-nivel.estatisticas.enabled=true")
+@AutoConfigureTestDatabase
+@ActiveProfiles("test")
+public class CacheSegundoNivelIT {
+    @Autowired
+    private CartaoService cartaoService;
+    @Autowired
+    private CartaoRepository cartaoRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private MeterRegistry meterRegistry;
+    @MockBean
+    private ClienteIntegracao clienteIntegracao;
+
+    private Cartao cartao;
+
+    @BeforeEach
+    void setUp() {
+        cartao = CartaoHelper.getCartao(true);
+        cartao.setNumero(RandomStringUtils.randomNumeric(16));
+        cartaoRepository.save(cartao);
+        entityManagerFactory.getCache().evictAll();
+    }
+
+    @AfterEach
+    void tearDown() {
+        cartaoRepository.deleteById(cartao.getId());
+    }
+
+    @Test
+    void deveBuscarCartaoPorIdNoCache() {
+        // Act
+        cartaoService.findById(cartao.getId());
+        cartaoService.findById(cartao.getId());
+        // Assert
+        assertThat(entityManagerFactory.getCache().contains(Cartao.class, cartao.getId())).isTrue();
+        assertThat(meterRegistry.get("hibernate.second.level.cache.requests")
+                .tag("region", "cartao").tag("result", "hit").functionCounter().count()).isPositive();
+    }
+
+    @Test
+    void deveRemoverCartaoDoCache_QuandoDebitarLimite() {
+        // Arrange
+        cartaoService.findById(cartao.getId());
+        // Act
+        cartaoService.atualizaLimiteCartao(10000L, cartao);
+        // Assert
+        assertThat(entityManagerFactory.getCache().contains(Cartao.class, cartao.getId())).isFalse();
+        assertThat(cartaoService.findById(cartao.getId()).getLimiteCentavos()).isEqualTo(90000L);
+    }
+
+    @Test
+    void deveRemoverCartaoDoCache_QuandoDebitarLimiteEmLote() {
+        // Arrange
+        cartaoService.findById(cartao.getId());
+        var debitos = List.of(new DebitoLimite(10000L, cartao));
+        // Act
+        cartaoService.atualizaLimiteCartaoLote(debitos);
+        // Assert
+        assertThat(cartaoService.findById(cartao.getId()).getLimiteCentavos()).isEqualTo(90000L);
+    }
+}
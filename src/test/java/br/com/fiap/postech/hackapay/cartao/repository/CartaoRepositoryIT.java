@@ -7,11 +7,14 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.test.context.ActiveProfiles;
 
+import java.util.List;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowableOfType;
 
 @SpringBootTest
 @AutoConfigureTestDatabase
@@ -37,7 +40,19 @@ public class CartaoRepositoryIT {
         assertThat(cartaoCadastrado).isInstanceOf(Cartao.class).isNotNull();
         assertThat(cartaoCadastrado.getId()).isEqualTo(cartao.getId());
         assertThat(cartaoCadastrado.getNumero()).isEqualTo(cartao.getNumero());
-        assertThat(cartaoCadastrado.getLimite()).isEqualTo(cartao.getLimite());
+        assertThat(cartaoCadastrado.getLimiteCentavos()).isEqualTo(cartao.getLimiteCentavos());
+    }
+
+    @Test
+    void deveIdentificarViolacaoDoNumeroUnico_QuandoCadastrarNumeroRepetido() {
+        // Arrange
+        var cartao = CartaoHelper.getCartao(true);
+        cartao.setNumero("4417810025751018");
+        // Act
+        var exception = catchThrowableOfType(() -> cartaoRepository.saveAndFlush(cartao), DataIntegrityViolationException.class);
+        // Assert
+        assertThat(exception).isNotNull();
+        assertThat(RestricoesCartao.violaNumeroUnico(exception)).isTrue();
     }
     @Test
     void devePermitirBuscarCartao() {
@@ -74,4 +89,47 @@ public class CartaoRepositoryIT {
         // Assert
         assertThat(cartaosListados).hasSize(3);
     }
+
+    @Test
+    void devePermitirDebitarLimite_devolvendoSituacaoAnterior() {
+        // Act
+        var anterior = cartaoRepository.debitaLimiteComSituacao("4417810025751018", "80346534038", "253", "12/30", 10000L);
+        // Assert
+        assertThat(anterior).isNotNull();
+        assertThat(anterior.id()).isEqualTo(UUID.fromString("56833f9a-7fda-49d5-a760-8e1ba41f35a8"));
+        assertThat(anterior.limiteCentavos()).isEqualTo(100000L);
+        assertThat(limite("4417810025751018")).isEqualTo(90000L);
+    }
+
+    @Test
+    void naoDeveDebitarLimite_QuandoCvvNaoConfere() {
+        // Act
+        var anterior = cartaoRepository.debitaLimiteComSituacao("4417810025751018", "80346534038", "999", "12/30", 10000L);
+        // Assert
+        assertThat(anterior).isNotNull();
+        assertThat(anterior.cvv()).isEqualTo("253");
+        assertThat(limite("4417810025751018")).isEqualTo(100000L);
+    }
+
+    @Test
+    void naoDeveDebitarLimite_QuandoLimiteInsuficiente() {
+        // Act
+        var anterior = cartaoRepository.debitaLimiteComSituacao("4417810025751018", "80346534038", "253", "12/30", 100001L);
+        // Assert
+        assertThat(anterior).isNotNull();
+        assertThat(anterior.limiteCentavos()).isEqualTo(100000L);
+        assertThat(limite("4417810025751018")).isEqualTo(100000L);
+    }
+
+    @Test
+    void deveDevolverNulo_QuandoDebitarCartaoInexistente() {
+        // Act
+        var anterior = cartaoRepository.debitaLimiteComSituacao("0000000000000000", "80346534038", "253", "12/30", 10000L);
+        // Assert
+        assertThat(anterior).isNull();
+    }
+
+    private long limite(String numero) {
+        return cartaoRepository.findByNumeroIn(List.of(numero)).get(0).limiteCentavos();
+    }
 }
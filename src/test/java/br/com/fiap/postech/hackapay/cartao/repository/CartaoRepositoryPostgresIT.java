@@ -0,0 +1,131 @@
+package br.com.fiap.postech.hackapay.cartao.repository;
+
+import br.com.fiap.postech.hackapay.cartao.dto.DebitoLimite;
+import br.com.fiap.postech.hackapay.cartao.entities.Cartao;
+import jakarta.transaction.Transactional;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.test.context.ActiveProfiles;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+ * Os mesmos updates de debito contra PostgreSQL, o banco de producao; o H2 dos
+ * outros testes usa outra forma do update que devolve a situacao anterior.
+ */
+@SpringBootTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("test")
+@Transactional
+@Testcontainers(disabledWithoutDocker = true)
+class CartaoRepositoryPostgresIT {
+
+    private static final UUID ID = UUID.fromString("56833f9a-7fda-49d5-a760-8e1ba41f35a8");
+    private static final String NUMERO = "4417810025751018";
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    @Autowired
+    private CartaoRepository cartaoRepository;
+
+    @Test
+    void deveDebitarLimite_devolvendoSituacaoAnterior() {
+        // Act
+        var anterior = cartaoRepository.debitaLimiteComSituacao(NUMERO, "80346534038", "253", "12/30", 10000L);
+        // Assert
+        assertThat(anterior).isNotNull();
+        assertThat(anterior.id()).isEqualTo(ID);
+        assertThat(anterior.cpf()).isEqualTo("80346534038");
+        assertThat(anterior.cvv()).isEqualTo("253");
+        assertThat(anterior.dataValidade()).isEqualTo("12/30");
+        assertThat(anterior.limiteCentavos()).isEqualTo(100000L);
+        assertThat(limite(NUMERO)).isEqualTo(90000L);
+    }
+
+    @Test
+    void naoDeveDebitarLimite_QuandoCpfNaoConfere() {
+        // Act
+        var anterior = cartaoRepository.debitaLimiteComSituacao(NUMERO, "25310413030", "253", "12/30", 10000L);
+        // Assert
+        assertThat(anterior).isNotNull();
+        assertThat(anterior.cpf()).isEqualTo("80346534038");
+        assertThat(limite(NUMERO)).isEqualTo(100000L);
+    }
+
+    @Test
+    void naoDeveDebitarLimite_QuandoCvvNaoConfere() {
+        // Act
+        var anterior = cartaoRepository.debitaLimiteComSituacao(NUMERO, "80346534038", "999", "12/30", 10000L);
+        // Assert
+        assertThat(anterior).isNotNull();
+        assertThat(anterior.cvv()).isEqualTo("253");
+        assertThat(limite(NUMERO)).isEqualTo(100000L);
+    }
+
+    @Test
+    void naoDeveDebitarLimite_QuandoDataValidadeNaoConfere() {
+        // Act
+        var anterior = cartaoRepository.debitaLimiteComSituacao(NUMERO, "80346534038", "253", "01/29", 10000L);
+        // Assert
+        assertThat(anterior).isNotNull();
+        assertThat(anterior.dataValidade()).isEqualTo("12/30");
+        assertThat(limite(NUMERO)).isEqualTo(100000L);
+    }
+
+    @Test
+    void naoDeveDebitarLimite_QuandoLimiteInsuficiente() {
+        // Act
+        var anterior = cartaoRepository.debitaLimiteComSituacao(NUMERO, "80346534038", "253", "12/30", 100001L);
+        // Assert
+        assertThat(anterior).isNotNull();
+        assertThat(anterior.limiteCentavos()).isEqualTo(100000L);
+        assertThat(limite(NUMERO)).isEqualTo(100000L);
+    }
+
+    @Test
+    void deveDevolverNulo_QuandoDebitarCartaoInexistente() {
+        // Act
+        var anterior = cartaoRepository.debitaLimiteComSituacao("0000000000000000", "80346534038", "253", "12/30", 10000L);
+        // Assert
+        assertThat(anterior).isNull();
+    }
+
+    @Test
+    void deveDebitarEmLote_SoQuemTemLimite() {
+        // Arrange
+        var cartao = new Cartao();
+        cartao.setNumero(NUMERO);
+        // Act
+        var atualizados = cartaoRepository.debitaLimiteEmLote(List.of(
+                new DebitoLimite(60000L, cartao),
+                new DebitoLimite(60000L, cartao)));
+        // Assert
+        assertThat(atualizados).containsExactly(1, 0);
+        assertThat(limite(NUMERO)).isEqualTo(40000L);
+    }
+
+    @Test
+    void deveAjustarLimitePelaDiferenca() {
+        // Arrange
+        cartaoRepository.debitaLimite(NUMERO, "80346534038", "253", "12/30", 10000L);
+        // Act
+        cartaoRepository.ajustaLimite(ID, 50000L);
+        // Assert
+        assertThat(limite(NUMERO)).isEqualTo(140000L);
+    }
+
+    private long limite(String numero) {
+        return cartaoRepository.findByNumeroIn(List.of(numero)).get(0).limiteCentavos();
+    }
+}
@@ -0,0 +1,35 @@
+package br.com.fiap.postech.hackapay.cartao.repository;
+
+import io.r2dbc.spi.ConnectionFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+ * Fora do perfil reativo o R2DBC continua desligado mesmo quando alguma
+ * configuracao define o proprio spring.autoconfigure.exclude.
+ */
+@SpringBootTest(properties =
+        "spring.autoconfigure.exclude=org.springframework.boot.autoconfigure.mail.MailSenderAutoConfiguration")
+@AutoConfigureTestDatabase
+@ActiveProfiles("test")
+public class FiltroR2dbcReativoIT {
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    @Test
+    void naoDeveCriarConexaoR2dbc_ForaDoPerfilReativo() {
+        // Act
+        var connectionFactories = applicationContext.getBeanNamesForType(ConnectionFactory.class);
+        var databaseClients = applicationContext.getBeanNamesForType(DatabaseClient.class);
+        // Assert
+        assertThat(connectionFactories).isEmpty();
+        assertThat(databaseClients).isEmpty();
+    }
+}
@@ -0,0 +1,67 @@
+package br.com.fiap.postech.hackapay.cartao.security;
+
+import br.com.fiap.postech.hackapay.security.JwtService;
+import br.com.fiap.postech.hackapay.security.User;
+import io.jsonwebtoken.JwtException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class JwtServiceComCacheTest {
+    private SimpleMeterRegistry meterRegistry;
+    private JwtServiceComCache jwtServiceComCache;
+    private String token;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        jwtServiceComCache = new JwtServiceComCache(meterRegistry, 100, Duration.ofMinutes(10));
+        token = new JwtService().generateToken(new User("umUsuarioQualquer", "umaSenhaQualquer"));
+    }
+
+    @Test
+    void deveVerificarTokenUmaVez() {
+        // Act
+        var primeira = jwtServiceComCache.extractAllClaims(token);
+        var segunda = jwtServiceComCache.extractAllClaims(token);
+        // Assert
+        assertThat(primeira.getSubject()).isEqualTo("umUsuarioQualquer");
+        assertThat(segunda).isSameAs(primeira);
+        assertThat(jwtServiceComCache.extractUsername(token)).isEqualTo("umUsuarioQualquer");
+        assertThat(contador("hit")).isEqualTo(2);
+        assertThat(contador("miss")).isEqualTo(1);
+    }
+
+    @Test
+    void deveGerarExcecao_QuandoTokenAdulterado() {
+        // Arrange
+        jwtServiceComCache.extractAllClaims(token);
+        var ultimo = token.charAt(token.length() - 2);
+        var adulterado = token.substring(0, token.length() - 2) + (ultimo == 'A' ? 'B' : 'A') + token.charAt(token.length() - 1);
+        // Act && Assert
+        assertThatThrownBy(() -> jwtServiceComCache.extractAllClaims(adulterado))
+                .isInstanceOf(JwtException.class);
+    }
+
+    @Test
+    void naoDeveGuardar_QuandoValidadeMaximaZero() {
+        // Arrange
+        meterRegistry = new SimpleMeterRegistry();
+        jwtServiceComCache = new JwtServiceComCache(meterRegistry, 100, Duration.ZERO);
+        // Act
+        jwtServiceComCache.extractAllClaims(token);
+        jwtServiceComCache.extractAllClaims(token);
+        // Assert
+        assertThat(contador("hit")).isZero();
+    }
+
+    private double contador(String resultado) {
+        return meterRegistry.get("cache.gets").tag("cache", "claims-jwt").tag("result", resultado)
+                .functionCounter().count();
+    }
+}
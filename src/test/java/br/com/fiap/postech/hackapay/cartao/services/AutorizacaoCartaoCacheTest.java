@@ -0,0 +1,70 @@
+package br.com.fiap.postech.hackapay.cartao.services;
+
+import br.com.fiap.postech.hackapay.cartao.dto.AutorizacaoCartao;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AutorizacaoCartaoCacheTest {
+    private SimpleMeterRegistry meterRegistry;
+    private AutorizacaoCartaoCache autorizacaoCartaoCache;
+    private AtomicInteger chamadas;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        autorizacaoCartaoCache = new AutorizacaoCartaoCache(meterRegistry, 100, Duration.ofMinutes(10));
+        chamadas = new AtomicInteger();
+    }
+
+    @Test
+    void deveCarregarAutorizacaoUmaVez() {
+        // Arrange
+        var autorizacao = new AutorizacaoCartao(UUID.randomUUID(), "25310413030", "234", "12/30");
+        // Act
+        var primeira = autorizacaoCartaoCache.busca("4417810025751018", () -> carrega(autorizacao));
+        var segunda = autorizacaoCartaoCache.busca("4417810025751018", () -> carrega(autorizacao));
+        // Assert
+        assertThat(primeira).isSameAs(autorizacao);
+        assertThat(segunda).isSameAs(autorizacao);
+        assertThat(chamadas).hasValue(1);
+        assertThat(meterRegistry.get("cache.gets").tag("cache", "autorizacao-cartao").tag("result", "hit")
+                .functionCounter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("cache.gets").tag("cache", "autorizacao-cartao").tag("result", "miss")
+                .functionCounter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void naoDeveGuardarCartaoNaoEncontrado() {
+        // Act
+        var primeira = autorizacaoCartaoCache.busca("4417810025751018", () -> carrega(null));
+        var segunda = autorizacaoCartaoCache.busca("4417810025751018", () -> carrega(null));
+        // Assert
+        assertThat(primeira).isNull();
+        assertThat(segunda).isNull();
+        assertThat(chamadas).hasValue(2);
+    }
+
+    @Test
+    void deveCarregarNovamente_QuandoCartaoInvalidado() {
+        // Arrange
+        var autorizacao = new AutorizacaoCartao(UUID.randomUUID(), "25310413030", "234", "12/30");
+        autorizacaoCartaoCache.busca("4417810025751018", () -> carrega(autorizacao));
+        // Act
+        autorizacaoCartaoCache.invalida("4417810025751018");
+        autorizacaoCartaoCache.busca("4417810025751018", () -> carrega(autorizacao));
+        // Assert
+        assertThat(chamadas).hasValue(2);
+    }
+
+    private AutorizacaoCartao carrega(AutorizacaoCartao autorizacao) {
+        chamadas.incrementAndGet();
+        return autorizacao;
+    }
+}
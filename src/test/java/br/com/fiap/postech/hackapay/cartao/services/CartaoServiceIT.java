@@ -1,5 +1,7 @@
 package br.com.fiap.postech.hackapay.cartao.services;
 
+import br.com.fiap.postech.hackapay.cartao.dto.DebitoLimite;
+import br.com.fiap.postech.hackapay.cartao.dto.ResultadoDebito;
 import br.com.fiap.postech.hackapay.cartao.entities.Cartao;
 import br.com.fiap.postech.hackapay.cartao.helper.CartaoHelper;
 import br.com.fiap.postech.hackapay.cartao.helper.ClienteHelper;
@@ -16,6 +18,8 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.test.context.ActiveProfiles;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -96,6 +100,59 @@ public class CartaoServiceIT {
                     }
             );
         }
+
+        @Test
+        void devePermitirBuscarTodosCartaoPorCursor() {
+            // Arrange
+            Cartao criteriosDeBusca = new Cartao();
+            criteriosDeBusca.setId(null);
+            // Act
+            var primeiraPagina = cartaoService.findAll(null, 2, criteriosDeBusca);
+            var segundaPagina = cartaoService.findAll(primeiraPagina.proximoCursor(), 2, criteriosDeBusca);
+            // Assert
+            assertThat(primeiraPagina.conteudo()).hasSize(2);
+            assertThat(primeiraPagina.proximoCursor()).isNotNull();
+            assertThat(segundaPagina.conteudo()).hasSize(1);
+            assertThat(segundaPagina.proximoCursor()).isNull();
+            assertThat(segundaPagina.conteudo().get(0).getId())
+                    .isGreaterThan(primeiraPagina.conteudo().get(1).getId());
+        }
+
+        @Test
+        void devePermitirBuscarCartaoPorCursor_FiltrandoPorCpf() {
+            // Arrange
+            Cartao criteriosDeBusca = new Cartao("52816804046", null, null, null, null);
+            criteriosDeBusca.setId(null);
+            // Act
+            var pagina = cartaoService.findAll(null, 10, criteriosDeBusca);
+            // Assert
+            assertThat(pagina.conteudo()).hasSize(1);
+            assertThat(pagina.conteudo().get(0).getNumero()).isEqualTo("4417810025752222");
+            assertThat(pagina.proximoCursor()).isNull();
+        }
+
+        @Test
+        void devePermitirExportarCartoes() {
+            // Arrange
+            Cartao criteriosDeBusca = new Cartao();
+            List<Cartao> exportados = new ArrayList<>();
+            // Act
+            cartaoService.exporta(criteriosDeBusca, exportados::add);
+            // Assert
+            assertThat(exportados).hasSize(3);
+            assertThat(exportados).extracting(cartao -> cartao.getId().toString()).isSorted();
+        }
+
+        @Test
+        void devePermitirExportarCartoes_FiltrandoPorNumero() {
+            // Arrange
+            Cartao criteriosDeBusca = new Cartao(null, null, "4417810025753333", null, null);
+            List<Cartao> exportados = new ArrayList<>();
+            // Act
+            cartaoService.exporta(criteriosDeBusca, exportados::add);
+            // Assert
+            assertThat(exportados).extracting(Cartao::getCpf).containsExactly("61908619031");
+        }
     }
 
     @Nested
@@ -132,6 +189,67 @@ public class CartaoServiceIT {
         }
     }
 
+    @Nested
+    class AtualizarLimite {
+        @Test
+        void devePermitirAlterarLimiteCartao() {
+            // Arrange
+            var id = UUID.fromString("56833f9a-7fda-49d5-a760-8e1ba41f35a8");
+            var cartao = new Cartao("80346534038", null, "4417810025751018", "12/30", "253");
+            // Act
+            cartaoService.atualizaLimiteCartao(10000L, cartao);
+            // Assert
+            assertThat(cartaoService.findById(id).getLimiteCentavos()).isEqualTo(90000L);
+        }
+
+        @Test
+        void deveGerarExcecao_QuandoAlterarLimiteCartao_cvvNaoConfere() {
+            // Arrange
+            var cartao = new Cartao("80346534038", null, "4417810025751018", "12/30", "999");
+            // Act && Assert
+            assertThatThrownBy(() -> cartaoService.atualizaLimiteCartao(10000L, cartao))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessage("cvv do cartao nao confere");
+        }
+
+        @Test
+        void deveGerarExcecao_QuandoAlterarLimiteCartao_limiteInsuficiente() {
+            // Arrange
+            var id = UUID.fromString("56833f9a-7fda-49d5-a760-8e1ba41f35a8");
+            var cartao = new Cartao("80346534038", null, "4417810025751018", "12/30", "253");
+            // Act && Assert
+            assertThatThrownBy(() -> cartaoService.atualizaLimiteCartao(100001L, cartao))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessage("nao ha mais limite disponivel no cartao.");
+            assertThat(cartaoService.findById(id).getLimiteCentavos()).isEqualTo(100000L);
+        }
+    }
+
+    @Nested
+    class AtualizarLimiteLote {
+        @Test
+        void devePermitirAlterarLimiteCartaoEmLote() {
+            // Arrange
+            var id = UUID.fromString("56833f9a-7fda-49d5-a760-8e1ba41f35a8");
+            var cartao = new Cartao("80346534038", null, "4417810025751018", "12/30", "253");
+            var outroCartao = new Cartao("52816804046", null, "4417810025752222", "12/30", "254");
+            var debitos = List.of(
+                    new DebitoLimite(70000L, cartao),
+                    new DebitoLimite(70000L, cartao),
+                    new DebitoLimite(50000L, outroCartao)
+            );
+            // Act
+            var resultados = cartaoService.atualizaLimiteCartaoLote(debitos);
+            // Assert
+            assertThat(resultados).extracting(ResultadoDebito::status).containsExactly(
+                    ResultadoDebito.Status.ACEITO,
+                    ResultadoDebito.Status.REJEITADO,
+                    ResultadoDebito.Status.ACEITO
+            );
+            assertThat(cartaoService.findById(id).getLimiteCentavos()).isEqualTo(30000L);
+        }
+    }
+
     @Nested
     class RemoverCartao {
         @Test
@@ -0,0 +1,141 @@
+package br.com.fiap.postech.hackapay.cartao.services;
+
+import br.com.fiap.postech.hackapay.cartao.dto.DebitoLimite;
+import br.com.fiap.postech.hackapay.cartao.dto.ResultadoDebito;
+import br.com.fiap.postech.hackapay.cartao.entities.Cartao;
+import br.com.fiap.postech.hackapay.cartao.helper.CartaoHelper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class CartaoServiceMetricasTest {
+    private CartaoService cartaoServiceMetricas;
+    private SimpleMeterRegistry meterRegistry;
+
+    @Mock
+    private CartaoService cartaoService;
+
+    private AutoCloseable mock;
+
+    @BeforeEach
+    void setUp() {
+        mock = MockitoAnnotations.openMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+        cartaoServiceMetricas = new CartaoServiceMetricas(cartaoService, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        mock.close();
+    }
+
+    @Test
+    void deveMedirSucesso() {
+        // Arrange
+        var cartao = CartaoHelper.getCartao(true);
+        when(cartaoService.findById(cartao.getId())).thenReturn(cartao);
+        // Act
+        var cartaoObtido = cartaoServiceMetricas.findById(cartao.getId());
+        // Assert
+        assertThat(cartaoObtido).isSameAs(cartao);
+        assertThat(meterRegistry.get("hackapay.cartao.servico").tag("metodo", "findById")
+                .tag("resultado", "sucesso").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void deveMedirCartaoNaoEncontrado() {
+        // Arrange
+        var id = UUID.randomUUID();
+        when(cartaoService.findById(id))
+                .thenThrow(new IllegalArgumentException("Cartao não encontrado com o ID: " + id));
+        // Act && Assert
+        assertThatThrownBy(() -> cartaoServiceMetricas.findById(id))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(meterRegistry.get("hackapay.cartao.servico").tag("metodo", "findById")
+                .tag("resultado", "nao_encontrado").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void deveMedirLimiteInsuficiente() {
+        // Arrange
+        var cartao = CartaoHelper.getCartao(false);
+        doThrow(new IllegalArgumentException("nao ha mais limite disponivel no cartao."))
+                .when(cartaoService).atualizaLimiteCartao(anyLong(), any(Cartao.class));
+        // Act && Assert
+        assertThatThrownBy(() -> cartaoServiceMetricas.atualizaLimiteCartao(10000L, cartao))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(meterRegistry.get("hackapay.cartao.servico").tag("metodo", "atualizaLimiteCartao")
+                .tag("resultado", "sem_limite").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void deveMedirCadastroProibido() {
+        // Arrange
+        var cartao = CartaoHelper.getCartao(false);
+        when(cartaoService.save(anyString(), any(Cartao.class)))
+                .thenThrow(new IllegalArgumentException("um Cliente pode ter no maximo 2 cartoes."));
+        // Act && Assert
+        assertThatThrownBy(() -> cartaoServiceMetricas.save("token", cartao))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(meterRegistry.get("hackapay.cartao.servico").tag("metodo", "save")
+                .tag("resultado", "proibido").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void deveMedirEntradaInvalida() {
+        // Arrange
+        var cartao = CartaoHelper.getCartao(false);
+        doThrow(new IllegalArgumentException("valor do debito deve ser maior que zero"))
+                .when(cartaoService).atualizaLimiteCartao(anyLong(), any(Cartao.class));
+        // Act && Assert
+        assertThatThrownBy(() -> cartaoServiceMetricas.atualizaLimiteCartao(0L, cartao))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(meterRegistry.get("hackapay.cartao.servico").tag("metodo", "atualizaLimiteCartao")
+                .tag("resultado", "invalido").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void deveMedirCursorInvalido_ComoEntradaInvalida() {
+        // Arrange
+        when(cartaoService.findAll(anyString(), anyInt(), any()))
+                .thenThrow(new IllegalArgumentException("cursor invalido"));
+        // Act && Assert
+        assertThatThrownBy(() -> cartaoServiceMetricas.findAll("xyz", 10, new Cartao()))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(meterRegistry.get("hackapay.cartao.servico").tag("metodo", "findAllPorCursor")
+                .tag("resultado", "invalido").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void deveContarCadaDebitoDoLote() {
+        // Arrange
+        var cartao = CartaoHelper.getCartao(false);
+        var debito = new DebitoLimite(10000L, cartao);
+        when(cartaoService.atualizaLimiteCartaoLote(anyList())).thenReturn(List.of(
+                ResultadoDebito.aceito(cartao.getNumero()),
+                ResultadoDebito.rejeitado(cartao.getNumero(), "nao ha mais limite disponivel no cartao."),
+                ResultadoDebito.rejeitado(cartao.getNumero(), "cvv do cartao nao confere")));
+        // Act
+        cartaoServiceMetricas.atualizaLimiteCartaoLote(List.of(debito, debito, debito));
+        // Assert
+        assertThat(meterRegistry.get("hackapay.cartao.debito.lote").tag("resultado", "sucesso")
+                .counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("hackapay.cartao.debito.lote").tag("resultado", "sem_limite")
+                .counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("hackapay.cartao.debito.lote").tag("resultado", "proibido")
+                .counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("hackapay.cartao.servico").tag("metodo", "atualizaLimiteCartaoLote")
+                .tag("resultado", "sucesso").timer().count()).isEqualTo(1);
+    }
+}
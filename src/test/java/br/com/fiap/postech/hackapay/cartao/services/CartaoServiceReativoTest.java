@@ -0,0 +1,177 @@
+package br.com.fiap.postech.hackapay.cartao.services;
+
+import br.com.fiap.postech.hackapay.cartao.dto.AutorizacaoCartao;
+import br.com.fiap.postech.hackapay.cartao.entities.Cartao;
+import br.com.fiap.postech.hackapay.cartao.helper.CartaoHelper;
+import br.com.fiap.postech.hackapay.cartao.helper.ClienteHelper;
+import br.com.fiap.postech.hackapay.cartao.integration.ClienteIndisponivelException;
+import br.com.fiap.postech.hackapay.cartao.integration.ClienteIntegracaoReativa;
+import br.com.fiap.postech.hackapay.cartao.repository.CartaoRepositoryReativo;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class CartaoServiceReativoTest {
+    private CartaoServiceReativo cartaoService;
+
+    @Mock
+    private CartaoRepositoryReativo cartaoRepository;
+
+    @Mock
+    private ClienteIntegracaoReativa clienteIntegracao;
+
+    private AutorizacaoCartaoCache autorizacaoCartaoCache;
+
+    private AutoCloseable mock;
+
+    @BeforeEach
+    void setUp() {
+        mock = MockitoAnnotations.openMocks(this);
+        autorizacaoCartaoCache = new AutorizacaoCartaoCache(new SimpleMeterRegistry(), 100, Duration.ofMinutes(10));
+        cartaoService = new CartaoServiceReativoImpl(cartaoRepository, clienteIntegracao, autorizacaoCartaoCache,
+                Optional.empty(), Optional.empty());
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        mock.close();
+    }
+
+    @Nested
+    class CadastrarCartao {
+        @Test
+        void devePermitirCadastrarCartao() {
+            // Arrange
+            var cartao = CartaoHelper.getCartao(false);
+            when(cartaoRepository.countByCpf(cartao.getCpf())).thenReturn(Mono.just(1L));
+            when(clienteIntegracao.getCliente(anyString(), anyString())).thenReturn(Mono.just(ClienteHelper.getCliente()));
+            when(cartaoRepository.insere(any(Cartao.class))).thenAnswer(r -> Mono.just(r.getArgument(0)));
+            // Act
+            var cartaoSalvo = cartaoService.save("token", cartao).block();
+            // Assert
+            assertThat(cartaoSalvo).isNotNull();
+            assertThat(cartaoSalvo.getId()).isNotNull();
+            verify(cartaoRepository, times(1)).insere(any(Cartao.class));
+        }
+
+        @Test
+        void deveGerarExcecao_QuandoCpfJaPossuiDoisCartoes_MesmoComClienteIndisponivel() {
+            // Arrange
+            var cartao = CartaoHelper.getCartao(false);
+            when(cartaoRepository.countByCpf(cartao.getCpf())).thenReturn(Mono.just(2L));
+            when(clienteIntegracao.getCliente(anyString(), anyString()))
+                    .thenReturn(Mono.error(new ClienteIndisponivelException(new IllegalStateException("circuito aberto"))));
+            // Act & Assert
+            assertThatThrownBy(() -> cartaoService.save("token", cartao).block())
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessage(CartaoServiceImpl.MAXIMO_CARTOES_EXCEDIDO);
+            verify(cartaoRepository, never()).insere(any(Cartao.class));
+        }
+
+        @Test
+        void deveGerarExcecao_QuandoClienteNaoCadastrado() {
+            // Arrange
+            var cartao = CartaoHelper.getCartao(false);
+            when(cartaoRepository.countByCpf(cartao.getCpf())).thenReturn(Mono.just(0L));
+            when(clienteIntegracao.getCliente(anyString(), anyString())).thenReturn(Mono.empty());
+            // Act & Assert
+            assertThatThrownBy(() -> cartaoService.save("token", cartao).block())
+                    .isInstanceOf(IllegalStateException.class)
+                    .hasMessage(CartaoServiceImpl.CLIENTE_NAO_CADASTRADO);
+            verify(cartaoRepository, never()).insere(any(Cartao.class));
+        }
+    }
+
+    @Nested
+    class AtualizarLimiteCartao {
+        @Test
+        void devePermitirDebitar_UsandoAutorizacaoEmCache() {
+            // Arrange
+            var cartao = CartaoHelper.getCartao(false);
+            autorizacaoCartaoCache.atualiza(cartao.getNumero(),
+                    new AutorizacaoCartao(UUID.randomUUID(), cartao.getCpf(), cartao.getCvv(), cartao.getDataValidade()));
+            when(cartaoRepository.debitaLimite(cartao.getNumero(), cartao.getCpf(), cartao.getCvv(), cartao.getDataValidade(), 500L))
+                    .thenReturn(Mono.just(1L));
+            // Act
+            cartaoService.atualizaLimiteCartao(500L, cartao).block();
+            // Assert
+            verify(cartaoRepository, never()).findAutorizacaoByNumero(anyString());
+        }
+
+        @Test
+        void deveGerarExcecao_QuandoValorNegativo_SemDebitar() {
+            // Arrange
+            var cartao = CartaoHelper.getCartao(false);
+            // Act & Assert
+            assertThatThrownBy(() -> cartaoService.atualizaLimiteCartao(-500L, cartao).block())
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessage(CartaoServiceImpl.VALOR_INVALIDO);
+            verify(cartaoRepository, never()).debitaLimite(anyString(), anyString(), anyString(), anyString(), anyLong());
+        }
+
+        @Test
+        void deveGerarExcecao_QuandoCvvNaoConfere_SemDebitar() {
+            // Arrange
+            var cartao = CartaoHelper.getCartao(false);
+            when(cartaoRepository.findAutorizacaoByNumero(cartao.getNumero()))
+                    .thenReturn(Mono.just(new AutorizacaoCartao(UUID.randomUUID(), cartao.getCpf(), "999", cartao.getDataValidade())));
+            // Act & Assert
+            assertThatThrownBy(() -> cartaoService.atualizaLimiteCartao(500L, cartao).block())
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessage(CartaoServiceImpl.CVV_NAO_CONFERE);
+            verify(cartaoRepository, never()).debitaLimite(anyString(), anyString(), anyString(), anyString(), anyLong());
+        }
+
+        @Test
+        void deveGerarExcecao_QuandoUpdateCondicionalNaoAfetaLinhas() {
+            // Arrange
+            var cartao = CartaoHelper.getCartao(false);
+            var autorizacao = new AutorizacaoCartao(UUID.randomUUID(), cartao.getCpf(), cartao.getCvv(), cartao.getDataValidade());
+            when(cartaoRepository.findAutorizacaoByNumero(cartao.getNumero())).thenReturn(Mono.just(autorizacao));
+            when(cartaoRepository.debitaLimite(anyString(), anyString(), anyString(), anyString(), anyLong()))
+                    .thenReturn(Mono.just(0L));
+            // Act & Assert
+            assertThatThrownBy(() -> cartaoService.atualizaLimiteCartao(500_000L, cartao).block())
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessage(CartaoServiceImpl.LIMITE_INSUFICIENTE);
+        }
+
+        @Test
+        void deveGerarExcecao_QuandoCartaoNaoExiste() {
+            // Arrange
+            var cartao = CartaoHelper.getCartao(false);
+            when(cartaoRepository.findAutorizacaoByNumero(cartao.getNumero())).thenReturn(Mono.empty());
+            // Act & Assert
+            assertThatThrownBy(() -> cartaoService.atualizaLimiteCartao(500L, cartao).block())
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessage(CartaoServiceImpl.CARTAO_NAO_ENCONTRADO);
+        }
+
+        @Test
+        void deveGerarExcecao_QuandoLedgerOuCombinadorLigado() {
+            // Act & Assert
+            assertThatThrownBy(() -> new CartaoServiceReativoImpl(cartaoRepository, clienteIntegracao, autorizacaoCartaoCache,
+                    Optional.of(mock(LedgerLimite.class)), Optional.empty()))
+                    .isInstanceOf(IllegalStateException.class)
+                    .hasMessage(CartaoServiceReativoImpl.LEDGER_OU_COMBINADOR_LIGADO);
+            assertThatThrownBy(() -> new CartaoServiceReativoImpl(cartaoRepository, clienteIntegracao, autorizacaoCartaoCache,
+                    Optional.empty(), Optional.of(mock(CombinadorDebito.class))))
+                    .isInstanceOf(IllegalStateException.class)
+                    .hasMessage(CartaoServiceReativoImpl.LEDGER_OU_COMBINADOR_LIGADO);
+        }
+    }
+}
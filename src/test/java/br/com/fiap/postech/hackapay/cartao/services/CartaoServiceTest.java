@@ -1,10 +1,15 @@
 package br.com.fiap.postech.hackapay.cartao.services;
 
+import br.com.fiap.postech.hackapay.cartao.dto.DebitoLimite;
+import br.com.fiap.postech.hackapay.cartao.dto.ResultadoDebito;
+import br.com.fiap.postech.hackapay.cartao.dto.SituacaoCartao;
 import br.com.fiap.postech.hackapay.cartao.entities.Cartao;
 import br.com.fiap.postech.hackapay.cartao.helper.CartaoHelper;
 import br.com.fiap.postech.hackapay.cartao.helper.ClienteHelper;
 import br.com.fiap.postech.hackapay.cartao.integration.ClienteIntegracao;
 import br.com.fiap.postech.hackapay.cartao.repository.CartaoRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -16,10 +21,20 @@ import org.springframework.data.domain.Example;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -35,12 +50,25 @@ class CartaoServiceTest {
     @Mock
     private ClienteIntegracao clienteIntegracao;
 
+    @Mock
+    private EntityManager entityManager;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private AutorizacaoCartaoCache autorizacaoCartaoCache;
+
+    private TransactionTemplate transactionTemplate;
+
     private AutoCloseable mock;
 
     @BeforeEach
     void setUp() {
         mock = MockitoAnnotations.openMocks(this);
-        cartaoService = new CartaoServiceImpl(cartaoRepository, clienteIntegracao);
+        autorizacaoCartaoCache = new AutorizacaoCartaoCache(new SimpleMeterRegistry(), 100, Duration.ofMinutes(10));
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        cartaoService = new CartaoServiceImpl(cartaoRepository, clienteIntegracao, Optional.empty(), Optional.empty(),
+                autorizacaoCartaoCache, entityManager, transactionTemplate, Runnable::run);
     }
 
     @AfterEach
@@ -59,7 +87,7 @@ class CartaoServiceTest {
             when(clienteIntegracao.getCliente(anyString(), anyString())).thenReturn(cliente);
 
             // Act
-            var cartaoSalvo = cartaoService.save(anyString(), cartao);
+            var cartaoSalvo = cartaoService.save("token", cartao);
             // Assert
             assertThat(cartaoSalvo)
                     .isInstanceOf(Cartao.class)
@@ -69,6 +97,46 @@ class CartaoServiceTest {
             verify(cartaoRepository, times(1)).save(any(Cartao.class));
         }
 
+        @Test
+        void deveConsultarClienteEmParaleloComContagemDeCartoes() {
+            // Arrange
+            var executor = Executors.newSingleThreadExecutor();
+            cartaoService = new CartaoServiceImpl(cartaoRepository, clienteIntegracao, Optional.empty(), Optional.empty(),
+                    autorizacaoCartaoCache, entityManager, transactionTemplate, executor);
+            var cartao = CartaoHelper.getCartao(false);
+            var cliente = ClienteHelper.getCliente();
+            var contagemIniciada = new CountDownLatch(1);
+            when(cartaoRepository.countByCpf(cartao.getCpf())).thenAnswer(r -> {
+                contagemIniciada.countDown();
+                return 0;
+            });
+            // o cliente so responde depois que a contagem comecou, o que so acontece se as duas correm juntas
+            when(clienteIntegracao.getCliente(anyString(), anyString()))
+                    .thenAnswer(r -> contagemIniciada.await(5, TimeUnit.SECONDS) ? cliente : null);
+            when(cartaoRepository.save(any(Cartao.class))).thenAnswer(r -> r.getArgument(0));
+            try {
+                // Act
+                var cartaoSalvo = cartaoService.save("token", cartao);
+                // Assert
+                assertThat(cartaoSalvo.getId()).isNotNull();
+                verify(cartaoRepository, times(1)).save(any(Cartao.class));
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+
+        @Test
+        void deveEncerrarExecutorDaConsultaCliente() {
+            // Arrange
+            var executor = Executors.newVirtualThreadPerTaskExecutor();
+            var servico = new CartaoServiceImpl(cartaoRepository, clienteIntegracao, Optional.empty(), Optional.empty(),
+                    autorizacaoCartaoCache, entityManager, transactionTemplate, executor);
+            // Act
+            servico.encerra();
+            // Assert
+            assertThat(executor.isTerminated()).isTrue();
+        }
+
         @Test
         void deveGerarExcecao_QuandoCadastrarCartao_clienteNaoExiste() {
             // Arrange
@@ -76,7 +144,7 @@ class CartaoServiceTest {
             when(cartaoRepository.countByCpf(cartao.getCpf())).thenReturn(0);
             when(clienteIntegracao.getCliente(anyString(), anyString())).thenReturn(null);
             // Act
-            assertThatThrownBy(() -> cartaoService.save(anyString(), cartao))
+            assertThatThrownBy(() -> cartaoService.save("token", cartao))
                     .isInstanceOf(IllegalStateException.class)
                     .hasMessage("Cliente nao cadastrado.");
             // Assert
@@ -90,7 +158,7 @@ class CartaoServiceTest {
             var cartao = CartaoHelper.getCartao(true);
             when(cartaoRepository.countByCpf(cartao.getCpf())).thenReturn(2);
             // Act
-            assertThatThrownBy(() -> cartaoService.save(anyString(), cartao))
+            assertThatThrownBy(() -> cartaoService.save("token", cartao))
                     .isInstanceOf(IllegalArgumentException.class)
                     .hasMessage("um Cliente pode ter no maximo 2 cartoes.");
             // Assert
@@ -150,6 +218,33 @@ class CartaoServiceTest {
             );
             verify(cartaoRepository, times(1)).findAll(any(Example.class), any(Pageable.class));
         }
+
+        @Test
+        void deveGerarExcecao_QuandoBuscarPorCursor_cursorInvalido() {
+            // Arrange
+            Cartao criteriosDeBusca = new Cartao();
+            // Act && Assert
+            assertThatThrownBy(() -> cartaoService.findAll("nao-e-um-cursor", 10, criteriosDeBusca))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessage("cursor invalido");
+            verifyNoInteractions(cartaoRepository);
+        }
+
+        @Test
+        void devePermitirExportarCartoes_DesanexandoCadaCartaoLido() {
+            // Arrange
+            var cartao = CartaoHelper.getCartao(true);
+            var outroCartao = CartaoHelper.getCartao(true);
+            var criteriosDeBusca = new Cartao(cartao.getCpf(), null, null, null, null);
+            when(cartaoRepository.exporta(cartao.getCpf(), null)).thenReturn(Stream.of(cartao, outroCartao));
+            List<Cartao> exportados = new ArrayList<>();
+            // Act
+            cartaoService.exporta(criteriosDeBusca, exportados::add);
+            // Assert
+            assertThat(exportados).containsExactly(cartao, outroCartao);
+            verify(entityManager, times(1)).detach(cartao);
+            verify(entityManager, times(1)).detach(outroCartao);
+        }
     }
 
     @Nested
@@ -160,14 +255,14 @@ class CartaoServiceTest {
             var cartao = CartaoHelper.getCartao(true);
             var cartaoReferencia = new Cartao(
                     cartao.getCpf(),
-                    cartao.getLimite(),
+                    cartao.getLimiteCentavos(),
                     cartao.getNumero(),
                     cartao.getDataValidade(),
                     cartao.getCvv()
             );
             var novoCartao = new Cartao(
                     cartao.getCpf(),
-                    1001D,
+                    100100L,
                     RandomStringUtils.random(20, true, true),
                     RandomStringUtils.random(20, true, true),
                     RandomStringUtils.random(20, true, true)
@@ -194,14 +289,14 @@ class CartaoServiceTest {
             var cartao = CartaoHelper.getCartao(true);
             var cartaoReferencia = new Cartao(
                     cartao.getCpf(),
-                    cartao.getLimite(),
+                    cartao.getLimiteCentavos(),
                     cartao.getNumero(),
                     cartao.getDataValidade(),
                     cartao.getCvv()
             );
             var novoCartao = new Cartao(
                     cartao.getCpf(),
-                    1001D,
+                    100100L,
                     RandomStringUtils.random(20, true, true),
                     RandomStringUtils.random(20, true, true),
                     RandomStringUtils.random(20, true, true)
@@ -229,7 +324,7 @@ class CartaoServiceTest {
 
             var cartaoReferencia = new Cartao(
                     cartao.getCpf(),
-                    cartao.getLimite(),
+                    cartao.getLimiteCentavos(),
                     cartao.getNumero(),
                     cartao.getDataValidade(),
                     cartao.getCvv()
@@ -251,6 +346,20 @@ class CartaoServiceTest {
             verify(cartaoRepository, times(1)).save(any(Cartao.class));
         }
 
+        @Test
+        void deveAlterarLimitePelaDiferenca_SemSobrescreverDebitos() {
+            // Arrange
+            var cartao = CartaoHelper.getCartao(true);
+            when(cartaoRepository.findById(cartao.getId())).thenReturn(Optional.of(cartao));
+            when(cartaoRepository.save(any(Cartao.class))).thenAnswer(r -> r.getArgument(0));
+            // Act
+            var cartaoSalvo = cartaoService.update(cartao.getId(), new Cartao(null, 150000L, null, null, null));
+            // Assert
+            assertThat(cartaoSalvo.getLimiteCentavos()).isEqualTo(150000L);
+            verify(cartaoRepository, times(1)).ajustaLimite(cartao.getId(), 50000L);
+            verify(cartaoRepository, times(1)).removeDoCache(List.of(cartao.getId()));
+        }
+
         @Test
         void deveGerarExcecao_QuandoAlterarCartaoPorId_idNaoExiste() {
             // Arrange
@@ -300,32 +409,87 @@ class CartaoServiceTest {
 
     @Nested
     class AtualizarLimite {
+        private SituacaoCartao situacao(Cartao cartao, long limiteCentavos) {
+            return new SituacaoCartao(cartao.getId(), cartao.getNumero(), cartao.getCpf(), cartao.getCvv(),
+                    cartao.getDataValidade(), limiteCentavos);
+        }
+
         @Test
         void devePermitirAlterarLimiteCartao() {
             // Arrange
             var cartao = CartaoHelper.getCartao(true);
-            when(cartaoRepository.findByNumero(cartao.getNumero())).thenReturn(Optional.of(cartao));
-            when(cartaoRepository.save(any(Cartao.class))).thenAnswer(r -> r.getArgument(0));
+            when(cartaoRepository.debitaLimiteComSituacao(cartao.getNumero(), cartao.getCpf(), cartao.getCvv(),
+                    cartao.getDataValidade(), 10000L)).thenReturn(situacao(cartao, 100000L));
             // Act
-            cartaoService.atualizaLimiteCartao(100D, cartao);
+            cartaoService.atualizaLimiteCartao(10000L, cartao);
             // Assert
-            assertThat(cartao.getLimite()).isEqualTo(900D);
+            verify(cartaoRepository, times(1)).debitaLimiteComSituacao(anyString(), anyString(), anyString(), anyString(), anyLong());
+            verify(cartaoRepository, times(1)).removeDoCache(List.of(cartao.getId()));
+            verify(cartaoRepository, never()).findAutorizacaoByNumero(anyString());
+            verify(cartaoRepository, never()).findByNumero(anyString());
+            verify(cartaoRepository, never()).save(any(Cartao.class));
+        }
 
-            verify(cartaoRepository, times(1)).findByNumero(anyString());
-            verify(cartaoRepository, times(1)).save(any(Cartao.class));
+        @Test
+        void deveRejeitarPeloCache_QuandoCartaoJaConhecidoNaoConfere() {
+            // Arrange
+            var cartao = CartaoHelper.getCartao(true);
+            when(cartaoRepository.debitaLimiteComSituacao(anyString(), anyString(), anyString(), anyString(), anyLong())).thenReturn(situacao(cartao, 100000L));
+            cartaoService.atualizaLimiteCartao(10000L, cartao);
+            var cartaoCvvErrado = CartaoHelper.getCartao(true);
+            cartaoCvvErrado.setCvv(cartao.getCvv() + "x");
+            // Act
+            cartaoService.atualizaLimiteCartao(10000L, cartao);
+            // Assert
+            assertThatThrownBy(() -> cartaoService.atualizaLimiteCartao(10000L, cartaoCvvErrado))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessage("cvv do cartao nao confere");
+            verify(cartaoRepository, times(2)).debitaLimiteComSituacao(anyString(), anyString(), anyString(), anyString(), anyLong());
+        }
+
+        @Test
+        void deveConsultarBancoNovamente_QuandoCartaoAlterado() {
+            // Arrange
+            var cartao = CartaoHelper.getCartao(true);
+            var cartaoCvvNovo = CartaoHelper.getCartao(true);
+            cartaoCvvNovo.setCvv(cartao.getCvv() + "x");
+            when(cartaoRepository.findById(cartao.getId())).thenReturn(Optional.of(cartao));
+            when(cartaoRepository.save(any(Cartao.class))).thenAnswer(r -> r.getArgument(0));
+            when(cartaoRepository.debitaLimiteComSituacao(anyString(), anyString(), anyString(), anyString(), anyLong()))
+                    .thenReturn(situacao(cartao, 100000L))
+                    .thenReturn(situacao(cartaoCvvNovo, 100000L));
+            cartaoService.atualizaLimiteCartao(10000L, cartao);
+            // Act
+            cartaoService.update(cartao.getId(), new Cartao(null, 200000L, null, null, null));
+            cartaoService.atualizaLimiteCartao(10000L, cartaoCvvNovo);
+            // Assert
+            verify(cartaoRepository, times(2)).debitaLimiteComSituacao(anyString(), anyString(), anyString(), anyString(), anyLong());
+            // os dois debitos e o ajuste de limite do update
+            verify(cartaoRepository, times(3)).removeDoCache(any());
         }
 
         @Test
         void deveGerarExcecao_QuandoAlterarLimiteCartao_cartaoNaoExiste() {
             // Arrange
             var cartao = CartaoHelper.getCartao(true);
-            when(cartaoRepository.findByNumero(cartao.getNumero())).thenReturn(Optional.empty());
+            when(cartaoRepository.debitaLimiteComSituacao(anyString(), anyString(), anyString(), anyString(), anyLong())).thenReturn(null);
             // Act && Assert
-            assertThatThrownBy(() -> cartaoService.atualizaLimiteCartao(100D, cartao))
+            assertThatThrownBy(() -> cartaoService.atualizaLimiteCartao(10000L, cartao))
                     .isInstanceOf(IllegalArgumentException.class)
                     .hasMessage("cartao nao encontrado");
-            verify(cartaoRepository, times(1)).findByNumero(anyString());
-            verify(cartaoRepository, never()).save(any(Cartao.class));
+            verify(cartaoRepository, times(1)).debitaLimiteComSituacao(anyString(), anyString(), anyString(), anyString(), anyLong());
+            verify(cartaoRepository, never()).removeDoCache(any());
+        }
+
+        @Test
+        void deveGerarExcecao_QuandoAlterarLimiteCartao_valorNegativo() {
+            // Arrange
+            var cartao = CartaoHelper.getCartao(true);
+            // Act && Assert
+            assertThatThrownBy(() -> cartaoService.atualizaLimiteCartao(-1000L, cartao))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessage("valor do debito deve ser maior que zero");
+            verify(cartaoRepository, never()).debitaLimiteComSituacao(anyString(), anyString(), anyString(), anyString(), anyLong());
         }
 
         @Test
@@ -334,13 +498,14 @@ class CartaoServiceTest {
             var cartao = CartaoHelper.getCartao(true);
             var cartaoParam = CartaoHelper.getCartao(true);
             cartaoParam.setCpf(cartaoParam.getCpf() + "x");
-            when(cartaoRepository.findByNumero(cartao.getNumero())).thenReturn(Optional.of(cartaoParam));
+            when(cartaoRepository.debitaLimiteComSituacao(anyString(), anyString(), anyString(), anyString(), anyLong())).thenReturn(situacao(cartaoParam, 100000L));
             // Act && Assert
-            assertThatThrownBy(() -> cartaoService.atualizaLimiteCartao(100D, cartao))
+            assertThatThrownBy(() -> cartaoService.atualizaLimiteCartao(10000L, cartao))
                     .isInstanceOf(IllegalArgumentException.class)
                     .hasMessage("cpf do cartao nao confere");
-            verify(cartaoRepository, times(1)).findByNumero(anyString());
-            verify(cartaoRepository, never()).save(any(Cartao.class));
+            verify(cartaoRepository, times(1)).debitaLimiteComSituacao(anyString(), anyString(), anyString(), anyString(), anyLong());
+            verify(cartaoRepository, never()).findAutorizacaoByNumero(anyString());
+            verify(cartaoRepository, never()).removeDoCache(any());
         }
 
         @Test
@@ -349,13 +514,14 @@ class CartaoServiceTest {
             var cartao = CartaoHelper.getCartao(true);
             var cartaoParam = CartaoHelper.getCartao(true);
             cartaoParam.setCvv(cartaoParam.getCvv() + "x");
-            when(cartaoRepository.findByNumero(cartao.getNumero())).thenReturn(Optional.of(cartaoParam));
+            when(cartaoRepository.debitaLimiteComSituacao(anyString(), anyString(), anyString(), anyString(), anyLong())).thenReturn(situacao(cartaoParam, 100000L));
             // Act && Assert
-            assertThatThrownBy(() -> cartaoService.atualizaLimiteCartao(100D, cartao))
+            assertThatThrownBy(() -> cartaoService.atualizaLimiteCartao(10000L, cartao))
                     .isInstanceOf(IllegalArgumentException.class)
                     .hasMessage("cvv do cartao nao confere");
-            verify(cartaoRepository, times(1)).findByNumero(anyString());
-            verify(cartaoRepository, never()).save(any(Cartao.class));
+            verify(cartaoRepository, times(1)).debitaLimiteComSituacao(anyString(), anyString(), anyString(), anyString(), anyLong());
+            verify(cartaoRepository, never()).findAutorizacaoByNumero(anyString());
+            verify(cartaoRepository, never()).removeDoCache(any());
         }
 
         @Test
@@ -364,29 +530,108 @@ class CartaoServiceTest {
             var cartao = CartaoHelper.getCartao(true);
             var cartaoParam = CartaoHelper.getCartao(true);
             cartaoParam.setDataValidade(cartaoParam.getDataValidade() + "x");
-            when(cartaoRepository.findByNumero(cartao.getNumero())).thenReturn(Optional.of(cartaoParam));
+            when(cartaoRepository.debitaLimiteComSituacao(anyString(), anyString(), anyString(), anyString(), anyLong())).thenReturn(situacao(cartaoParam, 100000L));
             // Act && Assert
-            assertThatThrownBy(() -> cartaoService.atualizaLimiteCartao(100D, cartao))
+            assertThatThrownBy(() -> cartaoService.atualizaLimiteCartao(10000L, cartao))
                     .isInstanceOf(IllegalArgumentException.class)
                     .hasMessage("data de validade do cartao nao confere");
-            verify(cartaoRepository, times(1)).findByNumero(anyString());
-            verify(cartaoRepository, never()).save(any(Cartao.class));
+            verify(cartaoRepository, times(1)).debitaLimiteComSituacao(anyString(), anyString(), anyString(), anyString(), anyLong());
+            verify(cartaoRepository, never()).findAutorizacaoByNumero(anyString());
+            verify(cartaoRepository, never()).removeDoCache(any());
         }
 
         @Test
         void deveGerarExcecao_QuandoAlterarLimiteCartao_limiteInsuficiente() {
             // Arrange
             var cartao = CartaoHelper.getCartao(true);
-            when(cartaoRepository.findByNumero(cartao.getNumero())).thenReturn(Optional.of(cartao));
+            when(cartaoRepository.debitaLimiteComSituacao(anyString(), anyString(), anyString(), anyString(), anyLong())).thenReturn(situacao(cartao, 500L));
             // Act && Assert
-            assertThatThrownBy(() -> cartaoService.atualizaLimiteCartao(10000D, cartao))
+            assertThatThrownBy(() -> cartaoService.atualizaLimiteCartao(1000000L, cartao))
                     .isInstanceOf(IllegalArgumentException.class)
                     .hasMessage("nao ha mais limite disponivel no cartao.");
-            verify(cartaoRepository, times(1)).findByNumero(anyString());
+            verify(cartaoRepository, times(1)).debitaLimiteComSituacao(anyString(), anyString(), anyString(), anyString(), anyLong());
+            verify(cartaoRepository, never()).findAutorizacaoByNumero(anyString());
+            verify(cartaoRepository, never()).removeDoCache(any());
             verify(cartaoRepository, never()).save(any(Cartao.class));
         }
     }
 
+    @Nested
+    class AtualizarLimiteLote {
+        private SituacaoCartao situacao(Cartao cartao) {
+            return new SituacaoCartao(cartao.getId(), cartao.getNumero(), cartao.getCpf(), cartao.getCvv(),
+                    cartao.getDataValidade(), cartao.getLimiteCentavos());
+        }
+
+        @Test
+        void devePermitirAlterarLimiteCartaoEmLote() {
+            // Arrange
+            var cartao = CartaoHelper.getCartao(true);
+            var cartaoCvvErrado = CartaoHelper.getCartao(false);
+            cartaoCvvErrado.setCvv("999");
+            var debitos = List.of(
+                    new DebitoLimite(60000L, cartao),
+                    new DebitoLimite(60000L, cartao),
+                    new DebitoLimite(10000L, cartaoCvvErrado),
+                    new DebitoLimite(40000L, cartao)
+            );
+            when(cartaoRepository.findByNumeroIn(anyCollection())).thenReturn(List.of(situacao(cartao)));
+            when(cartaoRepository.debitaLimiteEmLote(anyList())).thenReturn(new int[]{1, 1});
+            // Act
+            var resultados = cartaoService.atualizaLimiteCartaoLote(debitos);
+            // Assert
+            assertThat(resultados).extracting(ResultadoDebito::status).containsExactly(
+                    ResultadoDebito.Status.ACEITO,
+                    ResultadoDebito.Status.REJEITADO,
+                    ResultadoDebito.Status.REJEITADO,
+                    ResultadoDebito.Status.ACEITO
+            );
+            assertThat(resultados.get(1).motivo()).isEqualTo("nao ha mais limite disponivel no cartao.");
+            assertThat(resultados.get(2).motivo()).isEqualTo("cvv do cartao nao confere");
+            verify(cartaoRepository, times(1)).findByNumeroIn(anyCollection());
+            verify(cartaoRepository, times(1)).debitaLimiteEmLote(List.of(debitos.get(0), debitos.get(3)));
+        }
+
+        @Test
+        void deveRejeitarDebito_QuandoUpdateEmLoteNaoAlterarLinha() {
+            // Arrange
+            var cartao = CartaoHelper.getCartao(true);
+            when(cartaoRepository.findByNumeroIn(anyCollection())).thenReturn(List.of(situacao(cartao)));
+            when(cartaoRepository.debitaLimiteEmLote(anyList())).thenReturn(new int[]{0});
+            // Act
+            var resultados = cartaoService.atualizaLimiteCartaoLote(List.of(new DebitoLimite(10000L, cartao)));
+            // Assert
+            assertThat(resultados).singleElement().satisfies(resultado -> {
+                assertThat(resultado.status()).isEqualTo(ResultadoDebito.Status.REJEITADO);
+                assertThat(resultado.motivo()).isEqualTo("nao ha mais limite disponivel no cartao.");
+            });
+        }
+
+        @Test
+        void deveGerarExcecao_QuandoLoteExcederTamanhoMaximo() {
+            // Arrange
+            var cartao = CartaoHelper.getCartao(true);
+            var debitos = Collections.nCopies(501, new DebitoLimite(100L, cartao));
+            // Act && Assert
+            assertThatThrownBy(() -> cartaoService.atualizaLimiteCartaoLote(debitos))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessage("o lote pode ter no maximo 500 debitos.");
+            verify(cartaoRepository, never()).debitaLimiteEmLote(anyList());
+        }
+
+        @Test
+        void deveGerarExcecao_QuandoLoteTiverDebitoNulo() {
+            // Arrange
+            var cartao = CartaoHelper.getCartao(true);
+            var debitos = Arrays.asList(new DebitoLimite(100L, cartao), null);
+            // Act && Assert
+            assertThatThrownBy(() -> cartaoService.atualizaLimiteCartaoLote(debitos))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessage("o lote nao pode ter debitos nulos.");
+            verify(cartaoRepository, never()).debitaLimiteEmLote(anyList());
+        }
+    }
+
     @Nested
     class RemoverCartao {
         @Test
@@ -0,0 +1,196 @@
+package br.com.fiap.postech.hackapay.cartao.services;
+
+import br.com.fiap.postech.hackapay.cartao.dto.SituacaoCartao;
+import br.com.fiap.postech.hackapay.cartao.entities.Cartao;
+import br.com.fiap.postech.hackapay.cartao.helper.CartaoHelper;
+import br.com.fiap.postech.hackapay.cartao.repository.CartaoRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class CombinadorDebitoTest {
+    private static final int PEDIDOS_POR_GRUPO = 4;
+
+    @Mock
+    private CartaoRepository cartaoRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private CombinadorDebito.DebitoIndividual debitoIndividual;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private AutoCloseable mock;
+
+    @BeforeEach
+    void setUp() {
+        mock = MockitoAnnotations.openMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        mock.close();
+    }
+
+    @Test
+    void deveGravarUmUnicoUpdate_eRejeitarQuemEstourariaOLimite() throws Exception {
+        // Arrange
+        // janela longa: o grupo so fecha quando enche, sem depender do tempo de cada thread
+        var combinador = novo(Duration.ofSeconds(10));
+        var cartao = CartaoHelper.getCartao(true);
+        when(cartaoRepository.findByNumeroIn(List.of(cartao.getNumero()))).thenReturn(List.of(situacao(cartao, 100000L)));
+        when(cartaoRepository.debitaLimite(anyString(), anyString(), anyString(), anyString(), anyLong())).thenReturn(1);
+        // Act
+        List<String> motivos = new ArrayList<>();
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<String>> resultados = new ArrayList<>();
+            for (int i = 0; i < PEDIDOS_POR_GRUPO; i++) {
+                Callable<String> pedido = () -> combinador.debita(30000L, cartao, debitoIndividual);
+                resultados.add(executor.submit(pedido));
+            }
+            for (var resultado : resultados) {
+                motivos.add(resultado.get());
+            }
+        }
+        // Assert
+        assertThat(motivos).filteredOn(motivo -> motivo == null).hasSize(3);
+        assertThat(motivos).filteredOn(motivo -> motivo != null).containsExactly("nao ha mais limite disponivel no cartao.");
+        verify(cartaoRepository, times(1)).debitaLimite(cartao.getNumero(), cartao.getCpf(), cartao.getCvv(),
+                cartao.getDataValidade(), 90000L);
+        verify(cartaoRepository, times(1)).removeDoCache(List.of(cartao.getId()));
+        verifyNoInteractions(debitoIndividual);
+        // so os pedidos aceitos entram na metrica
+        assertThat(meterRegistry.get("hackapay.cartao.combinador.grupo").summary().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("hackapay.cartao.combinador.grupo").summary().totalAmount()).isEqualTo(3);
+    }
+
+    @Test
+    void deveUsarDebitoIndividual_QuandoPedidoChegarSozinho() {
+        // Arrange
+        var combinador = novo(Duration.ofMillis(1));
+        var cartao = CartaoHelper.getCartao(true);
+        when(debitoIndividual.debita(10000L, cartao)).thenReturn(null);
+        // Act
+        var motivo = combinador.debita(10000L, cartao, debitoIndividual);
+        // Assert
+        assertThat(motivo).isNull();
+        verify(debitoIndividual, times(1)).debita(10000L, cartao);
+        verify(cartaoRepository, never()).findByNumeroIn(any());
+    }
+
+    @Test
+    void deveAplicarNaOrdemDeChegada_eRejeitarSoOsPedidosInvalidos() {
+        // Arrange
+        var cartao = CartaoHelper.getCartao(true);
+        var cvvErrado = CartaoHelper.getCartao(false);
+        cvvErrado.setCvv("999");
+        var pedidos = List.of(
+                new CombinadorDebito.Pedido(60000L, cartao),
+                new CombinadorDebito.Pedido(10000L, cvvErrado),
+                new CombinadorDebito.Pedido(50000L, cartao),
+                new CombinadorDebito.Pedido(30000L, cartao));
+        var motivos = new String[pedidos.size()];
+        // Act
+        var total = CombinadorDebito.planeja(situacao(cartao, 100000L), pedidos, motivos);
+        // Assert
+        assertThat(total).isEqualTo(90000L);
+        assertThat(motivos).containsExactly(null, "cvv do cartao nao confere",
+                "nao ha mais limite disponivel no cartao.", null);
+    }
+
+    @Test
+    void deveRejeitarTodos_QuandoCartaoNaoExistir() {
+        // Arrange
+        var cartao = CartaoHelper.getCartao(true);
+        var pedidos = List.of(new CombinadorDebito.Pedido(10000L, cartao), new CombinadorDebito.Pedido(10000L, cartao));
+        var motivos = new String[pedidos.size()];
+        // Act
+        var total = CombinadorDebito.planeja(null, pedidos, motivos);
+        // Assert
+        assertThat(total).isZero();
+        assertThat(motivos).containsOnly("cartao nao encontrado");
+    }
+
+    @Test
+    void deveRecorrerAoDebitoIndividual_QuandoUpdateDoGrupoFalhar() throws Exception {
+        // Arrange
+        var combinador = novo(Duration.ofSeconds(10));
+        var cartao = CartaoHelper.getCartao(true);
+        when(cartaoRepository.findByNumeroIn(List.of(cartao.getNumero()))).thenReturn(List.of(situacao(cartao, 100000L)));
+        // outro debito sempre vence a corrida entre a leitura e o update do grupo
+        when(cartaoRepository.debitaLimite(anyString(), anyString(), anyString(), anyString(), anyLong())).thenReturn(0);
+        when(debitoIndividual.debita(anyLong(), any(Cartao.class))).thenReturn(null);
+        // Act
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<String>> resultados = new ArrayList<>();
+            for (int i = 0; i < PEDIDOS_POR_GRUPO; i++) {
+                Callable<String> pedido = () -> combinador.debita(10000L, cartao, debitoIndividual);
+                resultados.add(executor.submit(pedido));
+            }
+            for (var resultado : resultados) {
+                assertThat(resultado.get()).isNull();
+            }
+        }
+        // Assert
+        verify(cartaoRepository, times(3)).debitaLimite(anyString(), anyString(), anyString(), anyString(), eq(40000L));
+        verify(debitoIndividual, times(PEDIDOS_POR_GRUPO)).debita(10000L, cartao);
+    }
+
+    @Test
+    void deveLiberarTodosOsPedidos_QuandoLiderLancarError() throws Exception {
+        // Arrange
+        var combinador = novo(Duration.ofSeconds(10));
+        var cartao = CartaoHelper.getCartao(true);
+        when(cartaoRepository.findByNumeroIn(List.of(cartao.getNumero()))).thenThrow(new AssertionError("falhou"));
+        // Act
+        List<Throwable> falhas = new ArrayList<>();
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<String>> resultados = new ArrayList<>();
+            for (int i = 0; i < PEDIDOS_POR_GRUPO; i++) {
+                Callable<String> pedido = () -> combinador.debita(10000L, cartao, debitoIndividual);
+                resultados.add(executor.submit(pedido));
+            }
+            for (var resultado : resultados) {
+                assertThatThrownBy(() -> resultado.get(5, TimeUnit.SECONDS))
+                        .isInstanceOf(ExecutionException.class)
+                        .satisfies(falha -> falhas.add(falha.getCause()));
+            }
+        }
+        // Assert
+        assertThat(falhas).filteredOn(falha -> falha instanceof AssertionError).hasSize(1);
+        assertThat(falhas).filteredOn(falha -> falha instanceof IllegalStateException).hasSize(PEDIDOS_POR_GRUPO - 1);
+        verifyNoInteractions(debitoIndividual);
+    }
+
+    private CombinadorDebito novo(Duration janela) {
+        return new CombinadorDebito(cartaoRepository, new TransactionTemplate(transactionManager), meterRegistry,
+                janela, PEDIDOS_POR_GRUPO);
+    }
+
+    private static SituacaoCartao situacao(Cartao cartao, long limiteCentavos) {
+        return new SituacaoCartao(cartao.getId(), cartao.getNumero(), cartao.getCpf(), cartao.getCvv(),
+                cartao.getDataValidade(), limiteCentavos);
+    }
+}
@@ -0,0 +1,47 @@
+package br.com.fiap.postech.hackapay.cartao.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class GeradorUuidTest {
+
+    @Test
+    void deveGerarUuidVersao7() {
+        // Act
+        var uuid = GeradorUuid.novo();
+        // Assert
+        assertThat(uuid.version()).isEqualTo(7);
+        assertThat(uuid.variant()).isEqualTo(2);
+        assertThat(uuid.getMostSignificantBits() >>> 16).isCloseTo(System.currentTimeMillis(), within(1000L));
+    }
+
+    @Test
+    void deveGerarUuidsCrescentes() {
+        // Arrange
+        var anterior = GeradorUuid.novo();
+        for (int i = 0; i < 100_000; i++) {
+            // Act
+            var atual = GeradorUuid.novo();
+            // Assert
+            assertThat(atual.getMostSignificantBits()).isGreaterThan(anterior.getMostSignificantBits());
+            anterior = atual;
+        }
+    }
+
+    @Test
+    void naoDeveRepetirUuids_QuandoGeradosEmParalelo() {
+        // Arrange
+        Set<UUID> gerados = ConcurrentHashMap.newKeySet();
+        // Act
+        IntStream.range(0, 200_000).parallel().forEach(i -> gerados.add(GeradorUuid.novo()));
+        // Assert
+        assertThat(gerados).hasSize(200_000);
+    }
+}
@@ -0,0 +1,177 @@
+package br.com.fiap.postech.hackapay.cartao.services;
+
+import br.com.fiap.postech.hackapay.cartao.dto.ResultadoDebito;
+import br.com.fiap.postech.hackapay.cartao.entities.Cartao;
+import br.com.fiap.postech.hackapay.cartao.entities.Idempotencia;
+import br.com.fiap.postech.hackapay.cartao.helper.CartaoHelper;
+import br.com.fiap.postech.hackapay.cartao.repository.IdempotenciaRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class IdempotenciaServiceTest {
+    private static final String TITULAR = "umUsuarioQualquer";
+
+    private IdempotenciaService idempotenciaService;
+
+    @Mock
+    private CartaoService cartaoService;
+
+    @Mock
+    private IdempotenciaRepository idempotenciaRepository;
+
+    private AutoCloseable mock;
+
+    @BeforeEach
+    void setUp() {
+        mock = MockitoAnnotations.openMocks(this);
+        when(idempotenciaRepository.saveAndFlush(any(Idempotencia.class))).thenAnswer(r -> r.getArgument(0));
+        idempotenciaService = new IdempotenciaServiceImpl(cartaoService, idempotenciaRepository, 1000, Duration.ofHours(1));
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        mock.close();
+    }
+
+    @Test
+    void deveDebitarUmaVez_QuandoChaveRepetida() {
+        // Arrange
+        var cartao = CartaoHelper.getCartao(false);
+        when(idempotenciaRepository.findById(anyString())).thenReturn(Optional.empty());
+        // Act
+        var primeiro = idempotenciaService.atualizaLimiteCartao(TITULAR, "chave", 10000L, cartao);
+        var segundo = idempotenciaService.atualizaLimiteCartao(TITULAR, "chave", 10000L, cartao);
+        // Assert
+        assertThat(primeiro.status()).isEqualTo(ResultadoDebito.Status.ACEITO);
+        assertThat(segundo).isEqualTo(primeiro);
+        verify(cartaoService, times(1)).atualizaLimiteCartao(anyLong(), any(Cartao.class));
+        verify(idempotenciaRepository, times(1)).findById(anyString());
+        verify(idempotenciaRepository, times(1)).saveAndFlush(any(Idempotencia.class));
+        verify(idempotenciaRepository, times(1)).save(argThat(Idempotencia::isAceito));
+    }
+
+    @Test
+    void deveGravarChaveAntesDeDebitar() {
+        // Arrange
+        var cartao = CartaoHelper.getCartao(false);
+        when(idempotenciaRepository.findById(anyString())).thenReturn(Optional.empty());
+        var ordem = inOrder(idempotenciaRepository, cartaoService);
+        // Act
+        idempotenciaService.atualizaLimiteCartao(TITULAR, "chave", 10000L, cartao);
+        // Assert
+        ordem.verify(idempotenciaRepository).saveAndFlush(any(Idempotencia.class));
+        ordem.verify(cartaoService).atualizaLimiteCartao(anyLong(), any(Cartao.class));
+        ordem.verify(idempotenciaRepository).save(any(Idempotencia.class));
+    }
+
+    @Test
+    void naoDeveDebitar_QuandoGravarChaveFalhar() {
+        // Arrange
+        var cartao = CartaoHelper.getCartao(false);
+        when(idempotenciaRepository.findById(anyString())).thenReturn(Optional.empty());
+        when(idempotenciaRepository.saveAndFlush(any(Idempotencia.class)))
+                .thenThrow(new DataIntegrityViolationException("chave duplicada"));
+        // Act && Assert
+        assertThatThrownBy(() -> idempotenciaService.atualizaLimiteCartao(TITULAR, "chave", 10000L, cartao))
+                .isInstanceOf(DataIntegrityViolationException.class);
+        verify(cartaoService, never()).atualizaLimiteCartao(anyLong(), any(Cartao.class));
+    }
+
+    @Test
+    void deveRegistrarRejeicao_QuandoDebitoFalhar() {
+        // Arrange
+        var cartao = CartaoHelper.getCartao(false);
+        when(idempotenciaRepository.findById(anyString())).thenReturn(Optional.empty());
+        doThrow(new IllegalArgumentException("nao ha mais limite disponivel no cartao."))
+                .when(cartaoService).atualizaLimiteCartao(anyLong(), any(Cartao.class));
+        // Act
+        var primeiro = idempotenciaService.atualizaLimiteCartao(TITULAR, "chave", 10000L, cartao);
+        var segundo = idempotenciaService.atualizaLimiteCartao(TITULAR, "chave", 10000L, cartao);
+        // Assert
+        assertThat(primeiro.status()).isEqualTo(ResultadoDebito.Status.REJEITADO);
+        assertThat(primeiro.motivo()).isEqualTo("nao ha mais limite disponivel no cartao.");
+        assertThat(segundo).isEqualTo(primeiro);
+        verify(cartaoService, times(1)).atualizaLimiteCartao(anyLong(), any(Cartao.class));
+    }
+
+    @Test
+    void deveDevolverResultadoGravado_QuandoChaveNaoEstiverEmMemoria() {
+        // Arrange
+        var cartao = CartaoHelper.getCartao(false);
+        when(idempotenciaRepository.findById(anyString()))
+                .thenReturn(Optional.of(new Idempotencia("chave", assinatura(TITULAR, cartao, 10000L), true, null)));
+        // Act
+        var resultado = idempotenciaService.atualizaLimiteCartao(TITULAR, "chave", 10000L, cartao);
+        // Assert
+        assertThat(resultado.status()).isEqualTo(ResultadoDebito.Status.ACEITO);
+        verify(cartaoService, never()).atualizaLimiteCartao(anyLong(), any(Cartao.class));
+        verify(idempotenciaRepository, never()).saveAndFlush(any(Idempotencia.class));
+    }
+
+    @Test
+    void deveGerarExcecao_QuandoChaveReutilizadaComOutroValor() {
+        // Arrange
+        var cartao = CartaoHelper.getCartao(false);
+        when(idempotenciaRepository.findById(anyString())).thenReturn(Optional.empty());
+        idempotenciaService.atualizaLimiteCartao(TITULAR, "chave", 10000L, cartao);
+        // Act && Assert
+        assertThatThrownBy(() -> idempotenciaService.atualizaLimiteCartao(TITULAR, "chave", 20000L, cartao))
+                .isInstanceOf(ChaveIdempotenciaReutilizadaException.class);
+        verify(cartaoService, times(1)).atualizaLimiteCartao(anyLong(), any(Cartao.class));
+    }
+
+    @Test
+    void deveGerarExcecao_QuandoChaveGravadaPertencerAOutroCartao() {
+        // Arrange
+        var cartao = CartaoHelper.getCartao(false);
+        var outroCartao = CartaoHelper.getCartao(false);
+        outroCartao.setNumero("4417810025751026");
+        when(idempotenciaRepository.findById(anyString()))
+                .thenReturn(Optional.of(new Idempotencia("chave", assinatura(TITULAR, outroCartao, 10000L), true, null)));
+        // Act && Assert
+        assertThatThrownBy(() -> idempotenciaService.atualizaLimiteCartao(TITULAR, "chave", 10000L, cartao))
+                .isInstanceOf(ChaveIdempotenciaReutilizadaException.class);
+        verify(cartaoService, never()).atualizaLimiteCartao(anyLong(), any(Cartao.class));
+    }
+
+    @Test
+    void deveDebitarDeNovo_QuandoMesmaChaveVierDeOutroTitular() {
+        // Arrange
+        var cartao = CartaoHelper.getCartao(false);
+        when(idempotenciaRepository.findById(anyString())).thenReturn(Optional.empty());
+        // Act
+        idempotenciaService.atualizaLimiteCartao(TITULAR, "chave", 10000L, cartao);
+        idempotenciaService.atualizaLimiteCartao("outroUsuario", "chave", 10000L, cartao);
+        // Assert
+        verify(cartaoService, times(2)).atualizaLimiteCartao(anyLong(), any(Cartao.class));
+        verify(idempotenciaRepository, times(2)).findById(anyString());
+    }
+
+    @Test
+    void deveGerarExcecao_QuandoChaveMuitoLonga() {
+        // Arrange
+        var cartao = CartaoHelper.getCartao(false);
+        var chave = "x".repeat(65);
+        // Act && Assert
+        assertThatThrownBy(() -> idempotenciaService.atualizaLimiteCartao(TITULAR, chave, 10000L, cartao))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Idempotency-Key deve ter entre 1 e 64 caracteres.");
+        verify(cartaoService, never()).atualizaLimiteCartao(anyLong(), any(Cartao.class));
+    }
+
+    private static String assinatura(String titular, Cartao cartao, long valorCentavos) {
+        return IdempotenciaServiceImpl.sha256(titular, cartao.getNumero(), Long.toString(valorCentavos));
+    }
+}
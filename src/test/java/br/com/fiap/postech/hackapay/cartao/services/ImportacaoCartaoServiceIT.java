@@ -0,0 +1,71 @@
+package br.com.fiap.postech.hackapay.cartao.services;
+
+import br.com.fiap.postech.hackapay.cartao.dto.FormatoImportacao;
+import br.com.fiap.postech.hackapay.cartao.helper.ClienteHelper;
+import br.com.fiap.postech.hackapay.cartao.integration.ClienteIntegracao;
+import br.com.fiap.postech.hackapay.cartao.repository.CartaoRepository;
+import org.apache.commons.lang3.RandomStringUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+/*
+ * Sem @Transactional: a importacao abre e confirma uma transacao por lote.
+ */
+@SpringBootTest
+@AutoConfigureTestDatabase
+@ActiveProfiles("test")
+public class ImportacaoCartaoServiceIT {
+    private static final String CPF = RandomStringUtils.randomNumeric(11);
+
+    @Autowired
+    private ImportacaoCartaoService importacaoCartaoService;
+    @Autowired
+    private CartaoRepository cartaoRepository;
+    @MockBean
+    private ClienteIntegracao clienteIntegracao;
+
+    @AfterEach
+    void tearDown() {
+        cartaoRepository.findAll().stream()
+                .filter(cartao -> CPF.equals(cartao.getCpf()) || "80346534038".equals(cartao.getCpf())
+                        && !"4417810025751018".equals(cartao.getNumero()))
+                .forEach(cartaoRepository::delete);
+    }
+
+    @Test
+    void devePermitirImportarCartoes_RespeitandoLimiteDeCartoesPorCliente() throws Exception {
+        // Arrange
+        when(clienteIntegracao.getCliente(anyString(), anyString())).thenReturn(ClienteHelper.getCliente());
+        var csv = String.join("\n",
+                "cpf,numero,data_validade,cvv,limite",
+                CPF + "," + RandomStringUtils.randomNumeric(16) + ",12/30,123,1000.00",
+                CPF + "," + RandomStringUtils.randomNumeric(16) + ",12/30,123,1000.00",
+                CPF + "," + RandomStringUtils.randomNumeric(16) + ",12/30,123,1000.00",
+                "80346534038," + RandomStringUtils.randomNumeric(16) + ",12/30,123,1000.00",
+                "80346534038," + RandomStringUtils.randomNumeric(16) + ",12/30,123,1000.00",
+                "61908619031,4417810025751018,12/30,123,1000.00");
+        // Act
+        var resultado = importacaoCartaoService.importa("token", FormatoImportacao.CSV,
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)));
+        // Assert
+        assertThat(resultado.importados()).isEqualTo(3);
+        assertThat(resultado.rejeitados()).isEqualTo(3);
+        assertThat(cartaoRepository.countByCpf(CPF)).isEqualTo(2);
+        assertThat(cartaoRepository.countByCpf("80346534038")).isEqualTo(2);
+        assertThat(cartaoRepository.findByNumero("4417810025751018").orElseThrow().getCpf()).isEqualTo("80346534038");
+        assertThat(Files.readAllLines(importacaoCartaoService.relatorioRejeitados(resultado.id()))).hasSize(4);
+    }
+}
@@ -0,0 +1,264 @@
+package br.com.fiap.postech.hackapay.cartao.services;
+
+import br.com.fiap.postech.hackapay.cartao.dto.FormatoImportacao;
+import br.com.fiap.postech.hackapay.cartao.entities.Cartao;
+import br.com.fiap.postech.hackapay.cartao.helper.ClienteHelper;
+import br.com.fiap.postech.hackapay.cartao.integration.ClienteIntegracao;
+import br.com.fiap.postech.hackapay.cartao.repository.CartaoRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class ImportacaoCartaoServiceTest {
+    private ImportacaoCartaoServiceImpl importacaoCartaoService;
+
+    @Mock
+    private CartaoRepository cartaoRepository;
+
+    @Mock
+    private ClienteIntegracao clienteIntegracao;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @TempDir
+    private Path diretorio;
+
+    private AutoCloseable mock;
+
+    @BeforeEach
+    void setUp() {
+        mock = MockitoAnnotations.openMocks(this);
+        importacaoCartaoService = new ImportacaoCartaoServiceImpl(cartaoRepository, clienteIntegracao,
+                new ObjectMapper(), new TransactionTemplate(transactionManager), 2, 4,
+                diretorio.toString(), Duration.ofHours(24));
+        when(clienteIntegracao.getCliente(anyString(), anyString())).thenReturn(ClienteHelper.getCliente());
+        when(cartaoRepository.contaPorCpf(any())).thenReturn(Map.of());
+        when(cartaoRepository.numerosCadastrados(any())).thenReturn(Set.of());
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        mock.close();
+    }
+
+    private static InputStream corpo(String... linhas) {
+        return new ByteArrayInputStream(String.join("\n", linhas).getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Nested
+    class ImportarCartoes {
+        @Test
+        void devePermitirImportarCsv_GravandoEmLotes() {
+            // Arrange
+            var csv = corpo(
+                    "cpf,numero,data_validade,cvv,limite",
+                    "11111111111,4417810000000001,12/30,123,1000.00",
+                    "22222222222,4417810000000002,12/30,123,1000.50",
+                    "33333333333,4417810000000003,12/30,123,10");
+            // Act
+            var resultado = importacaoCartaoService.importa("token", FormatoImportacao.CSV, csv);
+            // Assert
+            assertThat(resultado.recebidos()).isEqualTo(3);
+            assertThat(resultado.importados()).isEqualTo(3);
+            assertThat(resultado.rejeitados()).isZero();
+            ArgumentCaptor<List<Cartao>> lotes = ArgumentCaptor.forClass(List.class);
+            verify(cartaoRepository, times(2)).insereEmLote(lotes.capture());
+            assertThat(lotes.getAllValues()).extracting(List::size).containsExactly(2, 1);
+            assertThat(lotes.getAllValues().get(0).get(1).getLimiteCentavos()).isEqualTo(100050L);
+            assertThat(lotes.getAllValues().get(0)).allSatisfy(cartao -> assertThat(cartao.getId()).isNotNull());
+        }
+
+        @Test
+        void devePermitirImportarCsv_ComCamposEntreAspas() {
+            // Arrange
+            var csv = corpo(
+                    "cpf,\"nome\",numero,data_validade,cvv,limite,observacao",
+                    "11111111111,\"Silva, Joao\",4417810000000001,12/30,123,\"1000.00\",",
+                    "22222222222,\"Souza \"\"Ze\"\", Maria\",4417810000000002,12/30,123,10,\"a, b\"",
+                    "33333333333,\"Lima, Ana,4417810000000003,12/30,123,10,");
+            // Act
+            var resultado = importacaoCartaoService.importa("token", FormatoImportacao.CSV, csv);
+            // Assert
+            assertThat(resultado.recebidos()).isEqualTo(3);
+            assertThat(resultado.importados()).isEqualTo(2);
+            assertThat(resultado.rejeitados()).isEqualTo(1);
+            ArgumentCaptor<List<Cartao>> lotes = ArgumentCaptor.forClass(List.class);
+            verify(cartaoRepository, times(1)).insereEmLote(lotes.capture());
+            assertThat(lotes.getValue()).extracting(Cartao::getNumero)
+                    .containsExactly("4417810000000001", "4417810000000002");
+            assertThat(lotes.getValue().get(0).getLimiteCentavos()).isEqualTo(100000L);
+        }
+
+        @Test
+        void devePermitirImportarNdjson() {
+            // Arrange
+            var ndjson = corpo(
+                    "{\"cpf\":\"11111111111\",\"numero\":\"4417810000000001\",\"data_validade\":\"12/30\",\"cvv\":\"123\",\"limite\":1000}",
+                    "",
+                    "{\"cpf\":\"22222222222\",\"numero\":\"4417810000000002\",\"data_validade\":\"12/30\",\"cvv\":\"123\",\"limite\":1000.123}");
+            // Act
+            var resultado = importacaoCartaoService.importa("token", FormatoImportacao.NDJSON, ndjson);
+            // Assert
+            assertThat(resultado.recebidos()).isEqualTo(2);
+            assertThat(resultado.importados()).isEqualTo(1);
+            assertThat(resultado.rejeitados()).isEqualTo(1);
+        }
+
+        @Test
+        void deveRejeitarLinhas_QuandoViolaremRegrasDoCadastro() throws Exception {
+            // Arrange
+            when(cartaoRepository.contaPorCpf(any())).thenReturn(Map.of("11111111111", 1L));
+            when(cartaoRepository.numerosCadastrados(any())).thenReturn(Set.of("4417810000000009"));
+            when(clienteIntegracao.getCliente(anyString(), eq("44444444444"))).thenReturn(null);
+            var csv = corpo(
+                    "numero,cpf,cvv,data_validade,limite",
+                    "4417810000000001,11111111111,123,12/30,10",
+                    "4417810000000002,11111111111,123,12/30,10",
+                    "4417810000000009,22222222222,123,12/30,10",
+                    "4417810000000004,44444444444,123,12/30,10",
+                    "4417810000000005,5555555555,123,12/30,10",
+                    "4417810000000006,66666666666,123,13/30,10",
+                    "4417810000000007,77777777777,123,12/30,abc");
+            // Act
+            var resultado = importacaoCartaoService.importa("token", FormatoImportacao.CSV, csv);
+            // Assert
+            assertThat(resultado.recebidos()).isEqualTo(7);
+            assertThat(resultado.importados()).isEqualTo(1);
+            assertThat(resultado.rejeitados()).isEqualTo(6);
+            var relatorio = Files.readAllLines(importacaoCartaoService.relatorioRejeitados(resultado.id()));
+            assertThat(relatorio).containsExactly(
+                    "linha,motivo,conteudo",
+                    "3,\"um Cliente pode ter no maximo 2 cartoes.\",\"4417810000000002,11111111111,123,12/30,10\"",
+                    "4,\"ja existe um cartao cadastrado com este numero\",\"4417810000000009,22222222222,123,12/30,10\"",
+                    "5,\"Cliente nao cadastrado.\",\"4417810000000004,44444444444,123,12/30,10\"",
+                    "6,\"cpf invalido\",\"4417810000000005,5555555555,123,12/30,10\"",
+                    "7,\"data de validade invalida\",\"4417810000000006,66666666666,123,13/30,10\"",
+                    "8,\"limite invalido\",\"4417810000000007,77777777777,123,12/30,abc\"");
+        }
+
+        @Test
+        void deveConferirLoteNovamente_QuandoCadastroConcorrenteViolarChaveUnica() {
+            // Arrange
+            when(cartaoRepository.insereEmLote(any()))
+                    .thenThrow(new DuplicateKeyException("ux_cartao_numero"))
+                    .thenReturn(new int[]{1});
+            when(cartaoRepository.numerosCadastrados(any()))
+                    .thenReturn(Set.of())
+                    .thenReturn(Set.of("4417810000000001"));
+            var csv = corpo(
+                    "cpf,numero,data_validade,cvv,limite",
+                    "11111111111,4417810000000001,12/30,123,10",
+                    "22222222222,4417810000000002,12/30,123,10");
+            // Act
+            var resultado = importacaoCartaoService.importa("token", FormatoImportacao.CSV, csv);
+            // Assert
+            assertThat(resultado.importados()).isEqualTo(1);
+            assertThat(resultado.rejeitados()).isEqualTo(1);
+            verify(cartaoRepository, times(2)).insereEmLote(any());
+        }
+
+        @Test
+        void deveGerarExcecao_QuandoCsvNaoTiverCabecalho() {
+            // Arrange
+            var csv = corpo("11111111111,4417810000000001,12/30,123,10");
+            // Act && Assert
+            assertThatThrownBy(() -> importacaoCartaoService.importa("token", FormatoImportacao.CSV, csv))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessage(ImportacaoCartaoServiceImpl.CABECALHO_INVALIDO);
+            verifyNoInteractions(cartaoRepository);
+        }
+
+        @Test
+        void deveLimitarConsultasAoCliente_SomandoImportacoesSimultaneas() throws Exception {
+            // Arrange
+            var servico = new ImportacaoCartaoServiceImpl(cartaoRepository, clienteIntegracao,
+                    new ObjectMapper(), new TransactionTemplate(transactionManager), 20, 4,
+                    diretorio.toString(), Duration.ofHours(24));
+            var emAndamento = new AtomicInteger();
+            var maximo = new AtomicInteger();
+            when(clienteIntegracao.getCliente(anyString(), anyString())).thenAnswer(invocacao -> {
+                maximo.accumulateAndGet(emAndamento.incrementAndGet(), Math::max);
+                Thread.sleep(2);
+                emAndamento.decrementAndGet();
+                return ClienteHelper.getCliente();
+            });
+            // Act
+            try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                var importacoes = List.of(
+                        executor.submit(() -> servico.importa("token", FormatoImportacao.CSV, csvComCpfsDistintos(1))),
+                        executor.submit(() -> servico.importa("token", FormatoImportacao.CSV, csvComCpfsDistintos(2))));
+                for (var importacao : importacoes) {
+                    assertThat(importacao.get(10, TimeUnit.SECONDS).importados()).isEqualTo(20);
+                }
+            }
+            // Assert
+            assertThat(maximo.get()).isLessThanOrEqualTo(4);
+        }
+
+        private static InputStream csvComCpfsDistintos(int prefixo) {
+            var linhas = new ArrayList<String>();
+            linhas.add("cpf,numero,data_validade,cvv,limite");
+            for (int i = 0; i < 20; i++) {
+                linhas.add(String.format("%d%010d,44178%d%010d,12/30,123,10", prefixo, i, prefixo, i));
+            }
+            return corpo(linhas.toArray(String[]::new));
+        }
+    }
+
+    @Nested
+    class RelatorioRejeitados {
+        @Test
+        void deveGerarExcecao_QuandoRelatorioNaoExistir() {
+            // Act && Assert
+            assertThatThrownBy(() -> importacaoCartaoService.relatorioRejeitados(UUID.randomUUID()))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessage("relatorio de importacao nao encontrado");
+        }
+
+        @Test
+        void deveRemoverRelatoriosExpirados() throws Exception {
+            // Arrange
+            var resultado = importacaoCartaoService.importa("token", FormatoImportacao.CSV,
+                    corpo("cpf,numero,data_validade,cvv,limite"));
+            var relatorio = importacaoCartaoService.relatorioRejeitados(resultado.id());
+            Files.setLastModifiedTime(relatorio, FileTime.from(Instant.now().minus(Duration.ofDays(2))));
+            // Act
+            importacaoCartaoService.removeRelatoriosExpirados();
+            // Assert
+            assertThat(relatorio).doesNotExist();
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package br.com.fiap.postech.hackapay.cartao.services;
+
+import br.com.fiap.postech.hackapay.cartao.helper.CartaoHelper;
+import br.com.fiap.postech.hackapay.cartao.repository.CartaoRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class LedgerLimiteTest {
+    private LedgerLimite ledgerLimite;
+
+    @Mock
+    private CartaoRepository cartaoRepository;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private AutoCloseable mock;
+
+    @BeforeEach
+    void setUp() {
+        mock = MockitoAnnotations.openMocks(this);
+        ledgerLimite = new LedgerLimite(cartaoRepository, jdbcTemplate,
+                new TransactionTemplate(transactionManager), Duration.ofMillis(200));
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        mock.close();
+    }
+
+    @Test
+    void deveDebitarEmMemoria_eGravarTotalNoFlush() {
+        // Arrange
+        var cartao = CartaoHelper.getCartao(true);
+        when(cartaoRepository.findByNumero(cartao.getNumero())).thenReturn(Optional.of(CartaoHelper.getCartao(true)));
+        // Act
+        ledgerLimite.debita(10000L, cartao);
+        ledgerLimite.debita(25000L, cartao);
+        ledgerLimite.flush();
+        // Assert
+        ArgumentCaptor<List<Object[]>> lote = ArgumentCaptor.forClass(List.class);
+        verify(cartaoRepository, times(1)).findByNumero(anyString());
+        verify(jdbcTemplate, times(1)).batchUpdate(anyString(), lote.capture());
+        assertThat(lote.getValue()).hasSize(1);
+        assertThat(lote.getValue().get(0)).containsExactly(35000L, cartao.getNumero());
+    }
+
+    @Test
+    void naoDeveGravarNoFlush_QuandoNaoHouverDebitoPendente() {
+        // Arrange
+        var cartao = CartaoHelper.getCartao(true);
+        when(cartaoRepository.findByNumero(cartao.getNumero())).thenReturn(Optional.of(CartaoHelper.getCartao(true)));
+        ledgerLimite.debita(10000L, cartao);
+        ledgerLimite.flush();
+        // Act
+        ledgerLimite.flush();
+        // Assert
+        verify(jdbcTemplate, times(1)).batchUpdate(anyString(), any(List.class));
+    }
+
+    @Test
+    void deveGerarExcecao_QuandoDebitarAlemDoLimite() {
+        // Arrange
+        var cartao = CartaoHelper.getCartao(true);
+        when(cartaoRepository.findByNumero(cartao.getNumero())).thenReturn(Optional.of(CartaoHelper.getCartao(true)));
+        ledgerLimite.debita(90000L, cartao);
+        // Act && Assert
+        assertThatThrownBy(() -> ledgerLimite.debita(10001L, cartao))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("nao ha mais limite disponivel no cartao.");
+    }
+
+    @Test
+    void deveGerarExcecao_QuandoCvvNaoConfere() {
+        // Arrange
+        var cartao = CartaoHelper.getCartao(true);
+        cartao.setCvv(cartao.getCvv() + "x");
+        when(cartaoRepository.findByNumero(cartao.getNumero())).thenReturn(Optional.of(CartaoHelper.getCartao(true)));
+        // Act && Assert
+        assertThatThrownBy(() -> ledgerLimite.debita(10000L, cartao))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("cvv do cartao nao confere");
+    }
+
+    @Test
+    void deveRecarregarDoBanco_QuandoCartaoForDescartado() {
+        // Arrange
+        var cartao = CartaoHelper.getCartao(true);
+        when(cartaoRepository.findByNumero(cartao.getNumero())).thenReturn(Optional.of(CartaoHelper.getCartao(true)));
+        ledgerLimite.debita(10000L, cartao);
+        // Act
+        ledgerLimite.descarta(cartao.getNumero());
+        ledgerLimite.libera(cartao.getNumero());
+        ledgerLimite.debita(10000L, cartao);
+        // Assert
+        verify(cartaoRepository, times(2)).findByNumero(anyString());
+        verify(jdbcTemplate, times(1)).batchUpdate(anyString(), any(List.class));
+    }
+
+    @Test
+    void deveEsperarFlushEmAndamento_eManterDebito_QuandoGravacaoFalhar() throws Exception {
+        // Arrange
+        var cartao = CartaoHelper.getCartao(true);
+        when(cartaoRepository.findByNumero(cartao.getNumero())).thenReturn(Optional.of(CartaoHelper.getCartao(true)));
+        ledgerLimite.debita(10000L, cartao);
+        var gravando = new CountDownLatch(1);
+        var falhaGravacao = new CountDownLatch(1);
+        when(jdbcTemplate.batchUpdate(anyString(), any(List.class)))
+                .thenAnswer(r -> {
+                    gravando.countDown();
+                    falhaGravacao.await();
+                    throw new DataAccessResourceFailureException("banco indisponivel");
+                })
+                .thenReturn(new int[]{1});
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            var flush = executor.submit(ledgerLimite::flush);
+            gravando.await();
+            // Act
+            var descarte = executor.submit(() -> ledgerLimite.descarta(cartao.getNumero()));
+            // Assert
+            assertThatThrownBy(() -> descarte.get(200, TimeUnit.MILLISECONDS)).isInstanceOf(TimeoutException.class);
+            falhaGravacao.countDown();
+            flush.get(5, TimeUnit.SECONDS);
+            descarte.get(5, TimeUnit.SECONDS);
+        }
+        ArgumentCaptor<List<Object[]>> lote = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate, times(2)).batchUpdate(anyString(), lote.capture());
+        assertThat(lote.getAllValues().get(1).get(0)).containsExactly(10000L, cartao.getNumero());
+    }
+
+    @Test
+    void naoDeveCarregarLimite_AteLiberarCartaoDescartado() throws Exception {
+        // Arrange
+        var cartao = CartaoHelper.getCartao(true);
+        when(cartaoRepository.findByNumero(cartao.getNumero())).thenReturn(Optional.of(CartaoHelper.getCartao(true)));
+        ledgerLimite.descarta(cartao.getNumero());
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            // Act
+            var debito = executor.submit(() -> ledgerLimite.debita(10000L, cartao));
+            // Assert
+            assertThatThrownBy(() -> debito.get(200, TimeUnit.MILLISECONDS)).isInstanceOf(TimeoutException.class);
+            verify(cartaoRepository, never()).findByNumero(anyString());
+            ledgerLimite.libera(cartao.getNumero());
+            debito.get(5, TimeUnit.SECONDS);
+        }
+        verify(cartaoRepository, times(1)).findByNumero(anyString());
+    }
+
+    @Test
+    void deveLerLimiteDeNovo_QuandoCartaoDescartadoDuranteLeitura() throws Exception {
+        // Arrange
+        var cartao = CartaoHelper.getCartao(true);
+        var alterado = CartaoHelper.getCartao(true);
+        alterado.setLimiteCentavos(50000L);
+        var lendo = new CountDownLatch(1);
+        var terminaLeitura = new CountDownLatch(1);
+        when(cartaoRepository.findByNumero(cartao.getNumero()))
+                .thenAnswer(r -> {
+                    lendo.countDown();
+                    terminaLeitura.await();
+                    return Optional.of(CartaoHelper.getCartao(true));
+                })
+                .thenReturn(Optional.of(alterado));
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            var debito = executor.submit(() -> ledgerLimite.debita(10000L, cartao));
+            lendo.await();
+            // Act
+            ledgerLimite.descarta(cartao.getNumero());
+            ledgerLimite.libera(cartao.getNumero());
+            terminaLeitura.countDown();
+            debito.get(5, TimeUnit.SECONDS);
+        }
+        // Assert
+        verify(cartaoRepository, times(2)).findByNumero(anyString());
+        assertThatThrownBy(() -> ledgerLimite.debita(40001L, cartao))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("nao ha mais limite disponivel no cartao.");
+    }
+}
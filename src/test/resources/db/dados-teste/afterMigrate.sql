@@ -1,6 +1,6 @@
 insert into tb_cartao
-(id, cpf, limite, numero, data_validade, cvv)
+(id, cpf, limite_centavos, numero, data_validade, cvv)
 values
-    ('56833f9a-7fda-49d5-a760-8e1ba41f35a8', '80346534038', 1000, '4417810025751018', '12/30', '253'),
-    ('ab8fdcd5-c9b5-471e-8ad0-380a65d6cc86', '52816804046', 2000, '4417810025752222', '12/30', '254'),
-    ('8855e7b2-77b6-448b-97f8-8a0b529f3976', '61908619031', 3000, '4417810025753333', '12/30', '255');
\ No newline at end of file
+    ('56833f9a-7fda-49d5-a760-8e1ba41f35a8', '80346534038', 100000, '4417810025751018', '12/30', '253'),
+    ('ab8fdcd5-c9b5-471e-8ad0-380a65d6cc86', '52816804046', 200000, '4417810025752222', '12/30', '254'),
+    ('8855e7b2-77b6-448b-97f8-8a0b529f3976', '61908619031', 300000, '4417810025753333', '12/30', '255');
\ No newline at end of file